@@ -0,0 +1,26 @@
+package com.nebula.controlplane.artifact;
+
+import java.io.IOException;
+
+/**
+ * Storage for immutable, content-addressed blobs.
+ * Keys are hex digests; implementations decide how they map onto paths or object names.
+ * Methods may block and are called from a bounded elastic scheduler.
+ */
+public interface BlobBackend {
+
+    /**
+     * Backend name for logging
+     */
+    String getName();
+
+    /**
+     * Read a blob, or return null if it does not exist
+     */
+    byte[] read(String key) throws IOException;
+
+    /**
+     * Store a blob; writing an existing key replaces it with identical content
+     */
+    void write(String key, byte[] data) throws IOException;
+}
@@ -0,0 +1,72 @@
+package com.nebula.controlplane.artifact;
+
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageException;
+import com.google.cloud.storage.StorageOptions;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * Blob backend on the Google Cloud Storage bucket configured under {@code nebula.gcp.storage}.
+ * Size is bounded by the bucket's lifecycle rules (e.g. delete objects under the prefix after N days
+ * without access) rather than by this process.
+ */
+@Component
+@ConditionalOnProperty(name = "nebula.artifacts.backend", havingValue = "gcs")
+public class GcsBlobBackend implements BlobBackend {
+
+    private static final Logger logger = LoggerFactory.getLogger(GcsBlobBackend.class);
+
+    @Value("${nebula.gcp.project-id}")
+    private String projectId;
+
+    @Value("${nebula.gcp.storage.bucket}")
+    private String bucket;
+
+    @Value("${nebula.artifacts.gcs.prefix:generated-code/}")
+    private String prefix;
+
+    private Storage storage;
+
+    @PostConstruct
+    public void init() {
+        this.storage = StorageOptions.newBuilder().setProjectId(projectId).build().getService();
+        logger.info("GCS blob store at gs://{}/{}", bucket, prefix);
+    }
+
+    @Override
+    public String getName() {
+        return "gcs";
+    }
+
+    @Override
+    public byte[] read(String key) throws IOException {
+        try {
+            Blob blob = storage.get(BlobId.of(bucket, prefix + key));
+            return blob != null ? blob.getContent() : null;
+        } catch (StorageException e) {
+            throw new IOException("Failed to read gs://" + bucket + "/" + prefix + key, e);
+        }
+    }
+
+    @Override
+    public void write(String key, byte[] data) throws IOException {
+        try {
+            BlobInfo blobInfo = BlobInfo.newBuilder(BlobId.of(bucket, prefix + key))
+                .setContentType("application/gzip")
+                .build();
+            storage.create(blobInfo, data);
+        } catch (StorageException e) {
+            throw new IOException("Failed to write gs://" + bucket + "/" + prefix + key, e);
+        }
+    }
+}
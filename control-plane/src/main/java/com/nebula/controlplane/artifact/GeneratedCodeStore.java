@@ -0,0 +1,201 @@
+package com.nebula.controlplane.artifact;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.nebula.shared.model.Agent;
+import com.nebula.shared.model.Tool;
+import com.nebula.shared.util.JsonUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content-addressed store for generated agent and tool code.
+ * Code is keyed by a SHA-256 hash of the canonical JSON of everything its prompt was built from
+ * (with sorted keys): for an agent its ID, type, name, language, capabilities, configuration and tools
+ * plus the plan context it was generated in; for a tool its ID and spec plus the ID, language and
+ * capabilities of its agent. An identical agent in an equivalent later plan reuses the stored code instead of going
+ * back to the LLM. Code is gzip-compressed before it reaches the backend.
+ */
+@Component
+public class GeneratedCodeStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(GeneratedCodeStore.class);
+
+    /**
+     * Bump when the key derivation or stored format changes, so old entries are no longer matched
+     */
+    private static final String KEY_VERSION = "v2";
+
+    @Value("${nebula.artifacts.enabled:true}")
+    private boolean enabled;
+
+    @Autowired
+    private BlobBackend backend;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ObjectWriter canonicalWriter = JsonUtil.getObjectMapper().writer()
+        .with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+
+    private Counter hits;
+    private Counter misses;
+
+    @PostConstruct
+    public void init() {
+        this.hits = Counter.builder("nebula.artifacts.code.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("nebula.artifacts.code.requests").tag("result", "miss").register(meterRegistry);
+        logger.info("Generated code store {} using {} backend", enabled ? "enabled" : "disabled", backend.getName());
+    }
+
+    /**
+     * Content key for an agent's generated code
+     *
+     * @param context the plan context the code is generated in, see
+     *                {@link com.nebula.controlplane.llm.PromptAssembler#agentContextFingerprint}
+     */
+    public String agentKey(Agent agent, String context) {
+        Map<String, Object> spec = new TreeMap<>();
+        spec.put("kind", "agent");
+        spec.put("agentId", agent.getAgentId());
+        spec.put("context", context);
+        spec.put("type", agent.getType());
+        spec.put("name", agent.getName());
+        spec.put("language", agent.getLanguage());
+        spec.put("capabilities", sorted(agent.getCapabilities()));
+        spec.put("configuration", agent.getConfiguration());
+
+        List<Map<String, Object>> tools = new ArrayList<>();
+        if (agent.getTools() != null) {
+            for (Tool tool : agent.getTools()) {
+                tools.add(toolSpec(tool));
+            }
+            tools.sort(Comparator.comparing(tool -> String.valueOf(tool.get("name"))));
+        }
+        spec.put("tools", tools);
+        return hash(spec);
+    }
+
+    /**
+     * Content key for a tool's generated code, including the owning agent's details sent with the tool
+     */
+    public String toolKey(Tool tool, Agent agent) {
+        Map<String, Object> spec = toolSpec(tool);
+        spec.put("kind", "tool");
+        spec.put("toolId", tool.getToolId());
+        spec.put("agentId", agent.getAgentId());
+        spec.put("language", agent.getLanguage());
+        spec.put("capabilities", agent.getCapabilities());
+        return hash(spec);
+    }
+
+    /**
+     * Look up stored code; completes empty on a miss or when the store is disabled
+     */
+    public Mono<String> get(String key) {
+        if (!enabled) {
+            return Mono.empty();
+        }
+        return Mono.fromCallable(() -> {
+                byte[] data = backend.read(key);
+                if (data == null) {
+                    misses.increment();
+                    return null;
+                }
+                hits.increment();
+                return decompress(data);
+            })
+            .subscribeOn(Schedulers.boundedElastic())
+            .onErrorResume(e -> {
+                logger.warn("Failed to read generated code {} from {} backend", key, backend.getName(), e);
+                return Mono.empty();
+            });
+    }
+
+    /**
+     * Store generated code in the background
+     */
+    public void put(String key, String code) {
+        if (!enabled || code == null) {
+            return;
+        }
+        Mono.fromRunnable(() -> {
+                try {
+                    backend.write(key, compress(code));
+                } catch (IOException e) {
+                    throw new RuntimeException("Failed to store generated code", e);
+                }
+            })
+            .subscribeOn(Schedulers.boundedElastic())
+            .subscribe(null, e -> logger.warn("Failed to store generated code {} in {} backend", key, backend.getName(), e));
+    }
+
+    private Map<String, Object> toolSpec(Tool tool) {
+        Map<String, Object> spec = new TreeMap<>();
+        spec.put("type", tool.getType());
+        spec.put("name", tool.getName());
+        spec.put("description", tool.getDescription());
+        spec.put("configuration", tool.getConfiguration());
+        return spec;
+    }
+
+    private List<String> sorted(List<String> values) {
+        if (values == null) {
+            return List.of();
+        }
+        List<String> sorted = new ArrayList<>(values);
+        sorted.sort(Comparator.naturalOrder());
+        return sorted;
+    }
+
+    private String hash(Map<String, Object> spec) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(KEY_VERSION.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(canonicalWriter.writeValueAsBytes(spec));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to serialize spec for content key", e);
+        }
+    }
+
+    private static byte[] compress(String code) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(code.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String decompress(byte[] data) throws IOException {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return new String(gzip.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.nebula.controlplane.artifact;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Blob backend on the local filesystem, bounded in total size.
+ * Blobs are stored as {@code <directory>/<first two hex chars>/<key>.blob}. Reads refresh the file's
+ * modification time, and once the directory exceeds its limit the least recently used blobs are removed.
+ */
+@Component
+@ConditionalOnProperty(name = "nebula.artifacts.backend", havingValue = "local", matchIfMissing = true)
+public class LocalDiskBlobBackend implements BlobBackend {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalDiskBlobBackend.class);
+
+    private static final String SUFFIX = ".blob";
+
+    @Value("${nebula.artifacts.local.directory:data/artifacts}")
+    private String directory;
+
+    @Value("${nebula.artifacts.local.max-size-bytes:1073741824}")
+    private long maxSizeBytes;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Path root;
+    private final Map<String, Long> blobSizes = new ConcurrentHashMap<>();
+    private final AtomicLong sizeBytes = new AtomicLong();
+
+    @PostConstruct
+    public void init() throws IOException {
+        this.root = Paths.get(directory);
+        Files.createDirectories(root);
+        try (Stream<Path> paths = Files.walk(root, 2)) {
+            paths.filter(path -> path.toString().endsWith(SUFFIX)).forEach(path -> {
+                try {
+                    long size = Files.size(path);
+                    blobSizes.put(keyOf(path), size);
+                    sizeBytes.addAndGet(size);
+                } catch (IOException e) {
+                    logger.warn("Failed to index blob {}", path, e);
+                }
+            });
+        }
+        meterRegistry.gauge("nebula.artifacts.local.size", sizeBytes);
+        logger.info("Local blob store at {}: {} blobs, {} bytes", root, blobSizes.size(), sizeBytes.get());
+    }
+
+    @Override
+    public String getName() {
+        return "local";
+    }
+
+    @Override
+    public byte[] read(String key) throws IOException {
+        Path file = pathOf(key);
+        try {
+            byte[] data = Files.readAllBytes(file);
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+            return data;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void write(String key, byte[] data) throws IOException {
+        Path file = pathOf(key);
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), key, ".tmp");
+        Files.write(temp, data);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        Long previous = blobSizes.put(key, (long) data.length);
+        sizeBytes.addAndGet(data.length - (previous != null ? previous : 0L));
+
+        if (sizeBytes.get() > maxSizeBytes) {
+            evict();
+        }
+    }
+
+    /**
+     * Remove least recently used blobs until the store is back under 90% of its limit
+     */
+    private synchronized void evict() {
+        long target = maxSizeBytes * 9 / 10;
+        if (sizeBytes.get() <= target) {
+            return;
+        }
+
+        List<Path> files = new ArrayList<>();
+        for (String key : blobSizes.keySet()) {
+            files.add(pathOf(key));
+        }
+        files.sort(Comparator.comparingLong(this::lastModified));
+
+        int evicted = 0;
+        for (Path file : files) {
+            if (sizeBytes.get() <= target) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warn("Failed to delete blob {}", file, e);
+                continue;
+            }
+            Long size = blobSizes.remove(keyOf(file));
+            if (size != null) {
+                sizeBytes.addAndGet(-size);
+            }
+            evicted++;
+        }
+        logger.info("Evicted {} blobs, local blob store is now {} bytes", evicted, sizeBytes.get());
+    }
+
+    private Path pathOf(String key) {
+        return root.resolve(key.substring(0, 2)).resolve(key + SUFFIX);
+    }
+
+    private String keyOf(Path file) {
+        String name = file.getFileName().toString();
+        return name.substring(0, name.length() - SUFFIX.length());
+    }
+
+    private long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+}
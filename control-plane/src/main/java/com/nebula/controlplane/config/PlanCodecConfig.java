@@ -0,0 +1,26 @@
+package com.nebula.controlplane.config;
+
+import com.nebula.shared.util.PlanCodec;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Registers Smile and CBOR message converters backed by the {@link PlanCodec} mappers.
+ * Clients negotiate the format with {@code Accept} and {@code Content-Type}
+ * ({@code application/x-jackson-smile}, {@code application/cbor}); JSON remains the default.
+ */
+@Configuration
+public class PlanCodecConfig {
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter() {
+        return new MappingJackson2SmileHttpMessageConverter(PlanCodec.mapper(PlanCodec.Format.SMILE));
+    }
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter() {
+        return new MappingJackson2CborHttpMessageConverter(PlanCodec.mapper(PlanCodec.Format.CBOR));
+    }
+}
@@ -0,0 +1,79 @@
+package com.nebula.controlplane.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor that runs plan pipelines, which spend most of their time blocked on LLM and data-plane I/O.
+ * With {@code nebula.execution.threads=virtual} (or {@code auto} on Java 21+) every task gets its own
+ * virtual thread; the API is looked up reflectively so the Java 17 build still compiles. Otherwise a
+ * dedicated pool of platform threads is used, so pipelines never block the common ForkJoinPool.
+ */
+@Configuration
+public class PlanExecutorConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(PlanExecutorConfig.class);
+
+    @Value("${nebula.execution.threads:auto}")
+    private String threads;
+
+    @Value("${nebula.execution.platform-pool-size:64}")
+    private int platformPoolSize;
+
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService planExecutor() {
+        if (!"platform".equals(threads)) {
+            ExecutorService virtual = virtualThreadExecutor();
+            if (virtual != null) {
+                logger.info("Running plans on virtual threads");
+                return virtual;
+            }
+            if ("virtual".equals(threads)) {
+                logger.warn("Virtual threads require Java 21, running plans on platform threads");
+            }
+        }
+        logger.info("Running plans on up to {} platform threads", platformPoolSize);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(platformPoolSize, platformPoolSize, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), platformThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * {@code Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("nebula-plan-", 0).factory())},
+     * or null if the runtime has no virtual threads
+     */
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "nebula-plan-", 0L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            Method newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) newExecutor.invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory platformThreadFactory() {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "nebula-plan-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -3,6 +3,7 @@ package com.nebula.controlplane.controller;
 import com.nebula.controlplane.service.MasterAgentService;
 import com.nebula.shared.model.Agent;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.slf4j.Logger;
@@ -11,6 +12,7 @@ import org.slf4j.LoggerFactory;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * REST Controller for the Master Agent.
@@ -54,6 +56,35 @@ public class MasterAgentController {
             });
     }
     
+    /**
+     * Refine the prompt of an existing plan, regenerating only what changed
+     */
+    @PostMapping("/execution/{planId}/refine")
+    public CompletableFuture<ResponseEntity<ProcessResponse>> refinePrompt(@PathVariable String planId,
+                                                                           @RequestBody ProcessRequest request) {
+        logger.info("Received prompt refinement request for plan {}: {}", planId, request.getPrompt());
+        
+        return masterAgentService.refinePrompt(planId, request.getPrompt(), request.getContext())
+            .thenApply(result -> {
+                ProcessResponse response = new ProcessResponse();
+                response.setSuccess(true);
+                response.setMessage("Prompt refined successfully");
+                response.setResult(result);
+                return ResponseEntity.ok(response);
+            })
+            .exceptionally(throwable -> {
+                Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+                ProcessResponse response = new ProcessResponse();
+                response.setSuccess(false);
+                response.setMessage("Error refining prompt: " + cause.getMessage());
+                if (cause instanceof IllegalStateException) {
+                    return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+                }
+                logger.error("Error refining prompt", throwable);
+                return ResponseEntity.internalServerError().body(response);
+            });
+    }
+    
     /**
      * Get execution status for a plan
      */
@@ -0,0 +1,132 @@
+package com.nebula.controlplane.execution;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Structured scope for the tasks of one plan, modelled on {@code StructuredTaskScope.ShutdownOnFailure}
+ * (a preview API on Java 21, unavailable on the Java 17 build). Tasks forked into the scope run on the
+ * plan executor; when one fails, or the scope is cancelled or closed, every task still running is
+ * cancelled and its thread interrupted, so blocking LLM and data-plane calls stop as well.
+ */
+public class PlanScope implements AutoCloseable {
+
+    private final String name;
+    private final ExecutorService executor;
+    private final List<Future<?>> tasks = new ArrayList<>();
+    private final List<CompletableFuture<?>> results = new ArrayList<>();
+    private Throwable failure;
+    private boolean shutdown;
+
+    public PlanScope(String name, ExecutorService executor) {
+        this.name = name;
+        this.executor = executor;
+    }
+
+    /**
+     * Run a task in the scope. Cancelling the returned future interrupts the task.
+     */
+    public <T> CompletableFuture<T> fork(Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        synchronized (this) {
+            if (shutdown) {
+                result.cancel(false);
+                return result;
+            }
+            try {
+                Future<?> future = executor.submit(() -> {
+                    try {
+                        result.complete(task.call());
+                    } catch (Throwable e) {
+                        // A task that was cancelled has not failed
+                        if (result.completeExceptionally(e)) {
+                            onFailure(e);
+                        }
+                    }
+                });
+                tasks.add(future);
+                results.add(result);
+                result.whenComplete((value, error) -> {
+                    if (result.isCancelled()) {
+                        future.cancel(true);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                result.completeExceptionally(e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Wait for every task, then throw the first failure if there was one
+     */
+    public void join() throws InterruptedException, ExecutionException {
+        int joined = 0;
+        while (true) {
+            Future<?> task;
+            synchronized (this) {
+                if (joined == tasks.size()) {
+                    break;
+                }
+                task = tasks.get(joined++);
+            }
+            try {
+                task.get();
+            } catch (CancellationException | ExecutionException e) {
+                // Failures are recorded by the task itself
+            }
+        }
+        synchronized (this) {
+            if (failure != null) {
+                throw new ExecutionException("Task in scope " + name + " failed", failure);
+            }
+        }
+    }
+
+    /**
+     * Cancel every task still queued or running and refuse new ones. The futures returned by
+     * {@link #fork} complete as cancelled, including those of tasks that never started.
+     */
+    public void cancel() {
+        List<Future<?>> running;
+        List<CompletableFuture<?>> pending;
+        synchronized (this) {
+            shutdown = true;
+            running = new ArrayList<>(tasks);
+            pending = new ArrayList<>(results);
+        }
+        for (CompletableFuture<?> result : pending) {
+            result.cancel(false);
+        }
+        for (Future<?> task : running) {
+            task.cancel(true);
+        }
+    }
+
+    public synchronized boolean isCancelled() {
+        return shutdown;
+    }
+
+    @Override
+    public void close() {
+        cancel();
+    }
+
+    private void onFailure(Throwable e) {
+        synchronized (this) {
+            if (failure != null || shutdown) {
+                return;
+            }
+            failure = e;
+        }
+        cancel();
+    }
+}
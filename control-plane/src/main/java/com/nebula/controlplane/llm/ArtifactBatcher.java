@@ -0,0 +1,179 @@
+package com.nebula.controlplane.llm;
+
+import com.nebula.shared.util.LLMOutputScanner;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Packs several code generation specs into one LLM request and splits the response back up.
+ * Each artifact in the response is introduced by a {@code ### ARTIFACT: <id>} line followed by
+ * one fenced code block. Batches are bounded by both artifact count and estimated prompt tokens.
+ */
+@Component
+public class ArtifactBatcher {
+
+    static final String MARKER = "### ARTIFACT:";
+
+    @Value("${nebula.llm.batch.enabled:true}")
+    private boolean enabled;
+
+    @Value("${nebula.llm.batch.max-size:8}")
+    private int maxBatchSize;
+
+    @Value("${nebula.llm.batch.max-prompt-tokens:12000}")
+    private long maxPromptTokens;
+
+    @Value("${nebula.llm.batch.max-retries:1}")
+    private int maxRetries;
+
+    /**
+     * A single artifact to generate: its id and the specification sent to the model
+     */
+    public static class Artifact {
+        private final String id;
+        private final String specification;
+
+        public Artifact(String id, String specification) {
+            this.id = id;
+            this.specification = specification;
+        }
+
+        public String getId() { return id; }
+
+        public String getSpecification() { return specification; }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Token budget available to each artifact's specification within a full batch
+     */
+    public long perArtifactTokenBudget() {
+        return maxPromptTokens / Math.max(1, maxBatchSize);
+    }
+
+    /**
+     * Split artifacts into batches that respect the size and token limits, preserving order
+     */
+    public List<List<Artifact>> partition(List<Artifact> artifacts) {
+        List<List<Artifact>> batches = new ArrayList<>();
+        List<Artifact> current = new ArrayList<>();
+        long currentTokens = 0;
+
+        for (Artifact artifact : artifacts) {
+            long tokens = TokenEstimator.estimate(artifact.getSpecification());
+            if (!current.isEmpty() && (current.size() >= maxBatchSize || currentTokens + tokens > maxPromptTokens)) {
+                batches.add(current);
+                current = new ArrayList<>();
+                currentTokens = 0;
+            }
+            current.add(artifact);
+            currentTokens += tokens;
+        }
+        if (!current.isEmpty()) {
+            batches.add(current);
+        }
+        return batches;
+    }
+
+    /**
+     * Append the multi-artifact response format to a single-artifact system prompt
+     */
+    public String batchSystemPrompt(String systemPrompt, String language) {
+        return systemPrompt + String.format("""
+
+            You will receive several specifications, each introduced by "%s <id>".
+            For every specification, respond with a line "%s <id>" using the same id,
+            immediately followed by exactly one ```%s code block with the complete implementation.
+            Do not merge artifacts and do not add any other text.
+            """, MARKER, MARKER, language);
+    }
+
+    /**
+     * Build the user message carrying every specification of the batch
+     */
+    public String batchUserMessage(List<Artifact> batch) {
+        StringBuilder message = new StringBuilder();
+        for (Artifact artifact : batch) {
+            message.append(MARKER).append(' ').append(artifact.getId()).append('\n');
+            message.append(artifact.getSpecification()).append("\n\n");
+        }
+        message.append("Please generate all ").append(batch.size()).append(" implementations.");
+        return message.toString();
+    }
+
+    /**
+     * Split a batch response into per-artifact code. Artifacts whose section is missing or has no
+     * code block are absent from the result.
+     */
+    public Map<String, String> demultiplex(String response, List<Artifact> batch, String... fenceNames) {
+        List<int[]> sections = new ArrayList<>();
+        List<String> sectionIds = new ArrayList<>();
+
+        int lineStart = 0;
+        while (lineStart < response.length()) {
+            int lineEnd = response.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = response.length();
+            }
+            if (response.startsWith(MARKER, lineStart)) {
+                if (!sections.isEmpty()) {
+                    sections.get(sections.size() - 1)[1] = lineStart;
+                }
+                sections.add(new int[] {lineEnd, response.length()});
+                sectionIds.add(response.substring(lineStart + MARKER.length(), lineEnd).trim());
+            }
+            lineStart = lineEnd + 1;
+        }
+
+        Set<String> expected = new HashSet<>();
+        for (Artifact artifact : batch) {
+            expected.add(artifact.getId());
+        }
+
+        Map<String, String> results = new HashMap<>();
+        List<LLMOutputScanner.Block> blocks = LLMOutputScanner.scan(response);
+        for (int i = 0; i < sections.size(); i++) {
+            String id = sectionIds.get(i);
+            if (!expected.contains(id) || results.containsKey(id)) {
+                continue;
+            }
+            LLMOutputScanner.Block code = firstFenceWithin(blocks, sections.get(i), fenceNames);
+            if (code != null && code.length() > 0) {
+                results.put(id, code.text(response));
+            }
+        }
+        return results;
+    }
+
+    private LLMOutputScanner.Block firstFenceWithin(List<LLMOutputScanner.Block> blocks, int[] section, String... fenceNames) {
+        LLMOutputScanner.Block fallback = null;
+        for (LLMOutputScanner.Block block : blocks) {
+            if (block.getKind() != LLMOutputScanner.Kind.FENCE || block.getStart() < section[0] || block.getEnd() > section[1]) {
+                continue;
+            }
+            for (String fenceName : fenceNames) {
+                if (block.getLanguage().equalsIgnoreCase(fenceName)) {
+                    return block;
+                }
+            }
+            if (fallback == null) {
+                fallback = block;
+            }
+        }
+        return fallback;
+    }
+}
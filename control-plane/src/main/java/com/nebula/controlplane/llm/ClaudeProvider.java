@@ -0,0 +1,133 @@
+package com.nebula.controlplane.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.nebula.shared.util.JsonUtil;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Anthropic Claude provider using the Messages API.
+ */
+@Component
+public class ClaudeProvider implements LLMProvider {
+
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> SSE_TYPE =
+        new ParameterizedTypeReference<>() {};
+
+    private static final String API_VERSION = "2023-06-01";
+
+    @Value("${nebula.llm.claude.api-key:}")
+    private String apiKey;
+
+    @Value("${nebula.llm.claude.model:claude-3-sonnet-20240229}")
+    private String model;
+
+    @Value("${nebula.llm.claude.base-url:https://api.anthropic.com}")
+    private String baseUrl;
+
+    @Value("${nebula.llm.claude.max-tokens:8192}")
+    private int maxTokens;
+
+    @Autowired
+    private LLMWebClientFactory webClientFactory;
+
+    private WebClient webClient;
+
+    @PostConstruct
+    public void init() {
+        this.webClient = webClientFactory.create(baseUrl);
+    }
+
+    @Override
+    public String getName() {
+        return "claude";
+    }
+
+    @Override
+    public String getModel() {
+        return model;
+    }
+
+    @Override
+    public boolean isConfigured() {
+        return apiKey != null && !apiKey.isBlank();
+    }
+
+    @Override
+    public Mono<LLMResponse> complete(LLMRequest request) {
+        return webClient.post()
+            .uri("/v1/messages")
+            .header("x-api-key", apiKey)
+            .header("anthropic-version", API_VERSION)
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(buildRequestBody(request, false))
+            .retrieve()
+            .bodyToMono(JsonNode.class)
+            .map(this::toResponse);
+    }
+
+    @Override
+    public Flux<String> stream(LLMRequest request) {
+        return webClient.post()
+            .uri("/v1/messages")
+            .header("x-api-key", apiKey)
+            .header("anthropic-version", API_VERSION)
+            .contentType(MediaType.APPLICATION_JSON)
+            .accept(MediaType.TEXT_EVENT_STREAM)
+            .bodyValue(buildRequestBody(request, true))
+            .retrieve()
+            .bodyToFlux(SSE_TYPE)
+            .filter(event -> "content_block_delta".equals(event.event()) && event.data() != null)
+            .map(event -> readTree(event.data()).path("delta").path("text").asText(""))
+            .filter(text -> !text.isEmpty());
+    }
+
+    private Map<String, Object> buildRequestBody(LLMRequest request, boolean stream) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("model", model);
+        body.put("max_tokens", maxTokens);
+        body.put("system", request.getSystemPrompt());
+        body.put("messages", List.of(Map.of("role", "user", "content", request.getUserMessage())));
+        if (stream) {
+            body.put("stream", true);
+        }
+        return body;
+    }
+
+    private LLMResponse toResponse(JsonNode body) {
+        StringBuilder text = new StringBuilder();
+        for (JsonNode block : body.path("content")) {
+            if ("text".equals(block.path("type").asText())) {
+                text.append(block.path("text").asText(""));
+            }
+        }
+        JsonNode usage = body.path("usage");
+        return new LLMResponse(
+            text.toString(),
+            getName(),
+            model,
+            usage.path("input_tokens").asLong(0),
+            usage.path("output_tokens").asLong(0)
+        );
+    }
+
+    private JsonNode readTree(String json) {
+        try {
+            return JsonUtil.getObjectMapper().readTree(json);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to parse Claude stream event", e);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.nebula.controlplane.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.nebula.shared.util.JsonUtil;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Google Gemini provider using the Generative Language REST API.
+ */
+@Component
+public class GeminiProvider implements LLMProvider {
+
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> SSE_TYPE =
+        new ParameterizedTypeReference<>() {};
+
+    @Value("${nebula.llm.gemini.api-key:}")
+    private String apiKey;
+
+    @Value("${nebula.llm.gemini.model:gemini-pro}")
+    private String model;
+
+    @Value("${nebula.llm.gemini.base-url:https://generativelanguage.googleapis.com}")
+    private String baseUrl;
+
+    @Autowired
+    private LLMWebClientFactory webClientFactory;
+
+    private WebClient webClient;
+
+    @PostConstruct
+    public void init() {
+        this.webClient = webClientFactory.create(baseUrl);
+    }
+
+    @Override
+    public String getName() {
+        return "gemini";
+    }
+
+    @Override
+    public String getModel() {
+        return model;
+    }
+
+    @Override
+    public boolean isConfigured() {
+        return apiKey != null && !apiKey.isBlank();
+    }
+
+    @Override
+    public Mono<LLMResponse> complete(LLMRequest request) {
+        return webClient.post()
+            .uri("/v1beta/models/{model}:generateContent?key={key}", model, apiKey)
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(buildRequestBody(request))
+            .retrieve()
+            .bodyToMono(JsonNode.class)
+            .map(this::toResponse);
+    }
+
+    @Override
+    public Flux<String> stream(LLMRequest request) {
+        return webClient.post()
+            .uri("/v1beta/models/{model}:streamGenerateContent?alt=sse&key={key}", model, apiKey)
+            .contentType(MediaType.APPLICATION_JSON)
+            .accept(MediaType.TEXT_EVENT_STREAM)
+            .bodyValue(buildRequestBody(request))
+            .retrieve()
+            .bodyToFlux(SSE_TYPE)
+            .filter(event -> event.data() != null && !event.data().isBlank())
+            .map(event -> extractText(readTree(event.data())))
+            .filter(text -> !text.isEmpty());
+    }
+
+    private Map<String, Object> buildRequestBody(LLMRequest request) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("contents", List.of(
+            Map.of("role", "user",
+                   "parts", List.of(Map.of("text", request.getSystemPrompt() + "\n\n" + request.getUserMessage())))
+        ));
+        return body;
+    }
+
+    private LLMResponse toResponse(JsonNode body) {
+        JsonNode usage = body.path("usageMetadata");
+        return new LLMResponse(
+            extractText(body),
+            getName(),
+            model,
+            usage.path("promptTokenCount").asLong(0),
+            usage.path("candidatesTokenCount").asLong(0)
+        );
+    }
+
+    private String extractText(JsonNode body) {
+        StringBuilder text = new StringBuilder();
+        for (JsonNode part : body.path("candidates").path(0).path("content").path("parts")) {
+            text.append(part.path("text").asText(""));
+        }
+        return text.toString();
+    }
+
+    private JsonNode readTree(String json) {
+        try {
+            return JsonUtil.getObjectMapper().readTree(json);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to parse Gemini stream event", e);
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.nebula.controlplane.llm;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-provider circuit breaker for LLM calls.
+ * Outcomes of the last {@code window-size} calls are kept per provider; once at least
+ * {@code minimum-calls} are recorded and the failure rate reaches {@code failure-rate-threshold}
+ * the circuit opens and calls are rejected without reaching the provider. After
+ * {@code open-duration} a limited number of probe calls are let through (half-open); the circuit
+ * closes when they succeed and reopens on the first failure. Only transient provider failures count,
+ * so a rejected request (4xx other than 429) does not open the circuit.
+ */
+@Component
+public class LLMCircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(LLMCircuitBreaker.class);
+
+    @Value("${nebula.llm.circuit-breaker.enabled:true}")
+    private boolean enabled;
+
+    @Value("${nebula.llm.circuit-breaker.window-size:20}")
+    private int windowSize;
+
+    @Value("${nebula.llm.circuit-breaker.minimum-calls:5}")
+    private int minimumCalls;
+
+    @Value("${nebula.llm.circuit-breaker.failure-rate-threshold:0.5}")
+    private double failureRateThreshold;
+
+    @Value("${nebula.llm.circuit-breaker.open-duration:30s}")
+    private Duration openDuration;
+
+    @Value("${nebula.llm.circuit-breaker.half-open-calls:1}")
+    private int halfOpenCalls;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, ProviderCircuit> circuits = new ConcurrentHashMap<>();
+
+    /**
+     * Whether a call to the provider would currently be let through
+     */
+    public boolean allowsCalls(String provider) {
+        return !enabled || circuitFor(provider).allowsCalls();
+    }
+
+    /**
+     * Admit a call to the provider; every admitted call must end in exactly one of
+     * {@link #onSuccess}, {@link #onFailure} or {@link #release}
+     */
+    public boolean tryAcquire(String provider) {
+        if (!enabled) {
+            return true;
+        }
+        ProviderCircuit circuit = circuitFor(provider);
+        if (circuit.tryAcquire()) {
+            return true;
+        }
+        circuit.rejections.increment();
+        return false;
+    }
+
+    public void onSuccess(String provider) {
+        if (enabled) {
+            circuitFor(provider).record(false);
+        }
+    }
+
+    public void onFailure(String provider, Throwable failure) {
+        if (enabled) {
+            circuitFor(provider).record(LLMRetryPolicy.isRetryable(failure));
+        }
+    }
+
+    /**
+     * Release an admitted call that ended without an outcome (cancelled or never sent)
+     */
+    public void release(String provider) {
+        if (enabled) {
+            circuitFor(provider).release();
+        }
+    }
+
+    public CircuitState getState(String provider) {
+        return enabled ? circuitFor(provider).state() : CircuitState.CLOSED;
+    }
+
+    private ProviderCircuit circuitFor(String provider) {
+        return circuits.computeIfAbsent(provider, this::createCircuit);
+    }
+
+    private ProviderCircuit createCircuit(String provider) {
+        ProviderCircuit circuit = new ProviderCircuit(provider);
+        Gauge.builder("nebula.llm.circuit.state", circuit, c -> c.state().ordinal())
+            .description("Circuit breaker state (0 closed, 1 half-open, 2 open)")
+            .tag("provider", provider)
+            .register(meterRegistry);
+        circuit.rejections = Counter.builder("nebula.llm.circuit.rejections")
+            .description("LLM calls rejected by an open circuit")
+            .tag("provider", provider)
+            .register(meterRegistry);
+        return circuit;
+    }
+
+    /**
+     * State of a provider's circuit
+     */
+    public enum CircuitState {
+        CLOSED("closed"),
+        HALF_OPEN("half_open"),
+        OPEN("open");
+
+        private final String value;
+
+        CircuitState(String value) {
+            this.value = value;
+        }
+
+        @JsonValue
+        public String getValue() {
+            return value;
+        }
+    }
+
+    /**
+     * Outcome window and state of one provider
+     */
+    private class ProviderCircuit {
+        private final String provider;
+        private final boolean[] failed;
+        private int next;
+        private int count;
+        private int failures;
+        private CircuitState state = CircuitState.CLOSED;
+        private long openedAt;
+        private int probesInFlight;
+        private int probeSuccesses;
+        private Counter rejections;
+
+        ProviderCircuit(String provider) {
+            this.provider = provider;
+            this.failed = new boolean[Math.max(1, windowSize)];
+        }
+
+        synchronized CircuitState state() {
+            return state;
+        }
+
+        synchronized boolean allowsCalls() {
+            return state != CircuitState.OPEN || openExpired();
+        }
+
+        synchronized boolean tryAcquire() {
+            if (state == CircuitState.OPEN) {
+                if (!openExpired()) {
+                    return false;
+                }
+                transition(CircuitState.HALF_OPEN);
+            }
+            if (state == CircuitState.HALF_OPEN) {
+                if (probesInFlight >= halfOpenCalls) {
+                    return false;
+                }
+                probesInFlight++;
+            }
+            return true;
+        }
+
+        synchronized void record(boolean failure) {
+            switch (state) {
+                case CLOSED -> {
+                    if (count == failed.length) {
+                        failures -= failed[next] ? 1 : 0;
+                    } else {
+                        count++;
+                    }
+                    failed[next] = failure;
+                    failures += failure ? 1 : 0;
+                    next = (next + 1) % failed.length;
+
+                    if (count >= minimumCalls && failures >= failureRateThreshold * count) {
+                        transition(CircuitState.OPEN);
+                    }
+                }
+                case HALF_OPEN -> {
+                    probesInFlight = Math.max(0, probesInFlight - 1);
+                    if (failure) {
+                        transition(CircuitState.OPEN);
+                    } else if (++probeSuccesses >= halfOpenCalls) {
+                        transition(CircuitState.CLOSED);
+                    }
+                }
+                case OPEN -> {
+                    // Late result of a call admitted before the circuit opened
+                }
+            }
+        }
+
+        synchronized void release() {
+            if (state == CircuitState.HALF_OPEN) {
+                probesInFlight = Math.max(0, probesInFlight - 1);
+            }
+        }
+
+        private boolean openExpired() {
+            return System.nanoTime() - openedAt >= openDuration.toNanos();
+        }
+
+        private void transition(CircuitState target) {
+            if (target == CircuitState.OPEN) {
+                logger.warn("Circuit for LLM provider {} opened after {} failures in {} calls, rejecting calls for {}",
+                           provider, failures, count, openDuration);
+                openedAt = System.nanoTime();
+            } else {
+                logger.info("Circuit for LLM provider {} is now {}", provider, target.getValue());
+            }
+            state = target;
+            next = 0;
+            count = 0;
+            failures = 0;
+            probesInFlight = 0;
+            probeSuccesses = 0;
+            Counter.builder("nebula.llm.circuit.transitions")
+                .description("Circuit breaker state changes")
+                .tag("provider", provider)
+                .tag("state", target.getValue())
+                .register(meterRegistry)
+                .increment();
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.nebula.controlplane.llm;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Adaptive (AIMD) limit on in-flight calls per LLM provider.
+ * A call is slow when it takes longer than {@code latency-tolerance} times the median of the provider's
+ * last {@code latency-window} successful calls, or longer than {@code latency-threshold} at all; until
+ * {@code latency-min-samples} calls were measured only the fixed threshold applies. Every call that is
+ * not slow and completes while the provider is at least half utilised grows the limit by
+ * {@code 1/limit}, i.e. roughly one slot per round of calls. A slow call, or one that fails with
+ * throttling, a server error or a timeout, multiplies the limit by {@code backoff-ratio}. Calls over the
+ * limit wait in FIFO order for a slot; only once {@code max-queue-depth} calls are already waiting is a
+ * call rejected, so the router can fail over.
+ */
+@Component
+public class LLMConcurrencyLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(LLMConcurrencyLimiter.class);
+
+    @Value("${nebula.llm.concurrency.enabled:true}")
+    private boolean enabled;
+
+    @Value("${nebula.llm.concurrency.initial-limit:20}")
+    private int initialLimit;
+
+    @Value("${nebula.llm.concurrency.min-limit:2}")
+    private int minLimit;
+
+    @Value("${nebula.llm.concurrency.max-limit:200}")
+    private int maxLimit;
+
+    @Value("${nebula.llm.concurrency.backoff-ratio:0.9}")
+    private double backoffRatio;
+
+    @Value("${nebula.llm.concurrency.latency-threshold:60s}")
+    private Duration latencyThreshold;
+
+    @Value("${nebula.llm.concurrency.latency-window:100}")
+    private int latencyWindow;
+
+    @Value("${nebula.llm.concurrency.latency-min-samples:20}")
+    private int latencyMinSamples;
+
+    @Value("${nebula.llm.concurrency.latency-tolerance:2.0}")
+    private double latencyTolerance;
+
+    @Value("${nebula.llm.concurrency.max-queue-depth:1000}")
+    private int maxQueueDepth;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, ProviderLimit> limits = new ConcurrentHashMap<>();
+
+    /**
+     * Wait for a slot at the provider; completes empty once admitted. Every admitted call must end in
+     * exactly one of {@link #onSuccess}, {@link #onFailure} or {@link #release}. Cancelling while
+     * waiting gives up the place in the queue.
+     */
+    public Mono<Void> acquire(String provider) {
+        if (!enabled) {
+            return Mono.empty();
+        }
+        ProviderLimit limit = limitFor(provider);
+        return Mono.create(limit::acquire);
+    }
+
+    /**
+     * Whether a call to the provider would be admitted without waiting
+     */
+    public boolean hasCapacity(String provider) {
+        return !enabled || limitFor(provider).hasCapacity();
+    }
+
+    public void onSuccess(String provider, long elapsedNanos) {
+        if (enabled) {
+            limitFor(provider).completeSuccess(elapsedNanos);
+        }
+    }
+
+    public void onFailure(String provider, Throwable failure) {
+        if (enabled) {
+            limitFor(provider).complete(LLMRetryPolicy.isRetryable(failure));
+        }
+    }
+
+    /**
+     * Release an admitted call that ended without an outcome (cancelled or never sent)
+     */
+    public void release(String provider) {
+        if (enabled) {
+            limitFor(provider).release();
+        }
+    }
+
+    private ProviderLimit limitFor(String provider) {
+        return limits.computeIfAbsent(provider, this::createLimit);
+    }
+
+    private ProviderLimit createLimit(String provider) {
+        ProviderLimit limit = new ProviderLimit(provider);
+        Gauge.builder("nebula.llm.concurrency.limit", limit, ProviderLimit::limit)
+            .description("Current adaptive limit on in-flight LLM calls")
+            .tag("provider", provider)
+            .register(meterRegistry);
+        Gauge.builder("nebula.llm.concurrency.in.flight", limit, ProviderLimit::inFlight)
+            .description("LLM calls currently in flight")
+            .tag("provider", provider)
+            .register(meterRegistry);
+        Gauge.builder("nebula.llm.concurrency.latency.baseline", limit, l -> l.baselineNanos() / 1_000_000.0)
+            .description("Median latency in milliseconds that calls to the provider are judged slow against")
+            .tag("provider", provider)
+            .register(meterRegistry);
+        Gauge.builder("nebula.llm.concurrency.queue.depth", limit, ProviderLimit::queueDepth)
+            .description("LLM calls waiting for a slot")
+            .tag("provider", provider)
+            .register(meterRegistry);
+        limit.rejections = Counter.builder("nebula.llm.concurrency.rejections")
+            .description("LLM calls rejected because the queue for the concurrency limit was full")
+            .tag("provider", provider)
+            .register(meterRegistry);
+        return limit;
+    }
+
+    /**
+     * Limit, in-flight count, waiting calls and latency baseline of one provider
+     */
+    private class ProviderLimit {
+        private final String provider;
+        private final Deque<MonoSink<Void>> waiters = new ArrayDeque<>();
+        private final long[] latencies = new long[Math.max(1, latencyWindow)];
+        private int nextLatency;
+        private int latencyCount;
+        private long baselineNanos;
+        private double limit = initialLimit;
+        private int inFlight;
+        private Counter rejections;
+
+        ProviderLimit(String provider) {
+            this.provider = provider;
+        }
+
+        synchronized double limit() {
+            return limit;
+        }
+
+        synchronized int inFlight() {
+            return inFlight;
+        }
+
+        synchronized int queueDepth() {
+            return waiters.size();
+        }
+
+        synchronized long baselineNanos() {
+            return baselineNanos;
+        }
+
+        synchronized boolean hasCapacity() {
+            return waiters.isEmpty() && inFlight < (int) limit;
+        }
+
+        void acquire(MonoSink<Void> sink) {
+            boolean admitted = false;
+            synchronized (this) {
+                if (waiters.isEmpty() && inFlight < (int) limit) {
+                    inFlight++;
+                    admitted = true;
+                } else if (waiters.size() < maxQueueDepth) {
+                    waiters.add(sink);
+                } else {
+                    rejections.increment();
+                    sink.error(new LLMProviderUnavailableException(provider,
+                        "LLM provider " + provider + " is at its concurrency limit with " + maxQueueDepth + " calls waiting"));
+                    return;
+                }
+            }
+            if (admitted) {
+                sink.success();
+            } else {
+                sink.onCancel(() -> cancel(sink));
+            }
+        }
+
+        void completeSuccess(long elapsedNanos) {
+            boolean slow;
+            synchronized (this) {
+                // Judge the call against the baseline before it joins the window
+                slow = elapsedNanos > latencyThreshold.toNanos()
+                    || (latencyCount >= latencyMinSamples && elapsedNanos > baselineNanos * latencyTolerance);
+                recordLatency(elapsedNanos);
+            }
+            complete(slow);
+        }
+
+        /**
+         * Add a latency to the window and recompute the median; the window holds at most a few hundred
+         * samples and completions are bounded by the limit, so sorting a copy is cheap
+         */
+        private void recordLatency(long elapsedNanos) {
+            latencies[nextLatency] = elapsedNanos;
+            nextLatency = (nextLatency + 1) % latencies.length;
+            latencyCount = Math.min(latencyCount + 1, latencies.length);
+            long[] sorted = Arrays.copyOf(latencies, latencyCount);
+            Arrays.sort(sorted);
+            baselineNanos = sorted[(latencyCount - 1) / 2];
+        }
+
+        void complete(boolean overloaded) {
+            synchronized (this) {
+                int utilised = inFlight;
+                inFlight = Math.max(0, inFlight - 1);
+                if (overloaded) {
+                    double reduced = Math.max(minLimit, limit * backoffRatio);
+                    if ((int) reduced < (int) limit) {
+                        logger.debug("Reducing concurrency limit for {} to {}", provider, (int) reduced);
+                    }
+                    limit = reduced;
+                } else if (utilised * 2 >= limit) {
+                    limit = Math.min(maxLimit, limit + 1 / limit);
+                }
+            }
+            admitWaiters();
+        }
+
+        void release() {
+            synchronized (this) {
+                inFlight = Math.max(0, inFlight - 1);
+            }
+            admitWaiters();
+        }
+
+        private void cancel(MonoSink<Void> sink) {
+            boolean waiting;
+            synchronized (this) {
+                waiting = waiters.remove(sink);
+            }
+            // Admitted concurrently with the cancellation, so the slot was never handed over
+            if (!waiting) {
+                release();
+            }
+        }
+
+        private void admitWaiters() {
+            List<MonoSink<Void>> admitted = new ArrayList<>();
+            synchronized (this) {
+                while (!waiters.isEmpty() && inFlight < (int) limit) {
+                    admitted.add(waiters.poll());
+                    inFlight++;
+                }
+            }
+            for (MonoSink<Void> sink : admitted) {
+                sink.success();
+            }
+        }
+    }
+}
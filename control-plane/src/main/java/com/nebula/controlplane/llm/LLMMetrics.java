@@ -0,0 +1,149 @@
+package com.nebula.controlplane.llm;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer instrumentation for LLM calls.
+ * <ul>
+ *   <li>{@code nebula.llm.call} - end-to-end latency per operation, provider, model and outcome
+ *       (success, cached, error), with percentiles and a percentile histogram</li>
+ *   <li>{@code nebula.llm.tokens} - prompt and completion tokens reported by providers</li>
+ *   <li>{@code nebula.llm.cost} - estimated spend in USD from {@code nebula.llm.pricing.<model>}</li>
+ *   <li>{@code nebula.llm.retries} - retried provider calls by reason</li>
+ *   <li>{@code nebula.llm.cache.lookups} - response cache hits and misses per operation</li>
+ * </ul>
+ */
+@Component
+public class LLMMetrics {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private Environment environment;
+
+    private Map<String, ModelPricing> pricing = Collections.emptyMap();
+
+    @PostConstruct
+    public void init() {
+        this.pricing = Binder.get(environment)
+            .bind("nebula.llm.pricing", Bindable.mapOf(String.class, ModelPricing.class))
+            .orElse(Collections.emptyMap());
+    }
+
+    /**
+     * Record a completed call, including whether it was served from the response cache
+     */
+    public void recordCall(LLMRequest request, LLMResponse response, boolean cached, long elapsedNanos) {
+        callTimer(request.getOperation(), response.getProvider(), response.getModel(), cached ? "cached" : "success", "none")
+            .record(elapsedNanos, TimeUnit.NANOSECONDS);
+        Counter.builder("nebula.llm.cache.lookups")
+            .tag("operation", request.getOperation().getValue())
+            .tag("result", cached ? "hit" : "miss")
+            .register(meterRegistry)
+            .increment();
+    }
+
+    /**
+     * Record a completed streaming call; streams bypass the response cache and report no token usage
+     */
+    public void recordStream(LLMRequest request, LLMProvider provider, long elapsedNanos) {
+        callTimer(request.getOperation(), provider.getName(), provider.getModel(), "success", "none")
+            .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Record a call that failed after routing and retries
+     */
+    public void recordFailure(LLMRequest request, LLMProvider provider, Throwable failure, long elapsedNanos) {
+        callTimer(request.getOperation(), provider.getName(), provider.getModel(), "error", failure.getClass().getSimpleName())
+            .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Record the token usage and estimated cost of a response received from a provider
+     */
+    public void recordUsage(LLMRequest request, LLMResponse response) {
+        String operation = request.getOperation().getValue();
+        tokenCounter(operation, response, "prompt").increment(response.getPromptTokens());
+        tokenCounter(operation, response, "completion").increment(response.getCompletionTokens());
+
+        ModelPricing modelPricing = pricing.get(response.getModel());
+        if (modelPricing != null) {
+            double cost = (response.getPromptTokens() * modelPricing.getPromptPerMillion()
+                + response.getCompletionTokens() * modelPricing.getCompletionPerMillion()) / 1_000_000.0;
+            Counter.builder("nebula.llm.cost")
+                .description("Estimated LLM spend")
+                .baseUnit("usd")
+                .tag("operation", operation)
+                .tag("provider", response.getProvider())
+                .tag("model", response.getModel())
+                .register(meterRegistry)
+                .increment(cost);
+        }
+    }
+
+    /**
+     * Record that a provider call is being retried
+     */
+    public void recordRetry(String provider, String reason) {
+        Counter.builder("nebula.llm.retries")
+            .tag("provider", provider)
+            .tag("reason", reason)
+            .register(meterRegistry)
+            .increment();
+    }
+
+    private Timer callTimer(LLMOperation operation, String provider, String model, String outcome, String exception) {
+        return Timer.builder("nebula.llm.call")
+            .description("End-to-end latency of LLM calls")
+            .tag("operation", operation.getValue())
+            .tag("provider", provider)
+            .tag("model", model)
+            .tag("outcome", outcome)
+            .tag("exception", exception)
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .publishPercentileHistogram()
+            .minimumExpectedValue(Duration.ofMillis(10))
+            .maximumExpectedValue(Duration.ofMinutes(5))
+            .register(meterRegistry);
+    }
+
+    private Counter tokenCounter(String operation, LLMResponse response, String type) {
+        return Counter.builder("nebula.llm.tokens")
+            .description("Tokens reported by LLM providers")
+            .baseUnit("tokens")
+            .tag("operation", operation)
+            .tag("provider", response.getProvider())
+            .tag("model", response.getModel())
+            .tag("type", type)
+            .register(meterRegistry);
+    }
+
+    /**
+     * Price of a model in USD per million tokens
+     */
+    public static class ModelPricing {
+        private double promptPerMillion;
+        private double completionPerMillion;
+
+        public double getPromptPerMillion() { return promptPerMillion; }
+        public void setPromptPerMillion(double promptPerMillion) { this.promptPerMillion = promptPerMillion; }
+
+        public double getCompletionPerMillion() { return completionPerMillion; }
+        public void setCompletionPerMillion(double completionPerMillion) { this.completionPerMillion = completionPerMillion; }
+    }
+}
@@ -0,0 +1,29 @@
+package com.nebula.controlplane.llm;
+
+/**
+ * Enumeration of the operations the control plane performs against an LLM.
+ * Used to label requests for logging, routing and metrics.
+ */
+public enum LLMOperation {
+    PLAN("plan", LLMPriority.STANDARD),
+    AGENT_CODE("agent-code", LLMPriority.BULK),
+    TOOL_CODE("tool-code", LLMPriority.BULK),
+    SUGGEST("suggest", LLMPriority.STANDARD),
+    CHAT("chat", LLMPriority.INTERACTIVE);
+    
+    private final String value;
+    private final LLMPriority defaultPriority;
+    
+    LLMOperation(String value, LLMPriority defaultPriority) {
+        this.value = value;
+        this.defaultPriority = defaultPriority;
+    }
+    
+    public String getValue() {
+        return value;
+    }
+    
+    public LLMPriority getDefaultPriority() {
+        return defaultPriority;
+    }
+}
@@ -0,0 +1,11 @@
+package com.nebula.controlplane.llm;
+
+/**
+ * Scheduling priority of an LLM request when provider rate limits force requests to queue.
+ * Declared from most to least urgent.
+ */
+public enum LLMPriority {
+    INTERACTIVE,
+    STANDARD,
+    BULK
+}
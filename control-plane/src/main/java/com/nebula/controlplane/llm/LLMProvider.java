@@ -0,0 +1,36 @@
+package com.nebula.controlplane.llm;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking client for a single LLM vendor.
+ * Implementations must not block the calling thread; all I/O runs on the shared event loop.
+ */
+public interface LLMProvider {
+    
+    /**
+     * Provider name as used in {@code nebula.llm.provider}
+     */
+    String getName();
+    
+    /**
+     * Model identifier sent to the provider
+     */
+    String getModel();
+    
+    /**
+     * Whether credentials are configured so that real calls can be made
+     */
+    boolean isConfigured();
+    
+    /**
+     * Complete the request and emit the full response once generation finishes
+     */
+    Mono<LLMResponse> complete(LLMRequest request);
+    
+    /**
+     * Complete the request and emit text fragments as the provider generates them
+     */
+    Flux<String> stream(LLMRequest request);
+}
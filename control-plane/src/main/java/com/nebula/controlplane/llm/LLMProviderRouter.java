@@ -0,0 +1,419 @@
+package com.nebula.controlplane.llm;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Routes LLM calls to the fastest healthy provider.
+ * Every provider keeps a sliding window of call latencies and an exponentially weighted error rate.
+ * Calls go to the healthy provider with the lowest median latency; until enough samples exist the
+ * provider selected by {@code nebula.llm.provider} is preferred. For latency-critical operations a
+ * hedged request is sent to the runner-up once the primary exceeds its own p95 latency (or fails),
+ * and whichever provider answers first wins while the other call is cancelled.
+ * Each attempt at a provider is admitted by its adaptive concurrency limit, waiting for a slot if
+ * needed, and then by its circuit breaker. Only the provider call itself holds the slot and is timed,
+ * not rate limiting or retry backoff. Providers with an open circuit are ordered last and providers
+ * without a free slot after those that have one; a call whose circuit is open, or whose limit queue
+ * is full, fails over to the next provider.
+ */
+@Component
+public class LLMProviderRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(LLMProviderRouter.class);
+
+    @Value("${nebula.llm.provider:gemini}")
+    private String preferredProvider;
+
+    @Value("${nebula.llm.routing.enabled:true}")
+    private boolean enabled;
+
+    @Value("${nebula.llm.routing.latency-window:100}")
+    private int latencyWindow;
+
+    @Value("${nebula.llm.routing.min-samples:10}")
+    private int minSamples;
+
+    @Value("${nebula.llm.routing.error-rate-alpha:0.2}")
+    private double errorRateAlpha;
+
+    @Value("${nebula.llm.routing.max-error-rate:0.5}")
+    private double maxErrorRate;
+
+    @Value("${nebula.llm.routing.hedging.enabled:true}")
+    private boolean hedgingEnabled;
+
+    @Value("${nebula.llm.routing.hedging.operations:plan,chat}")
+    private Set<String> hedgedOperations;
+
+    @Value("${nebula.llm.routing.hedging.min-delay:500ms}")
+    private Duration minHedgeDelay;
+
+    @Value("${nebula.llm.routing.hedging.initial-delay:5s}")
+    private Duration initialHedgeDelay;
+
+    @Autowired
+    private LLMCircuitBreaker circuitBreaker;
+
+    @Autowired
+    private LLMConcurrencyLimiter concurrencyLimiter;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, LLMProvider> providers = new LinkedHashMap<>();
+    private final Map<String, ProviderStats> stats = new LinkedHashMap<>();
+    private final Map<String, Counter> hedgeCounters = new LinkedHashMap<>();
+
+    @Autowired
+    public LLMProviderRouter(List<LLMProvider> providers) {
+        for (LLMProvider provider : providers) {
+            this.providers.put(provider.getName(), provider);
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        for (String name : providers.keySet()) {
+            ProviderStats providerStats = new ProviderStats(latencyWindow);
+            stats.put(name, providerStats);
+
+            Gauge.builder("nebula.llm.router.latency", providerStats, s -> s.percentileMillis(0.95))
+                .description("p95 latency of recent LLM calls")
+                .tag("provider", name)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+            Gauge.builder("nebula.llm.router.error.rate", providerStats, ProviderStats::errorRate)
+                .description("Exponentially weighted LLM call error rate")
+                .tag("provider", name)
+                .register(meterRegistry);
+            hedgeCounters.put(name, Counter.builder("nebula.llm.router.hedges")
+                .description("Hedged LLM requests sent to this provider")
+                .tag("provider", name)
+                .register(meterRegistry));
+        }
+        logger.info("LLM providers available for routing: {} (preferred: {})", providers.keySet(), preferredProvider);
+    }
+
+    /**
+     * Whether at least one provider has credentials configured
+     */
+    public boolean hasConfiguredProvider() {
+        return !candidates().isEmpty();
+    }
+
+    /**
+     * The provider the next call would be routed to, or the preferred provider if none is configured
+     */
+    public LLMProvider select() {
+        List<LLMProvider> candidates = candidates();
+        return candidates.isEmpty() ? preferred() : candidates.get(0);
+    }
+
+    /**
+     * Configured providers in routing order: closed circuits first, then those with a free slot, healthy
+     * before unhealthy, then by median latency
+     */
+    public List<LLMProvider> candidates() {
+        LLMProvider preferred = preferred();
+        if (!enabled) {
+            return preferred.isConfigured() ? List.of(preferred) : List.of();
+        }
+
+        List<LLMProvider> candidates = new ArrayList<>();
+        for (LLMProvider provider : providers.values()) {
+            if (provider.isConfigured()) {
+                candidates.add(provider);
+            }
+        }
+        candidates.sort(Comparator
+            .comparing((LLMProvider provider) -> !circuitBreaker.allowsCalls(provider.getName()))
+            .thenComparing(provider -> !concurrencyLimiter.hasCapacity(provider.getName()))
+            .thenComparing(provider -> !isHealthy(provider))
+            .thenComparingLong(provider -> routingLatency(provider, provider == preferred)));
+        return candidates;
+    }
+
+    /**
+     * Run the call against the selected provider, hedging latency-critical requests with the runner-up.
+     * The call function is invoked once per provider tried and should include that provider's
+     * rate limiting and retries, with each attempt wrapped in {@link #admit(LLMProvider, Mono)}.
+     */
+    public <T> Mono<T> execute(LLMRequest request, Function<LLMProvider, Mono<T>> call) {
+        return Mono.defer(() -> {
+            List<LLMProvider> candidates = candidates();
+            if (candidates.isEmpty()) {
+                return Mono.error(new IllegalStateException("No LLM provider is configured"));
+            }
+
+            LLMProvider primary = candidates.get(0);
+            if (!shouldHedge(request) || candidates.size() < 2) {
+                return trackWithFailover(candidates, 0, call);
+            }
+
+            LLMProvider secondary = candidates.get(1);
+            Duration delay = hedgeDelay(primary);
+            // A primary that fails, including one rejected by its breaker or limiter, hedges immediately
+            Sinks.Empty<Void> primaryFailed = Sinks.empty();
+            AtomicReference<Throwable> primaryError = new AtomicReference<>();
+
+            Mono<T> primaryCall = attempt(primary, call)
+                .doOnError(e -> {
+                    primaryError.set(e);
+                    primaryFailed.tryEmitEmpty();
+                });
+            Mono<T> hedgedCall = Mono.firstWithSignal(Mono.delay(delay).then(), primaryFailed.asMono())
+                .then(Mono.defer(() -> {
+                    logger.info("Hedging {} request to {} after {}", request.getOperation().getValue(), secondary.getName(), delay);
+                    hedgeCounters.get(secondary.getName()).increment();
+                    return attempt(secondary, call);
+                }));
+
+            // The first provider to emit a value wins and the other call is cancelled; if both fail, the
+            // primary's error is reported rather than firstWithValue's "All sources completed with error"
+            return Mono.firstWithValue(primaryCall, hedgedCall)
+                .onErrorMap(e -> primaryError.get() != null ? primaryError.get() : e);
+        });
+    }
+
+    /**
+     * Run a streaming call against the selected provider, failing over to the next one while the
+     * provider is unavailable. Streams are never hedged, since fragments cannot be taken back once
+     * emitted. The call function should include rate limiting and retries as for {@link #execute},
+     * with each attempt wrapped in {@link #admit(LLMProvider, Flux)}.
+     */
+    public <T> Flux<T> executeStream(LLMRequest request, Function<LLMProvider, Flux<T>> call) {
+        return Flux.defer(() -> {
+            List<LLMProvider> candidates = candidates();
+            if (candidates.isEmpty()) {
+                return Flux.error(new IllegalStateException("No LLM provider is configured"));
+            }
+            return streamWithFailover(candidates, 0, call);
+        });
+    }
+
+    /**
+     * Admit one attempt at a provider through its concurrency limit and circuit breaker, and record its
+     * outcome and latency. A call rejected by either fails with {@link LLMProviderUnavailableException}
+     * without reaching the provider.
+     */
+    public <T> Mono<T> admit(LLMProvider provider, Mono<T> attempt) {
+        String name = provider.getName();
+        return concurrencyLimiter.acquire(name).then(Mono.defer(() -> {
+            if (!circuitBreaker.tryAcquire(name)) {
+                concurrencyLimiter.release(name);
+                return Mono.error(circuitOpen(name));
+            }
+            Outcome outcome = new Outcome(name);
+            return attempt
+                .doOnSuccess(value -> outcome.success())
+                .doOnError(outcome::failure)
+                .doOnCancel(outcome::cancel);
+        }));
+    }
+
+    /**
+     * Admit one attempt at a streaming call; the slot is held until the stream ends
+     */
+    public <T> Flux<T> admit(LLMProvider provider, Flux<T> attempt) {
+        String name = provider.getName();
+        return concurrencyLimiter.acquire(name).thenMany(Flux.defer(() -> {
+            if (!circuitBreaker.tryAcquire(name)) {
+                concurrencyLimiter.release(name);
+                return Flux.error(circuitOpen(name));
+            }
+            Outcome outcome = new Outcome(name);
+            return attempt
+                .doOnComplete(outcome::success)
+                .doOnError(outcome::failure)
+                .doOnCancel(outcome::cancel);
+        }));
+    }
+
+    /**
+     * Look up a provider by name
+     */
+    public LLMProvider getProvider(String name) {
+        LLMProvider provider = providers.get(name.toLowerCase());
+        if (provider == null) {
+            throw new IllegalArgumentException("Unsupported LLM provider: " + name);
+        }
+        return provider;
+    }
+
+    private LLMProvider preferred() {
+        return getProvider(preferredProvider);
+    }
+
+    private boolean shouldHedge(LLMRequest request) {
+        return hedgingEnabled && hedgedOperations.contains(request.getOperation().getValue());
+    }
+
+    private boolean isHealthy(LLMProvider provider) {
+        return stats.get(provider.getName()).errorRate() <= maxErrorRate;
+    }
+
+    /**
+     * Median latency used for ordering; providers without enough samples sort after measured ones,
+     * except the preferred provider, which is tried first until measurements say otherwise
+     */
+    private long routingLatency(LLMProvider provider, boolean preferred) {
+        ProviderStats providerStats = stats.get(provider.getName());
+        if (providerStats.sampleCount() < minSamples) {
+            return preferred ? 0 : Long.MAX_VALUE;
+        }
+        return providerStats.percentileNanos(0.5);
+    }
+
+    private Duration hedgeDelay(LLMProvider provider) {
+        ProviderStats providerStats = stats.get(provider.getName());
+        if (providerStats.sampleCount() < minSamples) {
+            return initialHedgeDelay;
+        }
+        Duration p95 = Duration.ofNanos(providerStats.percentileNanos(0.95));
+        return p95.compareTo(minHedgeDelay) > 0 ? p95 : minHedgeDelay;
+    }
+
+    private <T> Mono<T> trackWithFailover(List<LLMProvider> candidates, int index, Function<LLMProvider, Mono<T>> call) {
+        return attempt(candidates.get(index), call)
+            .onErrorResume(LLMProviderUnavailableException.class, e -> {
+                if (index + 1 >= candidates.size()) {
+                    return Mono.error(e);
+                }
+                logger.warn("{}, failing over to {}", e.getMessage(), candidates.get(index + 1).getName());
+                return trackWithFailover(candidates, index + 1, call);
+            });
+    }
+
+    private <T> Flux<T> streamWithFailover(List<LLMProvider> candidates, int index, Function<LLMProvider, Flux<T>> call) {
+        LLMProvider provider = candidates.get(index);
+        Flux<T> stream = circuitBreaker.allowsCalls(provider.getName())
+            ? call.apply(provider)
+            : Flux.error(circuitOpen(provider.getName()));
+        return stream.onErrorResume(LLMProviderUnavailableException.class, e -> {
+            if (index + 1 >= candidates.size()) {
+                return Flux.error(e);
+            }
+            logger.warn("{}, failing over to {}", e.getMessage(), candidates.get(index + 1).getName());
+            return streamWithFailover(candidates, index + 1, call);
+        });
+    }
+
+    /**
+     * Invoke the call for one provider, skipping providers whose circuit is open before they are rate limited
+     */
+    private <T> Mono<T> attempt(LLMProvider provider, Function<LLMProvider, Mono<T>> call) {
+        return Mono.defer(() -> circuitBreaker.allowsCalls(provider.getName())
+            ? call.apply(provider)
+            : Mono.error(circuitOpen(provider.getName())));
+    }
+
+    private static LLMProviderUnavailableException circuitOpen(String provider) {
+        return new LLMProviderUnavailableException(provider, "Circuit for LLM provider " + provider + " is open");
+    }
+
+    /**
+     * Records the outcome of one admitted attempt exactly once
+     */
+    private class Outcome {
+        private final String provider;
+        private final ProviderStats providerStats;
+        private final long start = System.nanoTime();
+
+        Outcome(String provider) {
+            this.provider = provider;
+            this.providerStats = stats.get(provider);
+        }
+
+        void success() {
+            long elapsed = System.nanoTime() - start;
+            providerStats.recordSuccess(elapsed, errorRateAlpha);
+            circuitBreaker.onSuccess(provider);
+            concurrencyLimiter.onSuccess(provider, elapsed);
+        }
+
+        void failure(Throwable e) {
+            providerStats.recordFailure(errorRateAlpha);
+            circuitBreaker.onFailure(provider, e);
+            concurrencyLimiter.onFailure(provider, e);
+        }
+
+        // A cancelled call (lost a hedge) still tells us the provider took at least this long
+        void cancel() {
+            providerStats.recordLatency(System.nanoTime() - start);
+            circuitBreaker.release(provider);
+            concurrencyLimiter.release(provider);
+        }
+    }
+
+    /**
+     * Latency window and error rate of one provider
+     */
+    private static class ProviderStats {
+        private final long[] latencies;
+        private int next;
+        private int count;
+        private double errorRate;
+
+        ProviderStats(int window) {
+            this.latencies = new long[Math.max(1, window)];
+        }
+
+        synchronized void recordSuccess(long nanos, double alpha) {
+            recordLatency(nanos);
+            errorRate = (1 - alpha) * errorRate;
+        }
+
+        synchronized void recordFailure(double alpha) {
+            errorRate = (1 - alpha) * errorRate + alpha;
+        }
+
+        synchronized void recordLatency(long nanos) {
+            latencies[next] = nanos;
+            next = (next + 1) % latencies.length;
+            count = Math.min(count + 1, latencies.length);
+        }
+
+        synchronized int sampleCount() {
+            return count;
+        }
+
+        synchronized double errorRate() {
+            return errorRate;
+        }
+
+        synchronized long percentileNanos(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(quantile * count) - 1;
+            return sorted[Math.max(0, Math.min(index, count - 1))];
+        }
+
+        double percentileMillis(double quantile) {
+            return percentileNanos(quantile) / 1_000_000.0;
+        }
+    }
+}
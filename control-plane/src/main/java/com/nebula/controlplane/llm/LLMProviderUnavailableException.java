@@ -0,0 +1,18 @@
+package com.nebula.controlplane.llm;
+
+/**
+ * Raised without calling a provider when its circuit breaker is open or its concurrency limit is reached
+ */
+public class LLMProviderUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String provider;
+
+    public LLMProviderUnavailableException(String provider, String message) {
+        super(message);
+        this.provider = provider;
+    }
+
+    public String getProvider() { return provider; }
+}
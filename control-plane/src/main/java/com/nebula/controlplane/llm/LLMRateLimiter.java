@@ -0,0 +1,268 @@
+package com.nebula.controlplane.llm;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enforces per-provider request and token rate limits for outgoing LLM calls.
+ * Each provider has two token buckets (requests per minute and tokens per minute) and a
+ * priority queue of waiting requests, so interactive calls overtake bulk code generation
+ * whenever the provider is saturated. Limits are read from
+ * {@code nebula.llm.<provider>.rate-limit.*}; a limit of 0 disables that dimension.
+ */
+@Component
+public class LLMRateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(LLMRateLimiter.class);
+
+    @Value("${nebula.llm.rate-limit.max-queue-depth:1000}")
+    private int maxQueueDepth;
+
+    @Value("${nebula.llm.rate-limit.estimated-completion-tokens:1024}")
+    private long estimatedCompletionTokens;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, ProviderLimiter> limiters = new ConcurrentHashMap<>();
+
+    /**
+     * Wait until the provider has capacity for the request; completes empty once admitted
+     */
+    public Mono<Void> acquire(String provider, LLMRequest request) {
+        long tokens = request.estimatePromptTokens() + estimatedCompletionTokens;
+        return limiterFor(provider).acquire(request.getPriority(), tokens);
+    }
+
+    /**
+     * Reconcile the token bucket with the usage reported by the provider
+     */
+    public void recordUsage(String provider, LLMRequest request, long actualTokens) {
+        long estimated = request.estimatePromptTokens() + estimatedCompletionTokens;
+        limiterFor(provider).adjustTokens(estimated - actualTokens);
+    }
+
+    /**
+     * Pause all admissions for a provider after it reported throttling
+     */
+    public void onThrottled(String provider, Duration retryAfter) {
+        logger.warn("LLM provider {} throttled requests, pausing admissions for {}", provider, retryAfter);
+        limiterFor(provider).pause(retryAfter);
+    }
+
+    private ProviderLimiter limiterFor(String provider) {
+        return limiters.computeIfAbsent(provider, this::createLimiter);
+    }
+
+    private ProviderLimiter createLimiter(String provider) {
+        String prefix = "nebula.llm." + provider + ".rate-limit.";
+        long requestsPerMinute = environment.getProperty(prefix + "requests-per-minute", Long.class, 0L);
+        long tokensPerMinute = environment.getProperty(prefix + "tokens-per-minute", Long.class, 0L);
+        logger.info("LLM rate limits for {}: {} requests/min, {} tokens/min", provider, requestsPerMinute, tokensPerMinute);
+        return new ProviderLimiter(provider, requestsPerMinute, tokensPerMinute);
+    }
+
+    /**
+     * A token bucket refilled continuously at {@code capacity} units per minute
+     */
+    private static class TokenBucket {
+        private final double capacity;
+        private final double refillPerNano;
+        private double available;
+        private long lastRefill;
+
+        TokenBucket(long perMinute) {
+            this.capacity = perMinute;
+            this.refillPerNano = perMinute / (double) TimeUnit.MINUTES.toNanos(1);
+            this.available = perMinute;
+            this.lastRefill = System.nanoTime();
+        }
+
+        boolean unlimited() {
+            return capacity <= 0;
+        }
+
+        void refill(long now) {
+            available = Math.min(capacity, available + (now - lastRefill) * refillPerNano);
+            lastRefill = now;
+        }
+
+        double clamp(double amount) {
+            return Math.min(amount, capacity);
+        }
+
+        long nanosUntil(double amount) {
+            if (unlimited() || available >= amount) {
+                return 0;
+            }
+            return (long) Math.ceil((amount - available) / refillPerNano);
+        }
+    }
+
+    /**
+     * A request waiting for capacity
+     */
+    private static class Waiter {
+        final LLMPriority priority;
+        final long sequence;
+        final double tokens;
+        final long enqueuedAt;
+        final MonoSink<Void> sink;
+
+        Waiter(LLMPriority priority, long sequence, double tokens, MonoSink<Void> sink) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.tokens = tokens;
+            this.enqueuedAt = System.nanoTime();
+            this.sink = sink;
+        }
+    }
+
+    /**
+     * Rate limiting state for one provider
+     */
+    private class ProviderLimiter {
+        private final String provider;
+        private final TokenBucket requests;
+        private final TokenBucket tokens;
+        private final PriorityQueue<Waiter> queue = new PriorityQueue<>(
+            Comparator.comparing((Waiter w) -> w.priority).thenComparingLong(w -> w.sequence));
+        private final Map<LLMPriority, Timer> waitTimers = new ConcurrentHashMap<>();
+        private long sequence;
+        private long pausedUntil;
+        private Disposable scheduledDrain;
+
+        ProviderLimiter(String provider, long requestsPerMinute, long tokensPerMinute) {
+            this.provider = provider;
+            this.requests = new TokenBucket(requestsPerMinute);
+            this.tokens = new TokenBucket(tokensPerMinute);
+
+            Gauge.builder("nebula.llm.ratelimit.queue.depth", this, ProviderLimiter::queueDepth)
+                .tag("provider", provider)
+                .register(meterRegistry);
+        }
+
+        Mono<Void> acquire(LLMPriority priority, long requestedTokens) {
+            if (requests.unlimited() && tokens.unlimited()) {
+                return Mono.empty();
+            }
+            return Mono.create(sink -> {
+                Waiter waiter;
+                synchronized (this) {
+                    if (queue.size() >= maxQueueDepth) {
+                        sink.error(new IllegalStateException("LLM request queue full for provider: " + provider));
+                        return;
+                    }
+                    waiter = new Waiter(priority, sequence++, tokens.clamp(requestedTokens), sink);
+                    queue.add(waiter);
+                }
+                sink.onCancel(() -> remove(waiter));
+                drain();
+            });
+        }
+
+        void adjustTokens(long delta) {
+            synchronized (this) {
+                if (!tokens.unlimited()) {
+                    tokens.refill(System.nanoTime());
+                    tokens.available = Math.min(tokens.capacity, tokens.available + delta);
+                }
+            }
+            drain();
+        }
+
+        synchronized void pause(Duration duration) {
+            pausedUntil = Math.max(pausedUntil, System.nanoTime() + duration.toNanos());
+            scheduleDrain(duration.toNanos());
+        }
+
+        synchronized int queueDepth() {
+            return queue.size();
+        }
+
+        private synchronized void remove(Waiter waiter) {
+            queue.remove(waiter);
+        }
+
+        /**
+         * Admit waiters in priority order while both buckets have capacity.
+         * The head of the queue blocks everyone behind it so large bulk requests cannot starve.
+         */
+        private void drain() {
+            List<Waiter> admitted = new ArrayList<>();
+            synchronized (this) {
+                long now = System.nanoTime();
+                if (now < pausedUntil) {
+                    scheduleDrain(pausedUntil - now);
+                    return;
+                }
+                requests.refill(now);
+                tokens.refill(now);
+
+                while (!queue.isEmpty()) {
+                    Waiter head = queue.peek();
+                    long wait = Math.max(requests.nanosUntil(1), tokens.nanosUntil(head.tokens));
+                    if (wait > 0) {
+                        scheduleDrain(wait);
+                        break;
+                    }
+                    queue.poll();
+                    if (!requests.unlimited()) {
+                        requests.available -= 1;
+                    }
+                    if (!tokens.unlimited()) {
+                        tokens.available -= head.tokens;
+                    }
+                    admitted.add(head);
+                }
+            }
+
+            for (Waiter waiter : admitted) {
+                waitTimer(waiter.priority).record(System.nanoTime() - waiter.enqueuedAt, TimeUnit.NANOSECONDS);
+                waiter.sink.success();
+            }
+        }
+
+        private void scheduleDrain(long delayNanos) {
+            if (scheduledDrain != null && !scheduledDrain.isDisposed()) {
+                return;
+            }
+            scheduledDrain = Schedulers.parallel().schedule(() -> {
+                synchronized (this) {
+                    scheduledDrain = null;
+                }
+                drain();
+            }, delayNanos, TimeUnit.NANOSECONDS);
+        }
+
+        private Timer waitTimer(LLMPriority priority) {
+            return waitTimers.computeIfAbsent(priority, p -> Timer.builder("nebula.llm.ratelimit.wait")
+                .tag("provider", provider)
+                .tag("priority", p.name().toLowerCase())
+                .register(meterRegistry));
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.nebula.controlplane.llm;
+
+/**
+ * A single request to an LLM provider: a system prompt plus one user message.
+ */
+public class LLMRequest {
+    
+    private final LLMOperation operation;
+    private final String systemPrompt;
+    private final String userMessage;
+    private final LLMPriority priority;
+    
+    public LLMRequest(LLMOperation operation, String systemPrompt, String userMessage) {
+        this(operation, systemPrompt, userMessage, operation.getDefaultPriority());
+    }
+    
+    public LLMRequest(LLMOperation operation, String systemPrompt, String userMessage, LLMPriority priority) {
+        this.operation = operation;
+        this.systemPrompt = systemPrompt;
+        this.userMessage = userMessage;
+        this.priority = priority;
+    }
+    
+    public LLMOperation getOperation() { return operation; }
+    
+    public String getSystemPrompt() { return systemPrompt; }
+    
+    public String getUserMessage() { return userMessage; }
+    
+    public LLMPriority getPriority() { return priority; }
+    
+    /**
+     * Estimated number of prompt tokens this request will consume
+     */
+    public long estimatePromptTokens() {
+        return TokenEstimator.estimate(systemPrompt) + TokenEstimator.estimate(userMessage);
+    }
+}
@@ -0,0 +1,31 @@
+package com.nebula.controlplane.llm;
+
+/**
+ * The completed response of an LLM call, with the token usage reported by the provider.
+ */
+public class LLMResponse {
+    
+    private final String text;
+    private final String provider;
+    private final String model;
+    private final long promptTokens;
+    private final long completionTokens;
+    
+    public LLMResponse(String text, String provider, String model, long promptTokens, long completionTokens) {
+        this.text = text;
+        this.provider = provider;
+        this.model = model;
+        this.promptTokens = promptTokens;
+        this.completionTokens = completionTokens;
+    }
+    
+    public String getText() { return text; }
+    
+    public String getProvider() { return provider; }
+    
+    public String getModel() { return model; }
+    
+    public long getPromptTokens() { return promptTokens; }
+    
+    public long getCompletionTokens() { return completionTokens; }
+}
@@ -0,0 +1,321 @@
+package com.nebula.controlplane.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nebula.shared.util.JsonUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Two-tier cache for LLM responses.
+ * The first tier is an in-memory W-TinyLFU cache bounded by response size; the second tier is a
+ * local directory of JSON entries that survives restarts. Entries are keyed by a SHA-256 hash of
+ * provider, model, system prompt and user message, so identical requests never reach the model twice.
+ */
+@Component
+public class LLMResponseCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(LLMResponseCache.class);
+
+    @Value("${nebula.llm.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${nebula.llm.cache.memory.max-size-bytes:67108864}")
+    private long memoryMaxSizeBytes;
+
+    @Value("${nebula.llm.cache.memory.ttl:24h}")
+    private Duration memoryTtl;
+
+    @Value("${nebula.llm.cache.disk.enabled:true}")
+    private boolean diskEnabled;
+
+    @Value("${nebula.llm.cache.disk.directory:data/llm-cache}")
+    private String diskDirectory;
+
+    @Value("${nebula.llm.cache.disk.max-size-bytes:1073741824}")
+    private long diskMaxSizeBytes;
+
+    @Value("${nebula.llm.cache.disk.ttl:7d}")
+    private Duration diskTtl;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Cache<String, LLMResponse> memoryCache;
+    private Path diskRoot;
+    private final Map<String, Long> diskEntrySizes = new ConcurrentHashMap<>();
+    private final AtomicLong diskSizeBytes = new AtomicLong();
+
+    private Counter diskHits;
+    private Counter diskMisses;
+
+    @PostConstruct
+    public void init() {
+        this.memoryCache = Caffeine.newBuilder()
+            .maximumWeight(memoryMaxSizeBytes)
+            .weigher((String key, LLMResponse response) -> key.length() + response.getText().length() * 2)
+            .expireAfterWrite(memoryTtl)
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, memoryCache, "nebula.llm.response");
+
+        this.diskHits = Counter.builder("nebula.llm.cache.disk.requests").tag("result", "hit").register(meterRegistry);
+        this.diskMisses = Counter.builder("nebula.llm.cache.disk.requests").tag("result", "miss").register(meterRegistry);
+        meterRegistry.gauge("nebula.llm.cache.disk.size", diskSizeBytes);
+
+        if (enabled && diskEnabled) {
+            this.diskRoot = Paths.get(diskDirectory);
+            loadDiskIndex();
+        }
+    }
+
+    /**
+     * Build the cache key for a request sent to the given provider and model
+     */
+    public String key(String provider, String model, LLMRequest request) {
+        return hash(provider, model, normalize(request.getSystemPrompt()), normalize(request.getUserMessage()));
+    }
+
+    /**
+     * Build a key for the request alone, whichever provider serves it
+     */
+    public String key(LLMRequest request) {
+        return hash(normalize(request.getSystemPrompt()), normalize(request.getUserMessage()));
+    }
+
+    private static String hash(String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : parts) {
+                digest.update(part.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Look up a cached response, checking memory first and then disk
+     */
+    public Mono<LLMResponse> get(String key) {
+        if (!enabled) {
+            return Mono.empty();
+        }
+
+        LLMResponse cached = memoryCache.getIfPresent(key);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        if (diskRoot == null) {
+            return Mono.empty();
+        }
+
+        return Mono.fromCallable(() -> readFromDisk(key))
+            .subscribeOn(Schedulers.boundedElastic())
+            .doOnNext(response -> memoryCache.put(key, response));
+    }
+
+    /**
+     * Store a response in both tiers; the disk write happens in the background
+     */
+    public void put(String key, LLMResponse response) {
+        if (!enabled) {
+            return;
+        }
+
+        memoryCache.put(key, response);
+        if (diskRoot != null) {
+            Mono.fromRunnable(() -> writeToDisk(key, response))
+                .subscribeOn(Schedulers.boundedElastic())
+                .subscribe(null, e -> logger.warn("Failed to write LLM cache entry {}", key, e));
+        }
+    }
+
+    /**
+     * Remove an entry from both tiers, e.g. a response that turned out to be unusable
+     */
+    public void evict(String key) {
+        if (!enabled) {
+            return;
+        }
+
+        memoryCache.invalidate(key);
+        if (diskRoot != null) {
+            Mono.fromRunnable(() -> deleteEntry(key, entryPath(key)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .subscribe(null, e -> logger.warn("Failed to evict LLM cache entry {}", key, e));
+        }
+    }
+
+    /**
+     * Normalize prompt text so that insignificant whitespace differences share a cache entry
+     */
+    private String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder(text.length());
+        for (String line : text.replace("\r\n", "\n").split("\n", -1)) {
+            normalized.append(line.stripTrailing()).append('\n');
+        }
+        return normalized.toString().strip();
+    }
+
+    private LLMResponse readFromDisk(String key) throws IOException {
+        Path file = entryPath(key);
+        if (!Files.exists(file)) {
+            diskMisses.increment();
+            return null;
+        }
+
+        JsonNode entry = JsonUtil.getObjectMapper().readTree(file.toFile());
+        Instant storedAt = Instant.parse(entry.path("storedAt").asText());
+        if (storedAt.plus(diskTtl).isBefore(Instant.now())) {
+            deleteEntry(key, file);
+            diskMisses.increment();
+            return null;
+        }
+
+        // Track recency through the modification time so eviction removes the least recently used entries
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+        diskHits.increment();
+        return new LLMResponse(
+            entry.path("text").asText(),
+            entry.path("provider").asText(),
+            entry.path("model").asText(),
+            entry.path("promptTokens").asLong(),
+            entry.path("completionTokens").asLong()
+        );
+    }
+
+    private void writeToDisk(String key, LLMResponse response) {
+        try {
+            ObjectNode entry = JsonUtil.getObjectMapper().createObjectNode();
+            entry.put("storedAt", Instant.now().toString());
+            entry.put("provider", response.getProvider());
+            entry.put("model", response.getModel());
+            entry.put("promptTokens", response.getPromptTokens());
+            entry.put("completionTokens", response.getCompletionTokens());
+            entry.put("text", response.getText());
+            byte[] bytes = JsonUtil.getObjectMapper().writeValueAsBytes(entry);
+
+            Path file = entryPath(key);
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), key, ".tmp");
+            Files.write(temp, bytes);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            Long previous = diskEntrySizes.put(key, (long) bytes.length);
+            diskSizeBytes.addAndGet(bytes.length - (previous != null ? previous : 0L));
+
+            if (diskSizeBytes.get() > diskMaxSizeBytes) {
+                evictDiskEntries();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write LLM cache entry", e);
+        }
+    }
+
+    /**
+     * Remove least recently used disk entries until the store is back under 90% of its limit
+     */
+    private synchronized void evictDiskEntries() {
+        long target = diskMaxSizeBytes * 9 / 10;
+        if (diskSizeBytes.get() <= target) {
+            return;
+        }
+
+        List<Path> files = new ArrayList<>();
+        for (String key : diskEntrySizes.keySet()) {
+            files.add(entryPath(key));
+        }
+        files.sort(Comparator.comparingLong(this::lastModified));
+
+        for (Path file : files) {
+            if (diskSizeBytes.get() <= target) {
+                break;
+            }
+            String key = file.getFileName().toString().replace(".json", "");
+            deleteEntry(key, file);
+        }
+        logger.info("Evicted LLM disk cache entries, size is now {} bytes", diskSizeBytes.get());
+    }
+
+    private void deleteEntry(String key, Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Failed to delete LLM cache entry {}", file, e);
+        }
+        Long size = diskEntrySizes.remove(key);
+        if (size != null) {
+            diskSizeBytes.addAndGet(-size);
+        }
+    }
+
+    private void loadDiskIndex() {
+        try {
+            Files.createDirectories(diskRoot);
+            try (Stream<Path> paths = Files.walk(diskRoot, 2)) {
+                paths.filter(path -> path.toString().endsWith(".json")).forEach(path -> {
+                    try {
+                        long size = Files.size(path);
+                        diskEntrySizes.put(path.getFileName().toString().replace(".json", ""), size);
+                        diskSizeBytes.addAndGet(size);
+                    } catch (IOException e) {
+                        logger.warn("Failed to index LLM cache entry {}", path, e);
+                    }
+                });
+            }
+            logger.info("LLM disk cache loaded: {} entries, {} bytes", diskEntrySizes.size(), diskSizeBytes.get());
+        } catch (IOException e) {
+            logger.error("Failed to initialize LLM disk cache at {}, disk tier disabled", diskRoot, e);
+            diskRoot = null;
+        }
+    }
+
+    private Path entryPath(String key) {
+        return diskRoot.resolve(key.substring(0, 2)).resolve(key + ".json");
+    }
+
+    private long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.nebula.controlplane.llm;
+
+import io.netty.handler.timeout.ReadTimeoutException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BooleanSupplier;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Retry policy for LLM provider calls.
+ * Only throttling (429), server errors and timeouts are retried. Backoff is exponential with jitter
+ * and never shorter than the provider's Retry-After header; a 429 also pauses the provider's rate
+ * limiter so queued requests do not pile onto a throttled provider.
+ */
+@Component
+public class LLMRetryPolicy {
+
+    private static final Logger logger = LoggerFactory.getLogger(LLMRetryPolicy.class);
+
+    @Value("${nebula.llm.retry.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${nebula.llm.retry.min-backoff:1s}")
+    private Duration minBackoff;
+
+    @Value("${nebula.llm.retry.max-backoff:30s}")
+    private Duration maxBackoff;
+
+    @Autowired
+    private LLMRateLimiter rateLimiter;
+
+    @Autowired
+    private LLMMetrics metrics;
+
+    /**
+     * Build the retry spec for calls to the given provider
+     */
+    public Retry forProvider(String provider) {
+        return forProvider(provider, () -> true);
+    }
+
+    /**
+     * Build the retry spec for streaming calls to the given provider; a stream is only retried while
+     * {@code restartable} holds, i.e. before any fragment has been passed on
+     */
+    public Retry forProvider(String provider, BooleanSupplier restartable) {
+        return Retry.from(signals -> signals.concatMap(signal -> {
+            Throwable failure = signal.failure();
+            if (signal.totalRetries() >= maxAttempts || !isRetryable(failure) || !restartable.getAsBoolean()) {
+                return Mono.error(failure);
+            }
+
+            Duration delay = backoff(signal.totalRetries());
+            Duration retryAfter = retryAfter(failure);
+            if (retryAfter != null) {
+                rateLimiter.onThrottled(provider, retryAfter);
+                delay = retryAfter.compareTo(delay) > 0 ? retryAfter : delay;
+            }
+
+            logger.warn("Retrying {} call after {} (attempt {}): {}",
+                       provider, delay, signal.totalRetries() + 1, failure.toString());
+            metrics.recordRetry(provider, retryReason(failure));
+            return Mono.delay(delay);
+        }));
+    }
+
+    /**
+     * Whether the failure is transient on the provider's side: throttling, a server error, a connection failure or a timeout
+     */
+    static boolean isRetryable(Throwable failure) {
+        if (failure instanceof WebClientResponseException response) {
+            int status = response.getStatusCode().value();
+            return status == 429 || status >= 500;
+        }
+        return failure instanceof WebClientRequestException
+            || failure instanceof TimeoutException
+            || failure instanceof ReadTimeoutException;
+    }
+
+    private String retryReason(Throwable failure) {
+        if (failure instanceof WebClientResponseException response) {
+            return response.getStatusCode().value() == 429 ? "throttled" : "server-error";
+        }
+        return failure instanceof WebClientRequestException ? "connection" : "timeout";
+    }
+
+    private Duration backoff(long attempt) {
+        long base = minBackoff.toMillis() << Math.min(attempt, 16);
+        long capped = Math.min(base, maxBackoff.toMillis());
+        long jitter = ThreadLocalRandom.current().nextLong(capped / 2 + 1);
+        return Duration.ofMillis(capped / 2 + jitter);
+    }
+
+    private Duration retryAfter(Throwable failure) {
+        if (!(failure instanceof WebClientResponseException response) || response.getStatusCode().value() != 429) {
+            return null;
+        }
+        String header = response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+        if (header != null) {
+            try {
+                return Duration.ofSeconds(Long.parseLong(header.trim()));
+            } catch (NumberFormatException e) {
+                logger.debug("Ignoring non-numeric Retry-After header: {}", header);
+            }
+        }
+        return minBackoff;
+    }
+}
@@ -0,0 +1,106 @@
+package com.nebula.controlplane.llm;
+
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+import java.time.Duration;
+
+/**
+ * Builds the WebClients used by LLM providers.
+ * All providers share one pooled connection provider and one small set of event-loop threads,
+ * so hundreds of concurrent generations do not need hundreds of threads.
+ */
+@Component
+public class LLMWebClientFactory {
+
+    private static final Logger logger = LoggerFactory.getLogger(LLMWebClientFactory.class);
+
+    @Value("${nebula.llm.http.max-connections:500}")
+    private int maxConnections;
+
+    @Value("${nebula.llm.http.pending-acquire-max-count:10000}")
+    private int pendingAcquireMaxCount;
+
+    @Value("${nebula.llm.http.pending-acquire-timeout:60s}")
+    private Duration pendingAcquireTimeout;
+
+    @Value("${nebula.llm.http.max-idle-time:30s}")
+    private Duration maxIdleTime;
+
+    @Value("${nebula.llm.http.max-life-time:5m}")
+    private Duration maxLifeTime;
+
+    @Value("${nebula.llm.http.connect-timeout:5s}")
+    private Duration connectTimeout;
+
+    @Value("${nebula.llm.http.response-timeout:180s}")
+    private Duration responseTimeout;
+
+    @Value("${nebula.llm.http.event-loop-threads:4}")
+    private int eventLoopThreads;
+
+    @Value("${nebula.llm.http.http2-enabled:true}")
+    private boolean http2Enabled;
+
+    @Value("${nebula.llm.http.max-in-memory-size:16777216}")
+    private int maxInMemorySize;
+
+    private ConnectionProvider connectionProvider;
+    private LoopResources loopResources;
+
+    @PostConstruct
+    public void init() {
+        this.connectionProvider = ConnectionProvider.builder("nebula-llm")
+            .maxConnections(maxConnections)
+            .pendingAcquireMaxCount(pendingAcquireMaxCount)
+            .pendingAcquireTimeout(pendingAcquireTimeout)
+            .maxIdleTime(maxIdleTime)
+            .maxLifeTime(maxLifeTime)
+            .evictInBackground(maxIdleTime)
+            .build();
+        this.loopResources = LoopResources.create("nebula-llm", eventLoopThreads, true);
+
+        logger.info("LLM HTTP pool initialized: maxConnections={}, eventLoopThreads={}, http2={}",
+                   maxConnections, eventLoopThreads, http2Enabled);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        connectionProvider.dispose();
+        loopResources.dispose();
+    }
+
+    /**
+     * Create a WebClient for the given provider base URL.
+     * HTTPS endpoints negotiate HTTP/2 through ALPN and fall back to HTTP/1.1;
+     * plain HTTP endpoints (local stubs) use HTTP/1.1.
+     */
+    public WebClient create(String baseUrl) {
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+            .runOn(loopResources)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+            .responseTimeout(responseTimeout)
+            .compress(true);
+
+        if (http2Enabled && baseUrl.startsWith("https")) {
+            httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11).secure();
+        }
+
+        return WebClient.builder()
+            .baseUrl(baseUrl)
+            .clientConnector(new ReactorClientHttpConnector(httpClient))
+            .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(maxInMemorySize))
+            .build();
+    }
+}
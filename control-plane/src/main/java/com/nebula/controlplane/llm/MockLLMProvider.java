@@ -0,0 +1,351 @@
+package com.nebula.controlplane.llm;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.nebula.shared.util.JsonUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Offline provider that synthesizes responses for load testing, selected with {@code nebula.llm.provider=mock}.
+ * Plans have a configurable number of agents and tools and a random mix of nested sequential, parallel,
+ * loop and conditional steps; code responses contain blobs of a configurable size and honour the batch
+ * artifact format. Latency follows a fixed, uniform or log-normal distribution, streaming emits chunks at
+ * a configured token rate, and a configurable share of calls fail with 429, 503 or a timeout.
+ *
+ * The provider only reports itself as configured when it is the selected provider, so it never
+ * receives routed or hedged traffic meant for a real vendor.
+ */
+@Component
+public class MockLLMProvider implements LLMProvider {
+
+    public static final String NAME = "mock";
+
+    private static final Pattern LANGUAGE_PATTERN = Pattern.compile("expert (\\w+) developer");
+    private static final Pattern ARTIFACT_PATTERN = Pattern.compile("^" + Pattern.quote(ArtifactBatcher.MARKER) + " (\\S+)$", Pattern.MULTILINE);
+
+    private static final String[] AGENT_TYPES = {"data", "control", "tool"};
+    private static final String[] TOOL_TYPES = {"database", "api", "file", "notification", "integration"};
+    private static final String[] STEP_TYPES = {"sequential", "parallel", "loop", "conditional"};
+    /**
+     * The schema only allows sequential and parallel steps in a loop body or conditional branch
+     */
+    private static final String[] NESTED_STEP_TYPES = {"sequential", "parallel"};
+
+    @Value("${nebula.llm.provider:gemini}")
+    private String selectedProvider;
+
+    @Value("${nebula.llm.mock.model:mock-1}")
+    private String model;
+
+    @Value("${nebula.llm.mock.seed:0}")
+    private long seed;
+
+    @Value("${nebula.llm.mock.plan.agents:6}")
+    private int planAgents;
+
+    @Value("${nebula.llm.mock.plan.tools-per-agent:1}")
+    private int toolsPerAgent;
+
+    @Value("${nebula.llm.mock.plan.steps:4}")
+    private int planSteps;
+
+    @Value("${nebula.llm.mock.plan.max-depth:2}")
+    private int maxDepth;
+
+    @Value("${nebula.llm.mock.plan.parallel-width:3}")
+    private int parallelWidth;
+
+    @Value("${nebula.llm.mock.plan.languages:java,python}")
+    private List<String> languages;
+
+    @Value("${nebula.llm.mock.code.size-bytes:4096}")
+    private int codeSizeBytes;
+
+    @Value("${nebula.llm.mock.latency.distribution:lognormal}")
+    private String latencyDistribution;
+
+    @Value("${nebula.llm.mock.latency.median:800ms}")
+    private Duration latencyMedian;
+
+    @Value("${nebula.llm.mock.latency.sigma:0.5}")
+    private double latencySigma;
+
+    @Value("${nebula.llm.mock.latency.max:30s}")
+    private Duration latencyMax;
+
+    @Value("${nebula.llm.mock.stream.tokens-per-second:50}")
+    private double streamTokensPerSecond;
+
+    @Value("${nebula.llm.mock.stream.chunk-tokens:5}")
+    private int streamChunkTokens;
+
+    @Value("${nebula.llm.mock.failure.throttle-probability:0.0}")
+    private double throttleProbability;
+
+    @Value("${nebula.llm.mock.failure.error-probability:0.0}")
+    private double errorProbability;
+
+    @Value("${nebula.llm.mock.failure.timeout-probability:0.0}")
+    private double timeoutProbability;
+
+    @Value("${nebula.llm.mock.failure.retry-after:1s}")
+    private Duration retryAfter;
+
+    @Value("${nebula.llm.mock.failure.timeout:30s}")
+    private Duration timeout;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String getModel() {
+        return model;
+    }
+
+    @Override
+    public boolean isConfigured() {
+        return getName().equalsIgnoreCase(selectedProvider);
+    }
+
+    @Override
+    public Mono<LLMResponse> complete(LLMRequest request) {
+        return Mono.defer(() -> {
+            Random random = random(request);
+            Duration latency = sampleLatency(random);
+            Mono<LLMResponse> failure = sampleFailure(random, latency);
+            if (failure != null) {
+                return failure;
+            }
+            return Mono.delay(latency).map(tick -> {
+                String text = generate(request, random);
+                return new LLMResponse(text, getName(), model, request.estimatePromptTokens(), TokenEstimator.estimate(text));
+            });
+        });
+    }
+
+    @Override
+    public Flux<String> stream(LLMRequest request) {
+        return Flux.defer(() -> {
+            Random random = random(request);
+            Duration firstToken = sampleLatency(random);
+            Mono<LLMResponse> failure = sampleFailure(random, firstToken);
+            if (failure != null) {
+                return failure.map(LLMResponse::getText).flux();
+            }
+
+            int chunkChars = Math.max(1, streamChunkTokens * 4);
+            Duration interval = Duration.ofNanos((long) (streamChunkTokens / streamTokensPerSecond * 1_000_000_000L));
+            return Mono.delay(firstToken)
+                .flatMapIterable(tick -> chunk(generate(request, random), chunkChars))
+                .delayElements(interval);
+        });
+    }
+
+    /**
+     * Randomly fail the call with throttling, a server error or a timeout; null means the call succeeds
+     */
+    private Mono<LLMResponse> sampleFailure(Random random, Duration latency) {
+        double roll = random.nextDouble();
+        if (roll < throttleProbability) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, retryAfter.toSeconds())));
+            return Mono.delay(latency.dividedBy(10)).then(Mono.error(WebClientResponseException.create(
+                HttpStatus.TOO_MANY_REQUESTS.value(), "Too Many Requests", headers, new byte[0], StandardCharsets.UTF_8)));
+        }
+        roll -= throttleProbability;
+        if (roll < errorProbability) {
+            return Mono.delay(latency).then(Mono.error(WebClientResponseException.create(
+                HttpStatus.SERVICE_UNAVAILABLE.value(), "Service Unavailable", new HttpHeaders(), new byte[0], StandardCharsets.UTF_8)));
+        }
+        roll -= errorProbability;
+        if (roll < timeoutProbability) {
+            return Mono.delay(timeout).then(Mono.error(new TimeoutException("Mock LLM call timed out after " + timeout)));
+        }
+        return null;
+    }
+
+    private Duration sampleLatency(Random random) {
+        double median = latencyMedian.toNanos();
+        double nanos = switch (latencyDistribution.toLowerCase()) {
+            case "fixed" -> median;
+            case "uniform" -> median * (1 - latencySigma + 2 * latencySigma * random.nextDouble());
+            case "lognormal" -> median * Math.exp(latencySigma * random.nextGaussian());
+            default -> throw new IllegalArgumentException("Unknown mock latency distribution: " + latencyDistribution);
+        };
+        return Duration.ofNanos((long) Math.max(0, Math.min(nanos, latencyMax.toNanos())));
+    }
+
+    private Random random(LLMRequest request) {
+        if (seed == 0) {
+            return ThreadLocalRandom.current();
+        }
+        return new Random(seed * 31 + request.getSystemPrompt().hashCode() * 17L + request.getUserMessage().hashCode());
+    }
+
+    private String generate(LLMRequest request, Random random) {
+        return switch (request.getOperation()) {
+            case PLAN -> JsonUtil.toJson(generatePlan(random));
+            case SUGGEST -> JsonUtil.toJson(generateAgents(random));
+            case AGENT_CODE, TOOL_CODE -> generateCode(request, random);
+            case CHAT -> "Mock response to: " + request.getUserMessage();
+        };
+    }
+
+    private ObjectNode generatePlan(Random random) {
+        ObjectNode plan = JsonUtil.getObjectMapper().createObjectNode();
+        plan.put("planId", "mock-plan-" + Long.toHexString(random.nextLong()));
+        plan.put("version", "1.0.0");
+
+        ObjectNode metadata = plan.putObject("metadata");
+        metadata.put("name", "Mock Execution Plan");
+        metadata.put("description", "Synthetic plan with " + planAgents + " agents");
+        metadata.put("createdBy", "Mock-LLM");
+        metadata.put("createdAt", Instant.now().toString());
+
+        plan.set("agents", generateAgents(random));
+
+        ObjectNode flow = plan.putObject("executionFlow");
+        flow.put("type", maxDepth > 0 ? "hybrid" : "sequential");
+        ArrayNode steps = flow.putArray("steps");
+        int[] counters = new int[2];
+        for (int i = 0; i < planSteps; i++) {
+            steps.add(generateStep(random, 0, counters));
+        }
+        return plan;
+    }
+
+    private ArrayNode generateAgents(Random random) {
+        ArrayNode agents = JsonUtil.getObjectMapper().createArrayNode();
+        for (int i = 0; i < planAgents; i++) {
+            ObjectNode agent = agents.addObject();
+            agent.put("agentId", agentId(i));
+            agent.put("name", "Mock Agent " + i);
+            agent.put("type", AGENT_TYPES[i % AGENT_TYPES.length]);
+            agent.put("language", languages.get(random.nextInt(languages.size())));
+            ArrayNode capabilities = agent.putArray("capabilities");
+            for (int c = 0; c < 3; c++) {
+                capabilities.add("capability-" + random.nextInt(100));
+            }
+            if (i > 0) {
+                agent.putArray("dependencies").add(agentId(i - 1));
+            }
+            ArrayNode tools = agent.putArray("tools");
+            for (int t = 0; t < toolsPerAgent; t++) {
+                ObjectNode tool = tools.addObject();
+                tool.put("toolId", agentId(i) + "-tool-" + t);
+                tool.put("name", "Mock Tool " + i + "." + t);
+                tool.put("type", TOOL_TYPES[random.nextInt(TOOL_TYPES.length)]);
+                tool.put("description", "Synthetic tool " + t + " of agent " + i);
+            }
+        }
+        return agents;
+    }
+
+    /**
+     * Generate a step; composite steps nest until the maximum depth, and only top-level steps may be
+     * loops or conditionals. {@code counters} holds the next step number and the next agent index
+     * (agents are assigned round-robin).
+     */
+    private ObjectNode generateStep(Random random, int depth, int[] counters) {
+        String[] types = depth == 0 ? STEP_TYPES : NESTED_STEP_TYPES;
+        String type = depth < maxDepth ? types[random.nextInt(types.length)] : "sequential";
+        ObjectNode step = JsonUtil.getObjectMapper().createObjectNode();
+        String stepId = "mock-step-" + counters[0]++;
+        step.put("stepId", stepId);
+        step.put("type", type);
+        step.put("name", "Mock " + type + " step");
+
+        switch (type) {
+            case "sequential" -> {
+                step.put("agentId", nextAgent(counters));
+                step.putArray("outputs").add(stepId + "-result");
+            }
+            case "parallel" -> {
+                ArrayNode parallelAgents = step.putArray("parallelAgents");
+                for (int i = 0; i < parallelWidth; i++) {
+                    parallelAgents.addObject().put("agentId", nextAgent(counters));
+                }
+                step.put("waitForAll", true);
+            }
+            case "loop" -> {
+                step.put("loopType", "while");
+                ArrayNode body = step.putArray("body");
+                body.add(generateStep(random, depth + 1, counters));
+                ObjectNode exitCondition = step.putObject("exitCondition");
+                exitCondition.put("expression", stepId + "-done == true");
+                exitCondition.put("checkAgentId", nextAgent(counters));
+                exitCondition.put("maxIterations", 1 + random.nextInt(5));
+            }
+            default -> {
+                step.putObject("condition").put("expression", stepId + "-flag == true");
+                step.set("thenStep", generateStep(random, depth + 1, counters));
+                step.set("elseStep", generateStep(random, depth + 1, counters));
+            }
+        }
+        return step;
+    }
+
+    private String nextAgent(int[] counters) {
+        return agentId(counters[1]++ % Math.max(1, planAgents));
+    }
+
+    private String agentId(int index) {
+        return "mock-agent-" + index;
+    }
+
+    private String generateCode(LLMRequest request, Random random) {
+        Matcher language = LANGUAGE_PATTERN.matcher(request.getSystemPrompt());
+        String fence = language.find() ? language.group(1) : "";
+
+        List<String> artifacts = new ArrayList<>();
+        Matcher artifact = ARTIFACT_PATTERN.matcher(request.getUserMessage());
+        while (artifact.find()) {
+            artifacts.add(artifact.group(1));
+        }
+        if (artifacts.isEmpty()) {
+            return "```" + fence + "\n" + codeBlob(random) + "```\n";
+        }
+
+        StringBuilder response = new StringBuilder();
+        for (String id : artifacts) {
+            response.append(ArtifactBatcher.MARKER).append(' ').append(id).append('\n');
+            response.append("```").append(fence).append('\n').append(codeBlob(random)).append("```\n");
+        }
+        return response.toString();
+    }
+
+    private String codeBlob(Random random) {
+        StringBuilder code = new StringBuilder(codeSizeBytes + 64);
+        for (int line = 0; code.length() < codeSizeBytes; line++) {
+            code.append("// mock line ").append(line).append(": ").append(Long.toHexString(random.nextLong())).append('\n');
+        }
+        return code.toString();
+    }
+
+    private List<String> chunk(String text, int chunkChars) {
+        List<String> chunks = new ArrayList<>(text.length() / chunkChars + 1);
+        for (int i = 0; i < text.length(); i += chunkChars) {
+            chunks.add(text.substring(i, Math.min(text.length(), i + chunkChars)));
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,260 @@
+package com.nebula.controlplane.llm;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nebula.shared.model.Agent;
+import com.nebula.shared.model.ConditionalStep;
+import com.nebula.shared.model.ExecutionPlan;
+import com.nebula.shared.model.ExecutionStep;
+import com.nebula.shared.model.LoopStep;
+import com.nebula.shared.model.ParallelStep;
+import com.nebula.shared.model.SequentialStep;
+import com.nebula.shared.util.JsonUtil;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assembles the execution plan context included in code generation prompts.
+ * Each plan is serialized once into compact per-agent and per-step fragments, cached for the
+ * lifetime of the plan object. A prompt then carries only the slice relevant to one agent
+ * (its own spec and tools, the steps that invoke it and summaries of the agents it depends on),
+ * trimmed to the token budget configured for the target model.
+ */
+@Component
+public class PromptAssembler {
+
+    private static final Logger logger = LoggerFactory.getLogger(PromptAssembler.class);
+
+    @Value("${nebula.llm.prompt.default-token-budget:24000}")
+    private long defaultTokenBudget;
+
+    @Autowired
+    private Environment environment;
+
+    private final Cache<ExecutionPlan, PlanFragments> fragmentCache = Caffeine.newBuilder()
+        .weakKeys()
+        .maximumSize(1_000)
+        .build();
+
+    private Map<String, Long> modelTokenBudgets = Collections.emptyMap();
+
+    @PostConstruct
+    public void init() {
+        this.modelTokenBudgets = Binder.get(environment)
+            .bind("nebula.llm.prompt.token-budgets", Bindable.mapOf(String.class, Long.class))
+            .orElse(Collections.emptyMap());
+    }
+
+    /**
+     * Input token budget for a prompt sent to the given model
+     */
+    public long tokenBudget(String model) {
+        return modelTokenBudgets.getOrDefault(model, defaultTokenBudget);
+    }
+
+    /**
+     * Build the plan context for one agent's code generation prompt, within the given token budget
+     */
+    public String agentContext(ExecutionPlan executionPlan, Agent agent, long tokenBudget) {
+        PlanFragments fragments = fragmentCache.get(executionPlan, this::buildFragments);
+
+        StringBuilder context = new StringBuilder();
+        context.append("Plan: ").append(fragments.header).append('\n');
+        context.append("Agent: ").append(fragments.agents.getOrDefault(agent.getAgentId(), JsonUtil.toJson(agentNode(agent)))).append('\n');
+
+        long used = TokenEstimator.estimate(context);
+        int omitted = 0;
+
+        for (String section : sections(fragments, agent)) {
+            long cost = TokenEstimator.estimate(section) + 1;
+            if (used + cost > tokenBudget) {
+                omitted++;
+                continue;
+            }
+            context.append(section).append('\n');
+            used += cost;
+        }
+
+        if (omitted > 0) {
+            logger.info("Omitted {} plan context sections for agent {} to fit a budget of {} tokens",
+                       omitted, agent.getAgentId(), tokenBudget);
+        }
+        return context.toString();
+    }
+
+    /**
+     * Everything {@link #agentContext} may include for the agent, whatever the budget, except the plan
+     * ID, which is assigned per plan. Generated code is keyed by it, so code is reused for an agent with
+     * the same spec and the same slice of the plan, whichever plan it appears in.
+     */
+    public String agentContextFingerprint(ExecutionPlan executionPlan, Agent agent) {
+        PlanFragments fragments = fragmentCache.get(executionPlan, this::buildFragments);
+
+        StringBuilder fingerprint = new StringBuilder();
+        fingerprint.append(fragments.summary).append('\n');
+        fingerprint.append(fragments.agents.getOrDefault(agent.getAgentId(), JsonUtil.toJson(agentNode(agent)))).append('\n');
+        for (String section : sections(fragments, agent)) {
+            fingerprint.append(section).append('\n');
+        }
+        return fingerprint.toString();
+    }
+
+    /**
+     * Optional context sections for an agent: the steps that invoke it, then the agents it depends on
+     */
+    private List<String> sections(PlanFragments fragments, Agent agent) {
+        List<String> sections = new ArrayList<>();
+        for (String step : fragments.stepsByAgent.getOrDefault(agent.getAgentId(), List.of())) {
+            sections.add("Step: " + step);
+        }
+        if (agent.getDependencies() != null) {
+            for (String dependency : agent.getDependencies()) {
+                String summary = fragments.summaries.get(dependency);
+                if (summary != null) {
+                    sections.add("Depends on: " + summary);
+                }
+            }
+        }
+        return sections;
+    }
+
+    private PlanFragments buildFragments(ExecutionPlan executionPlan) {
+        PlanFragments fragments = new PlanFragments();
+
+        // Plan-level prose (name and description) is left out: it does not change what an agent must do,
+        // and keeping it would tie the agent's generated code to one plan
+        ObjectNode planSummary = JsonUtil.getObjectMapper().createObjectNode();
+        if (executionPlan.getExecutionFlow() != null && executionPlan.getExecutionFlow().getType() != null) {
+            planSummary.put("flow", executionPlan.getExecutionFlow().getType().getValue());
+        }
+        fragments.summary = JsonUtil.toJson(planSummary);
+
+        ObjectNode header = JsonUtil.getObjectMapper().createObjectNode();
+        header.put("planId", executionPlan.getPlanId());
+        header.setAll(planSummary);
+        fragments.header = JsonUtil.toJson(header);
+
+        if (executionPlan.getAgents() != null) {
+            for (Agent agent : executionPlan.getAgents()) {
+                fragments.agents.put(agent.getAgentId(), JsonUtil.toJson(agentNode(agent)));
+
+                ObjectNode summary = JsonUtil.getObjectMapper().createObjectNode();
+                summary.put("agentId", agent.getAgentId());
+                summary.put("name", agent.getName());
+                summary.set("capabilities", JsonUtil.getObjectMapper().valueToTree(agent.getCapabilities()));
+                fragments.summaries.put(agent.getAgentId(), JsonUtil.toJson(summary));
+            }
+        }
+
+        if (executionPlan.getExecutionFlow() != null && executionPlan.getExecutionFlow().getSteps() != null) {
+            for (ExecutionStep step : executionPlan.getExecutionFlow().getSteps()) {
+                collectSteps(step, new ArrayList<>(), fragments);
+            }
+        }
+        return fragments;
+    }
+
+    /**
+     * Record a fragment for every step that invokes an agent. Enclosing conditional and loop steps are
+     * described without their children so the fragment stays small but keeps its control-flow context.
+     */
+    private void collectSteps(ExecutionStep step, List<String> enclosing, PlanFragments fragments) {
+        if (step instanceof ConditionalStep conditional) {
+            ObjectNode descriptor = stepDescriptor(step);
+            descriptor.set("condition", JsonUtil.getObjectMapper().valueToTree(conditional.getCondition()));
+            List<String> nested = withEnclosing(enclosing, JsonUtil.toJson(descriptor));
+            if (conditional.getThenStep() != null) {
+                collectSteps(conditional.getThenStep(), nested, fragments);
+            }
+            if (conditional.getElseStep() != null) {
+                collectSteps(conditional.getElseStep(), nested, fragments);
+            }
+        } else if (step instanceof LoopStep loop) {
+            ObjectNode descriptor = stepDescriptor(step);
+            descriptor.put("loopType", loop.getLoopType() != null ? loop.getLoopType().getValue() : null);
+            descriptor.set("exitCondition", JsonUtil.getObjectMapper().valueToTree(loop.getExitCondition()));
+            String compact = JsonUtil.toJson(descriptor);
+            List<String> nested = withEnclosing(enclosing, compact);
+            if (loop.getExitCondition() != null && loop.getExitCondition().getCheckAgentId() != null) {
+                addStep(fragments, loop.getExitCondition().getCheckAgentId(), enclosing, compact);
+            }
+            if (loop.getBody() != null) {
+                for (ExecutionStep child : loop.getBody()) {
+                    collectSteps(child, nested, fragments);
+                }
+            }
+        } else if (step instanceof SequentialStep sequential) {
+            addStep(fragments, sequential.getAgentId(), enclosing, JsonUtil.toJson(step));
+        } else if (step instanceof ParallelStep parallel && parallel.getParallelAgents() != null) {
+            String compact = JsonUtil.toJson(step);
+            for (ParallelStep.ParallelAgent parallelAgent : parallel.getParallelAgents()) {
+                addStep(fragments, parallelAgent.getAgentId(), enclosing, compact);
+            }
+        }
+    }
+
+    private void addStep(PlanFragments fragments, String agentId, List<String> enclosing, String fragment) {
+        if (agentId == null) {
+            return;
+        }
+        String entry = enclosing.isEmpty() ? fragment : fragment + " within " + String.join(" within ", enclosing);
+        fragments.stepsByAgent.computeIfAbsent(agentId, id -> new ArrayList<>()).add(entry);
+    }
+
+    private List<String> withEnclosing(List<String> enclosing, String descriptor) {
+        List<String> nested = new ArrayList<>(enclosing.size() + 1);
+        nested.add(descriptor);
+        nested.addAll(enclosing);
+        return nested;
+    }
+
+    private ObjectNode stepDescriptor(ExecutionStep step) {
+        ObjectNode descriptor = JsonUtil.getObjectMapper().createObjectNode();
+        descriptor.put("stepId", step.getStepId());
+        descriptor.put("type", step.getType());
+        return descriptor;
+    }
+
+    /**
+     * Agent spec without generation state, which is irrelevant to (and would bloat) the prompt
+     */
+    private ObjectNode agentNode(Agent agent) {
+        ObjectNode node = JsonUtil.getObjectMapper().valueToTree(agent);
+        node.remove("generatedCode");
+        node.remove("status");
+        node.remove("prompt");
+        if (node.has("tools")) {
+            node.get("tools").forEach(tool -> {
+                ((ObjectNode) tool).remove("generatedCode");
+                ((ObjectNode) tool).remove("status");
+            });
+        }
+        return node;
+    }
+
+    /**
+     * Compact serialized fragments of one plan
+     */
+    private static class PlanFragments {
+        private String header;
+        private String summary;
+        private final Map<String, String> agents = new HashMap<>();
+        private final Map<String, String> summaries = new HashMap<>();
+        private final Map<String, List<String>> stepsByAgent = new LinkedHashMap<>();
+    }
+}
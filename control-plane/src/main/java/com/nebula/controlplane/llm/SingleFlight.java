@@ -0,0 +1,65 @@
+package com.nebula.controlplane.llm;
+
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent executions of the same keyed operation into one upstream call.
+ * Callers that arrive while a call for the same key is in flight subscribe to the shared result
+ * instead of starting their own. Each caller may cancel independently; the upstream call is only
+ * cancelled once every caller has gone away. Completed calls are forgotten immediately, so this is
+ * deduplication, not caching.
+ */
+public class SingleFlight<K, V> {
+    
+    private final ConcurrentMap<K, Mono<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+    
+    /**
+     * Execute the operation for the key, or join the call already in flight for it
+     */
+    public Mono<V> execute(K key, Supplier<Mono<V>> operation) {
+        return Mono.defer(() -> {
+            boolean[] created = new boolean[1];
+            Mono<V> shared = inFlight.computeIfAbsent(key, k -> {
+                created[0] = true;
+                return share(k, operation);
+            });
+            if (!created[0]) {
+                coalesced.increment();
+            }
+            return shared;
+        });
+    }
+    
+    /**
+     * Number of calls currently in flight
+     */
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+    
+    /**
+     * Number of calls that joined an existing in-flight call instead of starting their own
+     */
+    public long coalescedCount() {
+        return coalesced.sum();
+    }
+    
+    private Mono<V> share(K key, Supplier<Mono<V>> operation) {
+        AtomicReference<Mono<V>> self = new AtomicReference<>();
+        Mono<V> shared = Mono.defer(operation)
+            .doFinally(signal -> inFlight.remove(key, self.get()))
+            .flux()
+            .replay(1)
+            .refCount(1)
+            .singleOrEmpty();
+        self.set(shared);
+        return shared;
+    }
+}
@@ -0,0 +1,20 @@
+package com.nebula.controlplane.llm;
+
+/**
+ * Cheap token count estimate for prompt text.
+ * Uses the common approximation of four characters per token, which is close enough
+ * for rate limiting and budgeting without running a provider-specific tokenizer.
+ */
+public final class TokenEstimator {
+    
+    private static final int CHARS_PER_TOKEN = 4;
+    
+    private TokenEstimator() {}
+    
+    public static long estimate(CharSequence text) {
+        if (text == null || text.length() == 0) {
+            return 0;
+        }
+        return (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+}
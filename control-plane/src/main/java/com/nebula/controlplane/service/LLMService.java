@@ -1,19 +1,54 @@
 package com.nebula.controlplane.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.nebula.controlplane.artifact.GeneratedCodeStore;
+import com.nebula.controlplane.llm.ArtifactBatcher;
+import com.nebula.controlplane.llm.LLMMetrics;
+import com.nebula.controlplane.llm.LLMOperation;
+import com.nebula.controlplane.llm.LLMProvider;
+import com.nebula.controlplane.llm.LLMProviderRouter;
+import com.nebula.controlplane.llm.LLMProviderUnavailableException;
+import com.nebula.controlplane.llm.LLMRateLimiter;
+import com.nebula.controlplane.llm.LLMRequest;
+import com.nebula.controlplane.llm.LLMResponse;
+import com.nebula.controlplane.llm.LLMResponseCache;
+import com.nebula.controlplane.llm.LLMRetryPolicy;
+import com.nebula.controlplane.llm.MockLLMProvider;
+import com.nebula.controlplane.llm.PromptAssembler;
+import com.nebula.controlplane.llm.SingleFlight;
+import com.nebula.controlplane.llm.TokenEstimator;
+import com.nebula.shared.enums.ProgrammingLanguage;
 import com.nebula.shared.model.ExecutionPlan;
 import com.nebula.shared.model.Agent;
 import com.nebula.shared.model.Tool;
 import com.nebula.shared.util.JsonUtil;
+import com.nebula.shared.util.LLMOutputScanner;
+import com.nebula.shared.util.PlanInterner;
+import com.nebula.shared.util.PlanSchemaValidator;
+import com.nebula.shared.util.StreamingPlanDecoder;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 /**
  * Service for integrating with Large Language Models (Gemini, Claude, etc.)
@@ -22,6 +57,9 @@ import java.util.HashMap;
  * 2. Generating agent code
  * 3. Creating tools for agents
  * 4. Deciding programming languages for agents
+ *
+ * All provider I/O is non-blocking; the synchronous methods are thin wrappers
+ * over their reactive counterparts for callers that still expect a value.
  */
 @Service
 public class LLMService {
@@ -31,173 +69,515 @@ public class LLMService {
     @Value("${nebula.llm.provider:gemini}")
     private String llmProvider;
     
-    @Value("${nebula.llm.gemini.api-key:}")
-    private String geminiApiKey;
+    private final SingleFlight<String, LLMResponse> inFlightRequests = new SingleFlight<>();
     
-    @Value("${nebula.llm.gemini.project-id:}")
-    private String geminiProjectId;
+    @Value("${nebula.llm.plan-validation.enabled:true}")
+    private boolean planValidationEnabled;
     
-    @Value("${nebula.llm.claude.api-key:}")
-    private String claudeApiKey;
+    private final PlanSchemaValidator planValidator = PlanSchemaValidator.forExecutionPlan();
     
-    private final WebClient webClient;
+    /**
+     * Fence info strings models use for each language
+     */
+    private static final Map<ProgrammingLanguage, String[]> LANGUAGE_FENCE_NAMES = Map.of(
+        ProgrammingLanguage.JAVA, new String[] {"java"},
+        ProgrammingLanguage.PYTHON, new String[] {"python", "py", "python3"},
+        ProgrammingLanguage.JAVASCRIPT, new String[] {"javascript", "js"},
+        ProgrammingLanguage.TYPESCRIPT, new String[] {"typescript", "ts"},
+        ProgrammingLanguage.GO, new String[] {"go", "golang"},
+        ProgrammingLanguage.RUST, new String[] {"rust", "rs"}
+    );
     
-    public LLMService() {
-        this.webClient = WebClient.builder().build();
-    }
+    @Autowired
+    private LLMResponseCache responseCache;
+    
+    @Autowired
+    private LLMRateLimiter rateLimiter;
+    
+    @Autowired
+    private LLMRetryPolicy retryPolicy;
+    
+    @Autowired
+    private PromptAssembler promptAssembler;
+    
+    @Autowired
+    private ArtifactBatcher artifactBatcher;
+    
+    @Autowired
+    private LLMProviderRouter providerRouter;
+    
+    @Autowired
+    private GeneratedCodeStore codeStore;
+    
+    @Autowired
+    private LLMMetrics llmMetrics;
     
     /**
      * Create an execution plan from user prompt using LLM
      */
     public ExecutionPlan createExecutionPlan(String userPrompt, Map<String, Object> context) {
+        return createExecutionPlanAsync(userPrompt, context).block();
+    }
+    
+    /**
+     * Create an execution plan without blocking the calling thread
+     */
+    public Mono<ExecutionPlan> createExecutionPlanAsync(String userPrompt, Map<String, Object> context) {
         logger.info("Creating execution plan for prompt: {}", userPrompt);
         
-        try {
-            String systemPrompt = buildExecutionPlanSystemPrompt();
-            String userMessage = buildExecutionPlanUserMessage(userPrompt, context);
-            
-            String llmResponse = callLLM(systemPrompt, userMessage);
-            
+        return Mono.fromCallable(() -> new LLMRequest(LLMOperation.PLAN,
+                    buildExecutionPlanSystemPrompt(), buildExecutionPlanUserMessage(userPrompt, context)))
             // Parse the LLM response to create ExecutionPlan
-            ExecutionPlan executionPlan = parseExecutionPlanFromLLMResponse(llmResponse);
-            
-            // Set metadata
-            if (executionPlan.getMetadata() == null) {
-                executionPlan.setMetadata(new ExecutionPlan.Metadata());
-            }
-            executionPlan.getMetadata().setCreatedBy(llmProvider + "-LLM");
-            executionPlan.getMetadata().setCreatedAt(Instant.now());
-            
-            logger.info("Successfully created execution plan: {}", executionPlan.getPlanId());
-            return executionPlan;
-            
-        } catch (Exception e) {
-            logger.error("Error creating execution plan", e);
-            throw new RuntimeException("Failed to create execution plan: " + e.getMessage(), e);
-        }
+            .flatMap(request -> callLLM(request, this::parseExecutionPlanFromLLMResponse))
+            .map(executionPlan -> completeExecutionPlan(executionPlan, newPlanId()))
+            .onErrorMap(e -> {
+                logger.error("Error creating execution plan", e);
+                return new RuntimeException("Failed to create execution plan: " + e.getMessage(), e);
+            });
+    }
+    
+    /**
+     * Refine an existing plan for an updated prompt. The previous plan is sent without its generated code,
+     * and the model is asked to keep everything that does not need to change identical, so a
+     * {@link com.nebula.shared.plan.PlanDiff} against it finds only the real changes. The refined plan
+     * keeps the previous plan ID.
+     */
+    public Mono<ExecutionPlan> refineExecutionPlanAsync(ExecutionPlan previousPlan, String userPrompt,
+                                                        Map<String, Object> context) {
+        logger.info("Refining execution plan {} for prompt: {}", previousPlan.getPlanId(), userPrompt);
+        
+        return Mono.fromCallable(() -> new LLMRequest(LLMOperation.PLAN,
+                    buildExecutionPlanSystemPrompt(), buildRefinePlanUserMessage(previousPlan, userPrompt, context)))
+            .flatMap(request -> callLLM(request, this::parseExecutionPlanFromLLMResponse))
+            .map(executionPlan -> completeExecutionPlan(executionPlan, previousPlan.getPlanId()))
+            .onErrorMap(e -> {
+                logger.error("Error refining execution plan", e);
+                return new RuntimeException("Failed to refine execution plan: " + e.getMessage(), e);
+            });
+    }
+    
+    /**
+     * Create an execution plan while it streams from the LLM.
+     * The listener receives each agent and each top-level step as soon as it has been generated,
+     * so agent code generation can start before the plan is complete.
+     */
+    public Mono<ExecutionPlan> createExecutionPlanIncremental(String userPrompt, Map<String, Object> context,
+                                                             StreamingPlanDecoder.Listener listener) {
+        return Mono.defer(() -> {
+            StreamingPlanDecoder decoder = new StreamingPlanDecoder(listener);
+            return streamExecutionPlan(userPrompt, context)
+                .doOnNext(decoder::feed)
+                .then(Mono.fromCallable(() -> bindExecutionPlan(decoder.completeTree())))
+                .map(executionPlan -> completeExecutionPlan(executionPlan, newPlanId()));
+        }).onErrorMap(e -> {
+            logger.error("Error creating execution plan incrementally", e);
+            return new RuntimeException("Failed to create execution plan: " + e.getMessage(), e);
+        });
+    }
+    
+    /**
+     * Stream the raw execution plan text as the LLM generates it
+     */
+    public Flux<String> streamExecutionPlan(String userPrompt, Map<String, Object> context) {
+        logger.info("Streaming execution plan for prompt: {}", userPrompt);
+        
+        return Mono.fromCallable(() -> new LLMRequest(LLMOperation.PLAN,
+                    buildExecutionPlanSystemPrompt(), buildExecutionPlanUserMessage(userPrompt, context)))
+            .flatMapMany(this::streamLLM)
+            .onErrorMap(e -> {
+                logger.error("Error streaming execution plan", e);
+                return new RuntimeException("Failed to stream execution plan: " + e.getMessage(), e);
+            });
     }
     
     /**
      * Generate agent code using LLM
      */
     public String generateAgentCode(Agent agent, ExecutionPlan executionPlan) {
+        return generateAgentCodeAsync(agent, executionPlan).block();
+    }
+    
+    /**
+     * Generate agent code without blocking the calling thread
+     */
+    public Mono<String> generateAgentCodeAsync(Agent agent, ExecutionPlan executionPlan) {
         logger.info("Generating code for agent: {}", agent.getAgentId());
         
-        try {
-            String systemPrompt = buildAgentCodeSystemPrompt(agent.getLanguage());
-            String userMessage = buildAgentCodeUserMessage(agent, executionPlan);
-            
-            String llmResponse = callLLM(systemPrompt, userMessage);
-            
+        return Mono.fromCallable(() -> codeStore.agentKey(agent, promptAssembler.agentContextFingerprint(executionPlan, agent)))
+            .flatMap(contentKey -> codeStore.get(contentKey)
+                .doOnNext(code -> logger.info("Reusing stored code for agent: {}", agent.getAgentId()))
+                .switchIfEmpty(generateAgentCodeFromLLM(agent, executionPlan)
+                    .doOnNext(code -> storeGeneratedCode(contentKey, code))))
+            .map(PlanInterner::internString)
+            .onErrorMap(e -> {
+                logger.error("Error generating agent code", e);
+                return new RuntimeException("Failed to generate agent code: " + e.getMessage(), e);
+            });
+    }
+    
+    private Mono<String> generateAgentCodeFromLLM(Agent agent, ExecutionPlan executionPlan) {
+        return Mono.fromCallable(() -> {
+                String systemPrompt = buildAgentCodeSystemPrompt(agent.getLanguage());
+                return new LLMRequest(LLMOperation.AGENT_CODE, systemPrompt,
+                                      buildAgentCodeUserMessage(agent, executionPlan, systemPrompt));
+            })
             // Extract code from LLM response
-            String generatedCode = extractCodeFromLLMResponse(llmResponse, agent.getLanguage());
-            
-            logger.info("Successfully generated code for agent: {}", agent.getAgentId());
-            return generatedCode;
-            
-        } catch (Exception e) {
-            logger.error("Error generating agent code", e);
-            throw new RuntimeException("Failed to generate agent code: " + e.getMessage(), e);
-        }
+            .flatMap(request -> callLLM(request, llmResponse -> extractCodeFromLLMResponse(llmResponse, agent.getLanguage())))
+            .doOnNext(generatedCode -> logger.info("Successfully generated code for agent: {}", agent.getAgentId()));
     }
     
     /**
      * Generate tool code using LLM
      */
     public String generateToolCode(Tool tool, Agent agent) {
+        return generateToolCodeAsync(tool, agent).block();
+    }
+    
+    /**
+     * Generate tool code without blocking the calling thread
+     */
+    public Mono<String> generateToolCodeAsync(Tool tool, Agent agent) {
         logger.info("Generating code for tool: {}", tool.getToolId());
         
-        try {
-            String systemPrompt = buildToolCodeSystemPrompt(agent.getLanguage());
-            String userMessage = buildToolCodeUserMessage(tool, agent);
-            
-            String llmResponse = callLLM(systemPrompt, userMessage);
-            
+        return Mono.fromCallable(() -> codeStore.toolKey(tool, agent))
+            .flatMap(contentKey -> codeStore.get(contentKey)
+                .doOnNext(code -> logger.info("Reusing stored code for tool: {}", tool.getToolId()))
+                .switchIfEmpty(generateToolCodeFromLLM(tool, agent)
+                    .doOnNext(code -> storeGeneratedCode(contentKey, code))))
+            .map(PlanInterner::internString)
+            .onErrorMap(e -> {
+                logger.error("Error generating tool code", e);
+                return new RuntimeException("Failed to generate tool code: " + e.getMessage(), e);
+            });
+    }
+    
+    private Mono<String> generateToolCodeFromLLM(Tool tool, Agent agent) {
+        return Mono.fromCallable(() -> new LLMRequest(LLMOperation.TOOL_CODE,
+                    buildToolCodeSystemPrompt(agent.getLanguage()), buildToolCodeUserMessage(tool, agent)))
             // Extract code from LLM response
-            String generatedCode = extractCodeFromLLMResponse(llmResponse, agent.getLanguage());
-            
-            logger.info("Successfully generated code for tool: {}", tool.getToolId());
-            return generatedCode;
-            
-        } catch (Exception e) {
-            logger.error("Error generating tool code", e);
-            throw new RuntimeException("Failed to generate tool code: " + e.getMessage(), e);
+            .flatMap(request -> callLLM(request, llmResponse -> extractCodeFromLLMResponse(llmResponse, agent.getLanguage())))
+            .doOnNext(generatedCode -> logger.info("Successfully generated code for tool: {}", tool.getToolId()));
+    }
+    
+    /**
+     * Generate code for several agents, returning the code keyed by agent ID
+     */
+    public Map<String, String> generateAgentCodeBatch(List<Agent> agents, ExecutionPlan executionPlan) {
+        return generateAgentCodeBatchAsync(agents, executionPlan).block();
+    }
+    
+    /**
+     * Generate code for several agents, packing agents of the same language into shared LLM calls
+     */
+    public Mono<Map<String, String>> generateAgentCodeBatchAsync(List<Agent> agents, ExecutionPlan executionPlan) {
+        logger.info("Generating code for {} agents", agents.size());
+    
+        return Mono.defer(() -> {
+                Map<String, String> contentKeys = new LinkedHashMap<>();
+                for (Agent agent : agents) {
+                    contentKeys.put(agent.getAgentId(),
+                        codeStore.agentKey(agent, promptAssembler.agentContextFingerprint(executionPlan, agent)));
+                }
+                return lookupThenGenerate(contentKeys, missing -> {
+                    Map<ProgrammingLanguage, List<Agent>> agentsByLanguage = new LinkedHashMap<>();
+                    for (Agent agent : agents) {
+                        if (missing.contains(agent.getAgentId())) {
+                            agentsByLanguage.computeIfAbsent(agent.getLanguage(), language -> new ArrayList<>()).add(agent);
+                        }
+                    }
+                    return Flux.fromIterable(agentsByLanguage.entrySet())
+                        .flatMap(entry -> Mono.defer(() -> {
+                            ProgrammingLanguage language = entry.getKey();
+                            Map<String, Agent> agentsById = new HashMap<>();
+                            List<ArtifactBatcher.Artifact> artifacts = new ArrayList<>();
+                            for (Agent agent : entry.getValue()) {
+                                agentsById.put(agent.getAgentId(), agent);
+                                artifacts.add(new ArtifactBatcher.Artifact(agent.getAgentId(),
+                                    describeAgent(agent, executionPlan, artifactBatcher.perArtifactTokenBudget())));
+                            }
+                            return generateBatched(LLMOperation.AGENT_CODE, buildAgentCodeSystemPrompt(language), language,
+                                                   artifacts, artifactBatcher.getMaxRetries(),
+                                                   agentId -> generateAgentCodeFromLLM(agentsById.get(agentId), executionPlan));
+                        }))
+                        .<Map<String, String>>reduce(new HashMap<>(), (generated, batch) -> {
+                            generated.putAll(batch);
+                            return generated;
+                        });
+                });
+            })
+            .onErrorMap(e -> {
+                logger.error("Error generating agent code batch", e);
+                return new RuntimeException("Failed to generate agent code batch: " + e.getMessage(), e);
+            });
+    }
+    
+    /**
+     * Generate code for several tools of one agent, returning the code keyed by tool ID
+     */
+    public Map<String, String> generateToolCodeBatch(List<Tool> tools, Agent agent) {
+        return generateToolCodeBatchAsync(tools, agent).block();
+    }
+    
+    /**
+     * Generate code for several tools of one agent, packing them into shared LLM calls
+     */
+    public Mono<Map<String, String>> generateToolCodeBatchAsync(List<Tool> tools, Agent agent) {
+        logger.info("Generating code for {} tools of agent: {}", tools.size(), agent.getAgentId());
+    
+        return Mono.defer(() -> {
+                Map<String, String> contentKeys = new LinkedHashMap<>();
+                Map<String, Tool> toolsById = new HashMap<>();
+                for (Tool tool : tools) {
+                    contentKeys.put(tool.getToolId(), codeStore.toolKey(tool, agent));
+                    toolsById.put(tool.getToolId(), tool);
+                }
+                return lookupThenGenerate(contentKeys, missing -> {
+                    List<ArtifactBatcher.Artifact> artifacts = new ArrayList<>();
+                    for (Tool tool : tools) {
+                        if (missing.contains(tool.getToolId())) {
+                            artifacts.add(new ArtifactBatcher.Artifact(tool.getToolId(), describeTool(tool, agent)));
+                        }
+                    }
+                    return generateBatched(LLMOperation.TOOL_CODE, buildToolCodeSystemPrompt(agent.getLanguage()),
+                                           agent.getLanguage(), artifacts, artifactBatcher.getMaxRetries(),
+                                           toolId -> generateToolCodeFromLLM(toolsById.get(toolId), agent));
+                });
+            })
+            .onErrorMap(e -> {
+                logger.error("Error generating tool code batch", e);
+                return new RuntimeException("Failed to generate tool code batch: " + e.getMessage(), e);
+            });
+    }
+    
+    /**
+     * Resolve artifacts from the generated code store by content key, generating (and storing) only
+     * those that are not found
+     */
+    private Mono<Map<String, String>> lookupThenGenerate(Map<String, String> contentKeys,
+                                                         Function<Set<String>, Mono<Map<String, String>>> generateMissing) {
+        return Flux.fromIterable(contentKeys.entrySet())
+            .flatMap(entry -> codeStore.get(entry.getValue()).map(code -> Map.entry(entry.getKey(), code)))
+            .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+            .flatMap(stored -> {
+                Set<String> missing = new LinkedHashSet<>(contentKeys.keySet());
+                missing.removeAll(stored.keySet());
+                logger.info("Reusing stored code for {} of {} artifacts", stored.size(), contentKeys.size());
+                if (missing.isEmpty()) {
+                    return Mono.just(stored);
+                }
+                return generateMissing.apply(missing).map(generated -> {
+                    generated.forEach((id, code) -> storeGeneratedCode(contentKeys.get(id), code));
+                    Map<String, String> all = new HashMap<>(stored);
+                    all.putAll(generated);
+                    return all;
+                });
+            });
+    }
+    
+    /**
+     * Keep generated code for reuse by later plans. Mock output is never stored: neither the offline
+     * fallback nor anything generated while the mock provider is selected, since it may have served the call.
+     */
+    private void storeGeneratedCode(String contentKey, String code) {
+        if (providerRouter.hasConfiguredProvider() && !MockLLMProvider.NAME.equalsIgnoreCase(llmProvider)) {
+            codeStore.put(contentKey, code);
         }
     }
     
+    /**
+     * Generate artifacts in batches. Artifacts missing from a batch response are retried in a smaller
+     * batch while retries remain, then generated one by one.
+     */
+    private Mono<Map<String, String>> generateBatched(LLMOperation operation, String systemPrompt, ProgrammingLanguage language,
+                                                      List<ArtifactBatcher.Artifact> artifacts, int retriesLeft,
+                                                      Function<String, Mono<String>> generateSingle) {
+        if (!artifactBatcher.isEnabled()) {
+            return generateIndividually(artifacts, generateSingle);
+        }
+    
+        return Flux.fromIterable(artifactBatcher.partition(artifacts))
+            .flatMap(batch -> {
+                if (batch.size() == 1) {
+                    return generateIndividually(batch, generateSingle);
+                }
+                LLMRequest request = new LLMRequest(operation,
+                    artifactBatcher.batchSystemPrompt(systemPrompt, language.getValue()),
+                    artifactBatcher.batchUserMessage(batch));
+    
+                return callLLM(request, llmResponse -> artifactBatcher.demultiplex(llmResponse, batch, LANGUAGE_FENCE_NAMES.get(language)))
+                    .flatMap(generated -> {
+                        List<ArtifactBatcher.Artifact> failed = new ArrayList<>();
+                        for (ArtifactBatcher.Artifact artifact : batch) {
+                            if (!generated.containsKey(artifact.getId())) {
+                                failed.add(artifact);
+                            }
+                        }
+                        if (failed.isEmpty()) {
+                            return Mono.just(generated);
+                        }
+    
+                        logger.warn("{} of {} artifacts missing from batch response", failed.size(), batch.size());
+                        // Re-sending an identical batch would only hit the response cache, so a batch that failed
+                        // entirely goes straight to individual generation
+                        Mono<Map<String, String>> retried = retriesLeft > 0 && failed.size() < batch.size()
+                            ? generateBatched(operation, systemPrompt, language, failed, retriesLeft - 1, generateSingle)
+                            : generateIndividually(failed, generateSingle);
+                        return retried.map(remaining -> {
+                            generated.putAll(remaining);
+                            return generated;
+                        });
+                    });
+            })
+            .<Map<String, String>>reduce(new HashMap<>(), (generated, batch) -> {
+                generated.putAll(batch);
+                return generated;
+            });
+    }
+    
+    private Mono<Map<String, String>> generateIndividually(List<ArtifactBatcher.Artifact> artifacts,
+                                                           Function<String, Mono<String>> generateSingle) {
+        return Flux.fromIterable(artifacts)
+            .flatMap(artifact -> generateSingle.apply(artifact.getId())
+                .map(code -> Map.entry(artifact.getId(), code)))
+            .collectMap(Map.Entry::getKey, Map.Entry::getValue);
+    }
+    
     /**
      * Analyze prompt and suggest agents using LLM
      */
     public List<Agent> suggestAgents(String userPrompt, Map<String, Object> context) {
+        return suggestAgentsAsync(userPrompt, context).block();
+    }
+    
+    /**
+     * Suggest agents without blocking the calling thread
+     */
+    public Mono<List<Agent>> suggestAgentsAsync(String userPrompt, Map<String, Object> context) {
         logger.info("Suggesting agents for prompt: {}", userPrompt);
         
-        try {
-            String systemPrompt = buildAgentSuggestionSystemPrompt();
-            String userMessage = buildAgentSuggestionUserMessage(userPrompt, context);
-            
-            String llmResponse = callLLM(systemPrompt, userMessage);
-            
+        return Mono.fromCallable(() -> new LLMRequest(LLMOperation.SUGGEST,
+                    buildAgentSuggestionSystemPrompt(), buildAgentSuggestionUserMessage(userPrompt, context)))
             // Parse agents from LLM response
-            List<Agent> suggestedAgents = parseAgentsFromLLMResponse(llmResponse);
-            
-            logger.info("Successfully suggested {} agents", suggestedAgents.size());
-            return suggestedAgents;
-            
-        } catch (Exception e) {
-            logger.error("Error suggesting agents", e);
-            throw new RuntimeException("Failed to suggest agents: " + e.getMessage(), e);
-        }
+            .flatMap(request -> callLLM(request, this::parseAgentsFromLLMResponse))
+            .doOnNext(suggestedAgents -> logger.info("Successfully suggested {} agents", suggestedAgents.size()))
+            .onErrorMap(e -> {
+                logger.error("Error suggesting agents", e);
+                return new RuntimeException("Failed to suggest agents: " + e.getMessage(), e);
+            });
     }
     
     /**
-     * Call the configured LLM with system and user messages
+     * Answer an interactive request (speech input, approval follow-ups).
+     * These requests are admitted ahead of queued plan and code generation calls.
      */
-    private String callLLM(String systemPrompt, String userMessage) {
-        switch (llmProvider.toLowerCase()) {
-            case "gemini":
-                return callGemini(systemPrompt, userMessage);
-            case "claude":
-                return callClaude(systemPrompt, userMessage);
-            default:
-                throw new IllegalArgumentException("Unsupported LLM provider: " + llmProvider);
-        }
+    public Mono<String> chat(String systemPrompt, String userMessage) {
+        return Mono.fromCallable(() -> new LLMRequest(LLMOperation.CHAT, systemPrompt, userMessage))
+            .flatMap(request -> callLLM(request, Function.identity()))
+            .onErrorMap(e -> {
+                logger.error("Error answering interactive request", e);
+                return new RuntimeException("Failed to answer interactive request: " + e.getMessage(), e);
+            });
     }
     
     /**
-     * Call Google Gemini API
+     * Call the LLM with system and user messages, routed to the fastest healthy provider, and parse the
+     * response. A response is only cached once it has parsed, so a malformed or invalid response is
+     * never replayed; a cached response that no longer parses is evicted. Responses are cached under
+     * the provider and model that produced them, which after failover or hedging need not be the
+     * provider selected up front, and looked up for each candidate provider in routing order.
+     * Identical in-flight requests are coalesced whichever provider serves them.
      */
-    private String callGemini(String systemPrompt, String userMessage) {
-        // Implementation for Gemini API call
-        // This is a simplified version - in production, use Google AI Platform SDK
-        
-        Map<String, Object> request = new HashMap<>();
-        request.put("contents", List.of(
-            Map.of("parts", List.of(Map.of("text", systemPrompt + "\n\n" + userMessage)))
-        ));
+    private <T> Mono<T> callLLM(LLMRequest request, Function<String, T> parse) {
+        if (!providerRouter.hasConfiguredProvider()) {
+            // No credentials configured - return a mock response so local development works offline
+            logger.warn("No API key configured for any LLM provider, returning mock response");
+            return Mono.fromCallable(() -> parse.apply(generateMockExecutionPlan()));
+        }
         
-        try {
-            // For now, return a mock response - replace with actual Gemini API call
-            return generateMockExecutionPlan();
-        } catch (Exception e) {
-            logger.error("Error calling Gemini API", e);
-            throw new RuntimeException("Failed to call Gemini API", e);
+        return Mono.defer(() -> {
+            LLMProvider selected = providerRouter.select();
+            long start = System.nanoTime();
+            AtomicReference<String> cachedKey = new AtomicReference<>();
+            AtomicReference<LLMProvider> failedProvider = new AtomicReference<>();
+            
+            return Flux.fromIterable(providerRouter.candidates())
+                .map(candidate -> responseCache.key(candidate.getName(), candidate.getModel(), request))
+                .concatMap(key -> responseCache.get(key).doOnNext(response -> cachedKey.set(key)))
+                .next()
+                .doOnNext(response -> logger.info("LLM cache hit for {} request", request.getOperation().getValue()))
+                .switchIfEmpty(inFlightRequests.execute(responseCache.key(request), () -> providerRouter.execute(request,
+                        provider -> rateLimiter.acquire(provider.getName(), request)
+                            .then(providerRouter.admit(provider, Mono.defer(() -> provider.complete(request))))
+                            .retryWhen(retryPolicy.forProvider(provider.getName()))
+                            .doOnNext(response -> {
+                                rateLimiter.recordUsage(provider.getName(), request,
+                                                        response.getPromptTokens() + response.getCompletionTokens());
+                                llmMetrics.recordUsage(request, response);
+                            })
+                            .doOnError(e -> {
+                                failedProvider.set(provider);
+                                logger.error("Error calling {} API", provider.getName(), e);
+                            }))))
+                .doOnNext(response -> llmMetrics.recordCall(request, response, cachedKey.get() != null, System.nanoTime() - start))
+                .doOnError(e -> llmMetrics.recordFailure(request, failedProvider(e, failedProvider.get(), selected), e,
+                                                         System.nanoTime() - start))
+                .map(response -> {
+                    T parsed;
+                    try {
+                        parsed = parse.apply(response.getText());
+                    } catch (RuntimeException e) {
+                        if (cachedKey.get() != null) {
+                            responseCache.evict(cachedKey.get());
+                        }
+                        throw e;
+                    }
+                    if (cachedKey.get() == null) {
+                        responseCache.put(responseCache.key(response.getProvider(), response.getModel(), request), response);
+                    }
+                    return parsed;
+                });
+        });
+    }
+    
+    /**
+     * The provider a failed call is attributed to: the one the router rejected, else the last one that
+     * failed, else (nothing was tried) the one selected up front
+     */
+    private LLMProvider failedProvider(Throwable failure, LLMProvider lastFailed, LLMProvider selected) {
+        if (failure instanceof LLMProviderUnavailableException unavailable) {
+            return providerRouter.getProvider(unavailable.getProvider());
         }
+        return lastFailed != null ? lastFailed : selected;
     }
     
     /**
-     * Call Claude API
+     * Stream text fragments from the fastest healthy LLM as they are generated. Streams go through the
+     * same rate limiting, admission and retries as {@link #callLLM}, but are never cached or hedged, and
+     * are only retried before the first fragment has been emitted.
      */
-    private String callClaude(String systemPrompt, String userMessage) {
-        // Implementation for Claude API call
-        // This would use Anthropic's Claude API
-        
-        try {
-            // For now, return a mock response - replace with actual Claude API call
-            return generateMockExecutionPlan();
-        } catch (Exception e) {
-            logger.error("Error calling Claude API", e);
-            throw new RuntimeException("Failed to call Claude API", e);
+    private Flux<String> streamLLM(LLMRequest request) {
+        if (!providerRouter.hasConfiguredProvider()) {
+            logger.warn("No API key configured for any LLM provider, returning mock response");
+            return Flux.just(generateMockExecutionPlan());
         }
+        
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            AtomicReference<LLMProvider> servedBy = new AtomicReference<>();
+            
+            return providerRouter.executeStream(request, provider -> {
+                    AtomicBoolean emitted = new AtomicBoolean();
+                    return rateLimiter.acquire(provider.getName(), request)
+                        .thenMany(providerRouter.admit(provider, Flux.defer(() -> provider.stream(request))))
+                        .doOnNext(fragment -> emitted.set(true))
+                        .retryWhen(retryPolicy.forProvider(provider.getName(), () -> !emitted.get()))
+                        .doOnSubscribe(subscription -> servedBy.set(provider))
+                        .doOnError(e -> logger.error("Error streaming from {} API", provider.getName(), e));
+                })
+                .doOnComplete(() -> llmMetrics.recordStream(request, servedBy.get(), System.nanoTime() - start))
+                .doOnError(e -> llmMetrics.recordFailure(request,
+                    servedBy.get() != null ? servedBy.get() : providerRouter.select(), e, System.nanoTime() - start));
+        });
     }
     
     /**
@@ -213,7 +593,7 @@ public class LLMService {
             1. Analyze the user prompt to understand the requirements
             2. Determine what agents are needed to fulfill the request
             3. Decide the programming language for each agent (Java preferred, but choose based on need)
-            4. Create an execution flow (sequential, parallel, conditional, or loop)
+            4. Create an execution flow (sequential, parallel, conditional, loop, or dag when independent steps should run as soon as their inputs exist)
             5. Identify required tools for each agent
             6. Determine if human-in-the-loop interaction is needed
             
@@ -237,6 +617,49 @@ public class LLMService {
         return message.toString();
     }
     
+    /**
+     * Build user message for refining a plan
+     */
+    private String buildRefinePlanUserMessage(ExecutionPlan previousPlan, String userPrompt, Map<String, Object> context) {
+        ObjectNode plan = JsonUtil.getObjectMapper().valueToTree(previousPlan);
+        plan.remove("metadata");
+        plan.path("agents").forEach(agent -> {
+            ((ObjectNode) agent).remove(List.of("generatedCode", "status"));
+            agent.path("tools").forEach(tool -> ((ObjectNode) tool).remove(List.of("generatedCode", "status")));
+        });
+        // Unset fields would be echoed back as nulls, which the schema rejects
+        removeNullFields(plan);
+        
+        StringBuilder message = new StringBuilder();
+        message.append("Current Execution Plan: ").append(JsonUtil.toJson(plan)).append("\n\n");
+        message.append("Refined User Prompt: ").append(userPrompt).append("\n\n");
+        
+        if (context != null && !context.isEmpty()) {
+            message.append("Context: ").append(JsonUtil.toJson(context)).append("\n\n");
+        }
+        
+        message.append("Please update the current execution plan for the refined prompt. ")
+            .append("Keep the IDs and definitions of agents, tools and steps that do not need to change exactly as they are, ")
+            .append("and only add, remove or modify what the refinement requires.");
+        
+        return message.toString();
+    }
+    
+    /**
+     * Remove null-valued fields from every object in the tree
+     */
+    private static void removeNullFields(JsonNode node) {
+        if (node.isObject()) {
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                if (fields.next().getValue().isNull()) {
+                    fields.remove();
+                }
+            }
+        }
+        node.forEach(LLMService::removeNullFields);
+    }
+    
     /**
      * Build system prompt for agent code generation
      */
@@ -259,7 +682,15 @@ public class LLMService {
     /**
      * Build user message for agent code generation
      */
-    private String buildAgentCodeUserMessage(Agent agent, ExecutionPlan executionPlan) {
+    private String buildAgentCodeUserMessage(Agent agent, ExecutionPlan executionPlan, String systemPrompt) {
+        long tokenBudget = promptAssembler.tokenBudget(providerRouter.select().getModel()) - TokenEstimator.estimate(systemPrompt);
+        return describeAgent(agent, executionPlan, tokenBudget) + "\nPlease generate the complete agent implementation.";
+    }
+    
+    /**
+     * Describe an agent and its plan context, keeping the description within the token budget
+     */
+    private String describeAgent(Agent agent, ExecutionPlan executionPlan, long tokenBudget) {
         StringBuilder message = new StringBuilder();
         message.append("Agent Details:\n");
         message.append("- ID: ").append(agent.getAgentId()).append("\n");
@@ -273,9 +704,7 @@ public class LLMService {
         }
         
         message.append("\nExecution Plan Context:\n");
-        message.append(JsonUtil.toJson(executionPlan));
-        
-        message.append("\n\nPlease generate the complete agent implementation.");
+        message.append(promptAssembler.agentContext(executionPlan, agent, tokenBudget - TokenEstimator.estimate(message)));
         
         return message.toString();
     }
@@ -303,6 +732,13 @@ public class LLMService {
      * Build user message for tool code generation
      */
     private String buildToolCodeUserMessage(Tool tool, Agent agent) {
+        return describeTool(tool, agent) + "\n\nPlease generate the complete tool implementation.";
+    }
+    
+    /**
+     * Describe a tool together with the agent that uses it
+     */
+    private String describeTool(Tool tool, Agent agent) {
         StringBuilder message = new StringBuilder();
         message.append("Tool Details:\n");
         message.append("- ID: ").append(tool.getToolId()).append("\n");
@@ -319,8 +755,6 @@ public class LLMService {
         message.append("- Agent Language: ").append(agent.getLanguage()).append("\n");
         message.append("- Agent Capabilities: ").append(agent.getCapabilities()).append("\n");
         
-        message.append("\n\nPlease generate the complete tool implementation.");
-        
         return message.toString();
     }
     
@@ -358,6 +792,28 @@ public class LLMService {
         return message.toString();
     }
     
+    /**
+     * Fill in the plan ID and metadata owned by the control plane. The plan ID the LLM wrote is replaced,
+     * since a cached response would otherwise hand every identical prompt the same ID.
+     */
+    private ExecutionPlan completeExecutionPlan(ExecutionPlan executionPlan, String planId) {
+        executionPlan.setPlanId(planId);
+        
+        // Set metadata
+        if (executionPlan.getMetadata() == null) {
+            executionPlan.setMetadata(new ExecutionPlan.Metadata());
+        }
+        executionPlan.getMetadata().setCreatedBy(llmProvider + "-LLM");
+        executionPlan.getMetadata().setCreatedAt(Instant.now());
+        
+        logger.info("Successfully created execution plan: {}", executionPlan.getPlanId());
+        return executionPlan;
+    }
+    
+    private static String newPlanId() {
+        return "plan-" + UUID.randomUUID();
+    }
+    
     /**
      * Parse execution plan from LLM response
      */
@@ -365,13 +821,28 @@ public class LLMService {
         try {
             // Extract JSON from LLM response (may contain additional text)
             String jsonPart = extractJsonFromResponse(llmResponse);
-            return JsonUtil.fromJson(jsonPart, ExecutionPlan.class);
+            return bindExecutionPlan(JsonUtil.getObjectMapper().readTree(jsonPart));
         } catch (Exception e) {
             logger.error("Error parsing execution plan from LLM response", e);
-            throw new RuntimeException("Failed to parse execution plan", e);
+            throw new RuntimeException("Failed to parse execution plan: " + e.getMessage(), e);
         }
     }
     
+    /**
+     * Validate a parsed plan against the execution plan schema, then bind it and intern its agent definitions.
+     * The metadata fields set by completeExecutionPlan are filled in first so the LLM need not produce them.
+     */
+    private ExecutionPlan bindExecutionPlan(JsonNode tree) throws JsonProcessingException {
+        if (planValidationEnabled) {
+            if (tree.path("metadata") instanceof ObjectNode metadata) {
+                metadata.put("createdBy", llmProvider + "-LLM");
+                metadata.put("createdAt", Instant.now().toString());
+            }
+            planValidator.requireValid(tree);
+        }
+        return PlanInterner.internPlan(JsonUtil.getObjectMapper().treeToValue(tree, ExecutionPlan.class));
+    }
+    
     /**
      * Parse agents from LLM response
      */
@@ -379,7 +850,9 @@ public class LLMService {
         try {
             // Extract JSON from LLM response
             String jsonPart = extractJsonFromResponse(llmResponse);
-            return JsonUtil.fromJson(jsonPart, List.class);
+            List<Agent> agents = JsonUtil.fromJsonList(jsonPart, Agent.class);
+            agents.forEach(PlanInterner::internAgent);
+            return agents;
         } catch (Exception e) {
             logger.error("Error parsing agents from LLM response", e);
             throw new RuntimeException("Failed to parse agents", e);
@@ -391,37 +864,29 @@ public class LLMService {
      */
     private String extractCodeFromLLMResponse(String llmResponse, com.nebula.shared.enums.ProgrammingLanguage language) {
         // Extract code blocks from markdown-style response
-        String codeBlockPattern = "```" + language.getValue() + "\\n([\\s\\S]*?)\\n```";
-        java.util.regex.Pattern pattern = java.util.regex.Pattern.compile(codeBlockPattern);
-        java.util.regex.Matcher matcher = pattern.matcher(llmResponse);
-        
-        if (matcher.find()) {
-            return matcher.group(1);
+        List<LLMOutputScanner.Block> blocks = LLMOutputScanner.scan(llmResponse);
+        LLMOutputScanner.Block block = LLMOutputScanner.findFence(blocks, LANGUAGE_FENCE_NAMES.get(language));
+        if (block == null) {
+            block = LLMOutputScanner.findAnyFence(blocks);
         }
         
-        // If no code block found, return the entire response
-        return llmResponse;
+        // If no code block found, use the entire response
+        String code = block != null ? block.text(llmResponse) : llmResponse;
+        if (code.isBlank()) {
+            throw new IllegalStateException("LLM response contains no code");
+        }
+        return code;
     }
     
     /**
      * Extract JSON from LLM response
      */
     private String extractJsonFromResponse(String response) {
-        // Look for JSON content between ```json and ``` or just find JSON-like content
-        String jsonPattern = "```json\\n([\\s\\S]*?)\\n```";
-        java.util.regex.Pattern pattern = java.util.regex.Pattern.compile(jsonPattern);
-        java.util.regex.Matcher matcher = pattern.matcher(response);
-        
-        if (matcher.find()) {
-            return matcher.group(1);
-        }
-        
-        // Try to find JSON-like content (starts with { and ends with })
-        int startIndex = response.indexOf('{');
-        int endIndex = response.lastIndexOf('}');
+        // Look for a ```json block, otherwise the largest balanced JSON object or array, in or out of other fences
+        LLMOutputScanner.Block block = LLMOutputScanner.findJson(response, LLMOutputScanner.scan(response));
         
-        if (startIndex != -1 && endIndex != -1 && endIndex > startIndex) {
-            return response.substring(startIndex, endIndex + 1);
+        if (block != null) {
+            return block.text(response);
         }
         
         return response;
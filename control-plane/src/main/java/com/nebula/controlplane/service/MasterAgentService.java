@@ -1,15 +1,26 @@
 package com.nebula.controlplane.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nebula.controlplane.execution.PlanScope;
 import com.nebula.shared.model.ExecutionPlan;
 import com.nebula.shared.model.Agent;
+import com.nebula.shared.plan.PlanDiff;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Master Agent Service - The core orchestrator of the Nebula platform.
@@ -40,13 +51,40 @@ public class MasterAgentService {
     @Autowired
     private HumanInTheLoopService humanInTheLoopService;
     
+    @Autowired
+    private ExecutorService planExecutor;
+    
+    /**
+     * Scope of each plan whose pipeline is running, so stopping the plan cancels it
+     */
+    private final Map<String, PlanScope> activeScopes = new ConcurrentHashMap<>();
+    
+    @Value("${nebula.replanning.max-plans:1000}")
+    private long replanningMaxPlans;
+    
+    @Value("${nebula.replanning.ttl:24h}")
+    private Duration replanningTtl;
+    
+    /**
+     * Latest plan per plan ID, kept so a refinement can be diffed against it
+     */
+    private Cache<String, ExecutionPlan> recentPlans;
+    
+    @PostConstruct
+    public void init() {
+        this.recentPlans = Caffeine.newBuilder()
+            .maximumSize(replanningMaxPlans)
+            .expireAfterWrite(replanningTtl)
+            .build();
+    }
+    
     /**
      * Process a user prompt and orchestrate the entire execution
      */
     public CompletableFuture<String> processPrompt(String userPrompt, Map<String, Object> context) {
         logger.info("Processing user prompt: {}", userPrompt);
         
-        return CompletableFuture.supplyAsync(() -> {
+        return runInScope(new PlanScope("prompt", planExecutor), scope -> {
             try {
                 // Step 1: Use LLM to analyze the prompt and create execution plan
                 logger.info("Creating execution plan using LLM...");
@@ -54,6 +92,8 @@ public class MasterAgentService {
                 
                 // Step 2: Save the execution plan
                 executionPlan = executionPlanService.saveExecutionPlan(executionPlan);
+                recentPlans.put(executionPlan.getPlanId(), executionPlan);
+                activeScopes.put(executionPlan.getPlanId(), scope);
                 logger.info("Execution plan created with ID: {}", executionPlan.getPlanId());
                 
                 // Step 3: Generate required agents using LLM
@@ -74,6 +114,107 @@ public class MasterAgentService {
         });
     }
     
+    /**
+     * Process a refined prompt for an existing plan. The plan is regenerated against the previous one and
+     * diffed with it; unchanged agents and tools keep their generated code and only added or modified
+     * agents go through agent generation again. Falls back to a full run if the previous plan is no
+     * longer known, and fails with {@link IllegalStateException} while a pipeline for the plan is still
+     * running, since both would diff against the same previous plan.
+     */
+    public CompletableFuture<String> refinePrompt(String planId, String userPrompt, Map<String, Object> context) {
+        ExecutionPlan previousPlan = recentPlans.getIfPresent(planId);
+        if (previousPlan == null) {
+            logger.info("No previous plan {} to refine, processing prompt from scratch", planId);
+            return processPrompt(userPrompt, context);
+        }
+        PlanScope planScope = new PlanScope(planId, planExecutor);
+        if (activeScopes.putIfAbsent(planId, planScope) != null) {
+            logger.warn("Plan {} is still running, rejecting refinement", planId);
+            return CompletableFuture.failedFuture(
+                new IllegalStateException("Plan " + planId + " is still running; stop it before refining"));
+        }
+        logger.info("Refining plan {} with prompt: {}", planId, userPrompt);
+        
+        return runInScope(planScope, scope -> {
+                try {
+                    // Step 1: Refine the plan while loading the previously generated agents. The lookup runs
+                    // on this thread: forking it could wait behind other pipelines for a pool thread.
+                    CompletableFuture<ExecutionPlan> refinement =
+                        llmService.refineExecutionPlanAsync(previousPlan, userPrompt, context).toFuture();
+                    ExecutionPlan executionPlan;
+                    List<Agent> previousAgents;
+                    try {
+                        previousAgents = agentGenerationService.getAgentsForPlan(planId);
+                        executionPlan = refinement.get();
+                    } finally {
+                        refinement.cancel(true);
+                    }
+                    
+                    // Step 2: Diff against the previous plan and carry over generated code
+                    PlanDiff diff = PlanDiff.compare(previousPlan, executionPlan);
+                    int carried = diff.carryOverArtifacts(previousAgents);
+                    logger.info("Plan {} refined: {} (reusing code for {} agents and tools)", planId, diff, carried);
+                    
+                    // Step 3: Save the refined plan
+                    executionPlan = executionPlanService.saveExecutionPlan(executionPlan);
+                    recentPlans.put(executionPlan.getPlanId(), executionPlan);
+                    
+                    // Step 4: Generate only the added and modified agents
+                    List<Agent> regenerated = diff.agentsToRegenerate().isEmpty()
+                        ? List.of() : agentGenerationService.generateAgents(diff.deltaPlan());
+                    List<Agent> generatedAgents = mergeAgents(executionPlan, previousAgents, regenerated);
+                    
+                    // Step 5: Start execution orchestration
+                    logger.info("Starting execution orchestration...");
+                    String executionResult = executionOrchestrationService.executeplan(executionPlan, generatedAgents);
+                    
+                    logger.info("Execution completed successfully");
+                    return executionResult;
+                    
+                } catch (Exception e) {
+                    logger.error("Error refining prompt", e);
+                    throw new RuntimeException("Failed to refine prompt: " + e.getMessage(), e);
+                }
+            });
+    }
+    
+    /**
+     * Run a plan pipeline on the plan executor inside the given scope. Stopping the plan cancels the
+     * scope, which interrupts the pipeline, as does cancelling the returned future.
+     */
+    private <T> CompletableFuture<T> runInScope(PlanScope scope, ScopedTask<T> pipeline) {
+        CompletableFuture<T> result = scope.fork(() -> pipeline.run(scope));
+        result.whenComplete((value, error) -> {
+            scope.close();
+            activeScopes.values().remove(scope);
+        });
+        return result;
+    }
+    
+    /**
+     * Pipeline body, given the scope it runs in so it can register the scope under its plan ID
+     */
+    @FunctionalInterface
+    private interface ScopedTask<T> {
+        T run(PlanScope scope) throws Exception;
+    }
+    
+    /**
+     * Generated agents in plan order, taking each from the regenerated agents if present and from the
+     * previous run otherwise
+     */
+    private List<Agent> mergeAgents(ExecutionPlan executionPlan, List<Agent> previousAgents, List<Agent> regenerated) {
+        Map<String, Agent> byId = new HashMap<>();
+        previousAgents.forEach(agent -> byId.put(agent.getAgentId(), agent));
+        regenerated.forEach(agent -> byId.put(agent.getAgentId(), agent));
+        
+        List<Agent> merged = new ArrayList<>();
+        for (Agent agent : executionPlan.getAgents()) {
+            merged.add(byId.getOrDefault(agent.getAgentId(), agent));
+        }
+        return merged;
+    }
+    
     /**
      * Get status of an execution plan
      */
@@ -93,6 +234,10 @@ public class MasterAgentService {
      */
     public CompletableFuture<Void> stopExecution(String planId) {
         logger.info("Stopping execution for plan: {}", planId);
+        PlanScope scope = activeScopes.remove(planId);
+        if (scope != null) {
+            scope.cancel();
+        }
         return executionOrchestrationService.stopExecution(planId);
     }
     
@@ -0,0 +1,139 @@
+package com.nebula.controlplane.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.nebula.shared.util.JsonUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class ClaudeProviderTest {
+
+    private static final LLMRequest REQUEST = new LLMRequest(LLMOperation.PLAN, "You plan", "Plan a release");
+
+    private StubLLMServer server;
+    private LLMWebClientFactory webClientFactory;
+    private ClaudeProvider provider;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StubLLMServer();
+        webClientFactory = StubLLMServer.webClientFactory();
+        provider = new ClaudeProvider();
+        ReflectionTestUtils.setField(provider, "apiKey", "test-key");
+        ReflectionTestUtils.setField(provider, "model", "claude-test");
+        ReflectionTestUtils.setField(provider, "baseUrl", server.baseUrl());
+        ReflectionTestUtils.setField(provider, "maxTokens", 1024);
+        ReflectionTestUtils.setField(provider, "webClientFactory", webClientFactory);
+        provider.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        webClientFactory.destroy();
+        server.close();
+    }
+
+    @Test
+    void completeSendsAMessagesRequestAndJoinsTheTextBlocks() throws Exception {
+        server.replyJson("""
+            {"content": [{"type": "text", "text": "Hello"}, {"type": "tool_use", "id": "t1"}, {"type": "text", "text": " world"}],
+             "usage": {"input_tokens": 12, "output_tokens": 3}}
+            """);
+
+        LLMResponse response = provider.complete(REQUEST).block(Duration.ofSeconds(5));
+
+        assertEquals("Hello world", response.getText());
+        assertEquals("claude", response.getProvider());
+        assertEquals("claude-test", response.getModel());
+        assertEquals(12, response.getPromptTokens());
+        assertEquals(3, response.getCompletionTokens());
+
+        StubLLMServer.Request request = server.requests().get(0);
+        assertEquals("POST", request.method());
+        assertEquals("/v1/messages", request.uri());
+        assertEquals("test-key", request.headers().getFirst("x-api-key"));
+        assertEquals("2023-06-01", request.headers().getFirst("anthropic-version"));
+        JsonNode body = JsonUtil.getObjectMapper().readTree(request.body());
+        assertEquals("claude-test", body.path("model").asText());
+        assertEquals(1024, body.path("max_tokens").asInt());
+        assertEquals("You plan", body.path("system").asText());
+        assertEquals("Plan a release", body.path("messages").path(0).path("content").asText());
+        assertFalse(body.has("stream"));
+    }
+
+    @Test
+    void streamEmitsTextDeltasOnly() throws Exception {
+        server.replyEvents("""
+            event: message_start
+            data: {"type": "message_start", "message": {"id": "m1"}}
+
+            event: content_block_delta
+            data: {"type": "content_block_delta", "index": 0, "delta": {"type": "text_delta", "text": "Hel"}}
+
+            event: ping
+            data: {"type": "ping"}
+
+            event: content_block_delta
+            data: {"type": "content_block_delta", "index": 0, "delta": {"type": "text_delta", "text": "lo"}}
+
+            event: message_stop
+            data: {"type": "message_stop"}
+
+            """);
+
+        List<String> fragments = provider.stream(REQUEST).collectList().block(Duration.ofSeconds(5));
+
+        assertEquals(List.of("Hel", "lo"), fragments);
+        StubLLMServer.Request request = server.requests().get(0);
+        assertEquals("text/event-stream", request.headers().getFirst("Accept"));
+        assertTrue(JsonUtil.getObjectMapper().readTree(request.body()).path("stream").asBoolean());
+    }
+
+    @Test
+    void throttledCallIsRetriedAfterRetryAfter() {
+        server.reply(429, "application/json", "{\"type\": \"error\"}", "Retry-After", "1")
+            .replyJson("{\"content\": [{\"type\": \"text\", \"text\": \"ok\"}], \"usage\": {}}");
+        LLMRateLimiter rateLimiter = mock(LLMRateLimiter.class);
+        LLMMetrics metrics = mock(LLMMetrics.class);
+
+        long start = System.nanoTime();
+        LLMResponse response = provider.complete(REQUEST)
+            .retryWhen(StubLLMServer.retryPolicy(rateLimiter, metrics).forProvider("claude"))
+            .block(Duration.ofSeconds(10));
+
+        assertEquals("ok", response.getText());
+        assertEquals(2, server.requests().size());
+        assertTrue(System.nanoTime() - start >= Duration.ofSeconds(1).toNanos(), "retried before Retry-After");
+        verify(rateLimiter).onThrottled("claude", Duration.ofSeconds(1));
+        verify(metrics).recordRetry("claude", "throttled");
+    }
+
+    @Test
+    void serverErrorIsRetriedAndClientErrorIsNot() {
+        server.reply(503, "application/json", "{\"type\": \"error\"}")
+            .replyJson("{\"content\": [{\"type\": \"text\", \"text\": \"ok\"}], \"usage\": {}}")
+            .reply(400, "application/json", "{\"type\": \"error\"}");
+        LLMRetryPolicy retryPolicy = StubLLMServer.retryPolicy(mock(LLMRateLimiter.class), mock(LLMMetrics.class));
+
+        LLMResponse response = provider.complete(REQUEST).retryWhen(retryPolicy.forProvider("claude"))
+            .block(Duration.ofSeconds(5));
+        assertEquals("ok", response.getText());
+
+        WebClientResponseException error = assertThrows(WebClientResponseException.class,
+            () -> provider.complete(REQUEST).retryWhen(retryPolicy.forProvider("claude")).block(Duration.ofSeconds(5)));
+        assertEquals(400, error.getStatusCode().value());
+        assertEquals(3, server.requests().size());
+    }
+}
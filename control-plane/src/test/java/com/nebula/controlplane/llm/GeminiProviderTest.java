@@ -0,0 +1,124 @@
+package com.nebula.controlplane.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.nebula.shared.util.JsonUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class GeminiProviderTest {
+
+    private static final LLMRequest REQUEST = new LLMRequest(LLMOperation.PLAN, "You plan", "Plan a release");
+
+    private StubLLMServer server;
+    private LLMWebClientFactory webClientFactory;
+    private GeminiProvider provider;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StubLLMServer();
+        webClientFactory = StubLLMServer.webClientFactory();
+        provider = new GeminiProvider();
+        ReflectionTestUtils.setField(provider, "apiKey", "test-key");
+        ReflectionTestUtils.setField(provider, "model", "gemini-test");
+        ReflectionTestUtils.setField(provider, "baseUrl", server.baseUrl());
+        ReflectionTestUtils.setField(provider, "webClientFactory", webClientFactory);
+        provider.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        webClientFactory.destroy();
+        server.close();
+    }
+
+    private static String candidate(String... parts) {
+        StringBuilder json = new StringBuilder("{\"candidates\": [{\"content\": {\"role\": \"model\", \"parts\": [");
+        for (int i = 0; i < parts.length; i++) {
+            json.append(i > 0 ? ", " : "").append("{\"text\": \"").append(parts[i]).append("\"}");
+        }
+        return json.append("]}}]").toString();
+    }
+
+    @Test
+    void completeSendsGenerateContentAndJoinsTheParts() throws Exception {
+        server.replyJson(candidate("Hello", " world")
+            + ", \"usageMetadata\": {\"promptTokenCount\": 12, \"candidatesTokenCount\": 3}}");
+
+        LLMResponse response = provider.complete(REQUEST).block(Duration.ofSeconds(5));
+
+        assertEquals("Hello world", response.getText());
+        assertEquals("gemini", response.getProvider());
+        assertEquals("gemini-test", response.getModel());
+        assertEquals(12, response.getPromptTokens());
+        assertEquals(3, response.getCompletionTokens());
+
+        StubLLMServer.Request request = server.requests().get(0);
+        assertEquals("POST", request.method());
+        assertEquals("/v1beta/models/gemini-test:generateContent?key=test-key", request.uri());
+        JsonNode body = JsonUtil.getObjectMapper().readTree(request.body());
+        assertEquals("You plan\n\nPlan a release",
+            body.path("contents").path(0).path("parts").path(0).path("text").asText());
+    }
+
+    @Test
+    void streamEmitsTheTextOfEachEvent() {
+        server.replyEvents("data: " + candidate("Hel") + "}\n\n"
+            + "data: " + candidate() + "}\n\n"
+            + "data: " + candidate("lo") + ", \"usageMetadata\": {\"candidatesTokenCount\": 2}}\n\n");
+
+        List<String> fragments = provider.stream(REQUEST).collectList().block(Duration.ofSeconds(5));
+
+        assertEquals(List.of("Hel", "lo"), fragments);
+        StubLLMServer.Request request = server.requests().get(0);
+        assertEquals("/v1beta/models/gemini-test:streamGenerateContent?alt=sse&key=test-key", request.uri());
+        assertEquals("text/event-stream", request.headers().getFirst("Accept"));
+    }
+
+    @Test
+    void throttledCallIsRetriedAfterRetryAfter() {
+        server.reply(429, "application/json", "{\"error\": {\"code\": 429}}", "Retry-After", "1")
+            .replyJson(candidate("ok") + "}");
+        LLMRateLimiter rateLimiter = mock(LLMRateLimiter.class);
+        LLMMetrics metrics = mock(LLMMetrics.class);
+
+        long start = System.nanoTime();
+        LLMResponse response = provider.complete(REQUEST)
+            .retryWhen(StubLLMServer.retryPolicy(rateLimiter, metrics).forProvider("gemini"))
+            .block(Duration.ofSeconds(10));
+
+        assertEquals("ok", response.getText());
+        assertEquals(2, server.requests().size());
+        assertTrue(System.nanoTime() - start >= Duration.ofSeconds(1).toNanos(), "retried before Retry-After");
+        verify(rateLimiter).onThrottled("gemini", Duration.ofSeconds(1));
+        verify(metrics).recordRetry("gemini", "throttled");
+    }
+
+    @Test
+    void serverErrorsAreRetriedUntilAttemptsRunOut() {
+        for (int i = 0; i < 4; i++) {
+            server.reply(500, "application/json", "{\"error\": {\"code\": 500}}");
+        }
+        LLMMetrics metrics = mock(LLMMetrics.class);
+
+        WebClientResponseException error = assertThrows(WebClientResponseException.class, () -> provider.complete(REQUEST)
+            .retryWhen(StubLLMServer.retryPolicy(mock(LLMRateLimiter.class), metrics).forProvider("gemini"))
+            .block(Duration.ofSeconds(5)));
+
+        assertEquals(500, error.getStatusCode().value());
+        assertEquals(4, server.requests().size());
+        verify(metrics, times(3)).recordRetry("gemini", "server-error");
+    }
+}
@@ -0,0 +1,93 @@
+package com.nebula.controlplane.llm;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LLMConcurrencyLimiterTest {
+
+    private static final String PROVIDER = "claude";
+    private static final long SECOND = Duration.ofSeconds(1).toNanos();
+
+    private SimpleMeterRegistry registry;
+    private LLMConcurrencyLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        limiter = new LLMConcurrencyLimiter();
+        ReflectionTestUtils.setField(limiter, "enabled", true);
+        ReflectionTestUtils.setField(limiter, "initialLimit", 10);
+        ReflectionTestUtils.setField(limiter, "minLimit", 2);
+        ReflectionTestUtils.setField(limiter, "maxLimit", 200);
+        ReflectionTestUtils.setField(limiter, "backoffRatio", 0.5);
+        ReflectionTestUtils.setField(limiter, "latencyThreshold", Duration.ofSeconds(60));
+        ReflectionTestUtils.setField(limiter, "latencyWindow", 10);
+        ReflectionTestUtils.setField(limiter, "latencyMinSamples", 5);
+        ReflectionTestUtils.setField(limiter, "latencyTolerance", 2.0);
+        ReflectionTestUtils.setField(limiter, "maxQueueDepth", 10);
+        ReflectionTestUtils.setField(limiter, "meterRegistry", registry);
+    }
+
+    private double gauge(String name) {
+        return registry.get(name).tag("provider", PROVIDER).gauge().value();
+    }
+
+    private void call(long elapsedNanos) {
+        limiter.acquire(PROVIDER).block();
+        limiter.onSuccess(PROVIDER, elapsedNanos);
+    }
+
+    @Test
+    void callsSlowerThanTheBaselineTimesTheToleranceShrinkTheLimit() {
+        for (int i = 0; i < 5; i++) {
+            call(SECOND);
+        }
+        assertEquals(SECOND / 1_000_000.0, gauge("nebula.llm.concurrency.latency.baseline"));
+        double limit = gauge("nebula.llm.concurrency.limit");
+
+        call(3 * SECOND);
+
+        assertEquals(limit * 0.5, gauge("nebula.llm.concurrency.limit"));
+    }
+
+    @Test
+    void callsWithinTheToleranceDoNotShrinkTheLimit() {
+        for (int i = 0; i < 5; i++) {
+            call(SECOND);
+        }
+        double limit = gauge("nebula.llm.concurrency.limit");
+
+        call(2 * SECOND);
+
+        assertTrue(gauge("nebula.llm.concurrency.limit") >= limit);
+    }
+
+    @Test
+    void onlyTheFixedThresholdAppliesUntilEnoughCallsWereMeasured() {
+        call(SECOND);
+        call(10 * SECOND);
+        assertEquals(10.0, gauge("nebula.llm.concurrency.limit"));
+
+        call(Duration.ofSeconds(61).toNanos());
+        assertEquals(5.0, gauge("nebula.llm.concurrency.limit"));
+    }
+
+    @Test
+    void baselineFollowsTheWindow() {
+        for (int i = 0; i < 10; i++) {
+            call(SECOND);
+        }
+        for (int i = 0; i < 10; i++) {
+            call(SECOND / 10);
+        }
+
+        assertEquals(100.0, gauge("nebula.llm.concurrency.latency.baseline"));
+    }
+}
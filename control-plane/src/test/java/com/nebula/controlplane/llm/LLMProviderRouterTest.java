@@ -0,0 +1,223 @@
+package com.nebula.controlplane.llm;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LLMProviderRouterTest {
+
+    private static final LLMRequest HEDGED = new LLMRequest(LLMOperation.PLAN, "system", "plan");
+    private static final LLMRequest UNHEDGED = new LLMRequest(LLMOperation.AGENT_CODE, "system", "code");
+
+    /**
+     * Provider that answers after a fixed latency, or fails with the given error
+     */
+    static final class FixedLatencyProvider implements LLMProvider {
+        private final String name;
+        private final Duration latency;
+        private final RuntimeException error;
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicInteger cancellations = new AtomicInteger();
+
+        FixedLatencyProvider(String name, Duration latency, RuntimeException error) {
+            this.name = name;
+            this.latency = latency;
+            this.error = error;
+        }
+
+        @Override
+        public String getName() { return name; }
+
+        @Override
+        public String getModel() { return name + "-model"; }
+
+        @Override
+        public boolean isConfigured() { return true; }
+
+        @Override
+        public Mono<LLMResponse> complete(LLMRequest request) {
+            return Mono.delay(latency)
+                .doOnSubscribe(subscription -> calls.incrementAndGet())
+                .doOnCancel(cancellations::incrementAndGet)
+                .flatMap(tick -> error != null ? Mono.error(error)
+                    : Mono.just(new LLMResponse("from " + name, name, getModel(), 1, 1)));
+        }
+
+        @Override
+        public Flux<String> stream(LLMRequest request) {
+            return complete(request).map(LLMResponse::getText).flux();
+        }
+    }
+
+    private static LLMConcurrencyLimiter limiter(SimpleMeterRegistry registry) {
+        LLMConcurrencyLimiter limiter = new LLMConcurrencyLimiter();
+        ReflectionTestUtils.setField(limiter, "enabled", true);
+        ReflectionTestUtils.setField(limiter, "initialLimit", 20);
+        ReflectionTestUtils.setField(limiter, "minLimit", 2);
+        ReflectionTestUtils.setField(limiter, "maxLimit", 200);
+        ReflectionTestUtils.setField(limiter, "backoffRatio", 0.9);
+        ReflectionTestUtils.setField(limiter, "latencyThreshold", Duration.ofSeconds(60));
+        ReflectionTestUtils.setField(limiter, "latencyWindow", 100);
+        ReflectionTestUtils.setField(limiter, "latencyMinSamples", 20);
+        ReflectionTestUtils.setField(limiter, "latencyTolerance", 2.0);
+        ReflectionTestUtils.setField(limiter, "maxQueueDepth", 100);
+        ReflectionTestUtils.setField(limiter, "meterRegistry", registry);
+        return limiter;
+    }
+
+    static LLMProviderRouter router(Duration initialHedgeDelay, LLMProvider... providers) {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+        LLMCircuitBreaker circuitBreaker = new LLMCircuitBreaker();
+        ReflectionTestUtils.setField(circuitBreaker, "enabled", true);
+        ReflectionTestUtils.setField(circuitBreaker, "windowSize", 20);
+        ReflectionTestUtils.setField(circuitBreaker, "minimumCalls", 5);
+        ReflectionTestUtils.setField(circuitBreaker, "failureRateThreshold", 0.5);
+        ReflectionTestUtils.setField(circuitBreaker, "openDuration", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(circuitBreaker, "halfOpenCalls", 1);
+        ReflectionTestUtils.setField(circuitBreaker, "meterRegistry", registry);
+
+        LLMProviderRouter router = new LLMProviderRouter(List.of(providers));
+        ReflectionTestUtils.setField(router, "preferredProvider", providers[0].getName());
+        ReflectionTestUtils.setField(router, "enabled", true);
+        ReflectionTestUtils.setField(router, "latencyWindow", 50);
+        ReflectionTestUtils.setField(router, "minSamples", 5);
+        ReflectionTestUtils.setField(router, "errorRateAlpha", 0.2);
+        ReflectionTestUtils.setField(router, "maxErrorRate", 0.5);
+        ReflectionTestUtils.setField(router, "hedgingEnabled", true);
+        ReflectionTestUtils.setField(router, "hedgedOperations", Set.of("plan", "chat"));
+        ReflectionTestUtils.setField(router, "minHedgeDelay", Duration.ofMillis(20));
+        ReflectionTestUtils.setField(router, "initialHedgeDelay", initialHedgeDelay);
+        ReflectionTestUtils.setField(router, "meterRegistry", registry);
+        ReflectionTestUtils.setField(router, "circuitBreaker", circuitBreaker);
+        ReflectionTestUtils.setField(router, "concurrencyLimiter", limiter(registry));
+        router.init();
+        return router;
+    }
+
+    private static Function<LLMProvider, Mono<LLMResponse>> admitted(LLMProviderRouter router, LLMRequest request) {
+        return provider -> router.admit(provider, provider.complete(request));
+    }
+
+    @Test
+    void preferredProviderIsTriedFirstUntilAnotherIsMeasuredFaster() {
+        FixedLatencyProvider slow = new FixedLatencyProvider("slow", Duration.ofMillis(40), null);
+        FixedLatencyProvider fast = new FixedLatencyProvider("fast", Duration.ofMillis(5), null);
+        LLMProviderRouter router = router(Duration.ofSeconds(5), slow, fast);
+
+        assertSame(slow, router.select());
+        for (int i = 0; i < 5; i++) {
+            router.admit(slow, slow.complete(UNHEDGED)).block();
+            router.admit(fast, fast.complete(UNHEDGED)).block();
+        }
+
+        assertSame(fast, router.select());
+        assertEquals("from fast", router.execute(UNHEDGED, admitted(router, UNHEDGED)).block().getText());
+    }
+
+    @Test
+    void unhealthyProviderIsOrderedAfterHealthyOnes() {
+        FixedLatencyProvider failing = new FixedLatencyProvider("failing", Duration.ZERO, new IllegalStateException("down"));
+        FixedLatencyProvider healthy = new FixedLatencyProvider("healthy", Duration.ofMillis(5), null);
+        LLMProviderRouter router = router(Duration.ofSeconds(5), failing, healthy);
+
+        for (int i = 0; i < 4; i++) {
+            assertThrows(IllegalStateException.class, () -> router.execute(UNHEDGED, admitted(router, UNHEDGED)).block());
+        }
+
+        assertSame(healthy, router.select());
+        assertEquals("from healthy", router.execute(UNHEDGED, admitted(router, UNHEDGED)).block().getText());
+    }
+
+    @Test
+    void unavailableProviderFailsOverToTheNextOne() {
+        FixedLatencyProvider unavailable = new FixedLatencyProvider("unavailable", Duration.ZERO,
+            new LLMProviderUnavailableException("unavailable", "Concurrency limit queue is full"));
+        FixedLatencyProvider backup = new FixedLatencyProvider("backup", Duration.ofMillis(5), null);
+        LLMProviderRouter router = router(Duration.ofSeconds(5), unavailable, backup);
+
+        LLMResponse response = router.execute(UNHEDGED, admitted(router, UNHEDGED)).block(Duration.ofSeconds(5));
+
+        assertEquals("from backup", response.getText());
+        assertEquals(1, unavailable.calls.get());
+    }
+
+    @Test
+    void otherErrorsAreNotFailedOver() {
+        FixedLatencyProvider failing = new FixedLatencyProvider("failing", Duration.ZERO, new IllegalStateException("bad request"));
+        FixedLatencyProvider backup = new FixedLatencyProvider("backup", Duration.ofMillis(5), null);
+        LLMProviderRouter router = router(Duration.ofSeconds(5), failing, backup);
+
+        IllegalStateException error = assertThrows(IllegalStateException.class,
+            () -> router.execute(UNHEDGED, admitted(router, UNHEDGED)).block(Duration.ofSeconds(5)));
+
+        assertEquals("bad request", error.getMessage());
+        assertEquals(0, backup.calls.get());
+    }
+
+    @Test
+    void slowPrimaryIsHedgedAndCancelledOnceTheRunnerUpAnswers() {
+        FixedLatencyProvider slow = new FixedLatencyProvider("slow", Duration.ofSeconds(5), null);
+        FixedLatencyProvider fast = new FixedLatencyProvider("fast", Duration.ofMillis(10), null);
+        LLMProviderRouter router = router(Duration.ofMillis(50), slow, fast);
+
+        long start = System.nanoTime();
+        LLMResponse response = router.execute(HEDGED, admitted(router, HEDGED)).block(Duration.ofSeconds(5));
+
+        assertEquals("from fast", response.getText());
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(2).toNanos(), "waited for the slow primary");
+        assertEquals(1, slow.cancellations.get());
+        assertEquals(0, fast.cancellations.get());
+    }
+
+    @Test
+    void operationsThatAreNotHedgedWaitForThePrimary() {
+        FixedLatencyProvider primary = new FixedLatencyProvider("primary", Duration.ofMillis(200), null);
+        FixedLatencyProvider runnerUp = new FixedLatencyProvider("runner-up", Duration.ofMillis(5), null);
+        LLMProviderRouter router = router(Duration.ofMillis(20), primary, runnerUp);
+
+        assertEquals("from primary", router.execute(UNHEDGED, admitted(router, UNHEDGED)).block().getText());
+        assertEquals(0, runnerUp.calls.get());
+    }
+
+    @Test
+    void failingPrimaryHedgesImmediately() {
+        FixedLatencyProvider failing = new FixedLatencyProvider("failing", Duration.ZERO, new IllegalStateException("down"));
+        FixedLatencyProvider backup = new FixedLatencyProvider("backup", Duration.ofMillis(5), null);
+        LLMProviderRouter router = router(Duration.ofSeconds(5), failing, backup);
+
+        long start = System.nanoTime();
+        LLMResponse response = router.execute(HEDGED, admitted(router, HEDGED)).block(Duration.ofSeconds(5));
+
+        assertEquals("from backup", response.getText());
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(2).toNanos(), "waited for the hedge delay");
+    }
+
+    @Test
+    void whenBothHedgedCallsFailThePrimaryErrorIsReported() {
+        IllegalStateException primaryError = new IllegalStateException("primary down");
+        FixedLatencyProvider primary = new FixedLatencyProvider("primary", Duration.ofMillis(30), primaryError);
+        FixedLatencyProvider runnerUp = new FixedLatencyProvider("runner-up", Duration.ZERO,
+            new IllegalArgumentException("runner-up down"));
+        LLMProviderRouter router = router(Duration.ZERO, primary, runnerUp);
+
+        IllegalStateException error = assertThrows(IllegalStateException.class,
+            () -> router.execute(HEDGED, admitted(router, HEDGED)).block(Duration.ofSeconds(5)));
+
+        assertSame(primaryError, error);
+        assertEquals(1, runnerUp.calls.get());
+    }
+}
@@ -0,0 +1,51 @@
+package com.nebula.controlplane.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.nebula.shared.model.ExecutionPlan;
+import com.nebula.shared.plan.PlanCompiler;
+import com.nebula.shared.util.JsonUtil;
+import com.nebula.shared.util.PlanSchemaValidator;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MockLLMProviderTest {
+
+    private static final PlanSchemaValidator validator = PlanSchemaValidator.forExecutionPlan();
+
+    static MockLLMProvider provider(long seed) {
+        MockLLMProvider provider = new MockLLMProvider();
+        ReflectionTestUtils.setField(provider, "selectedProvider", "mock");
+        ReflectionTestUtils.setField(provider, "model", "mock-1");
+        ReflectionTestUtils.setField(provider, "seed", seed);
+        ReflectionTestUtils.setField(provider, "planAgents", 6);
+        ReflectionTestUtils.setField(provider, "toolsPerAgent", 1);
+        ReflectionTestUtils.setField(provider, "planSteps", 12);
+        ReflectionTestUtils.setField(provider, "maxDepth", 2);
+        ReflectionTestUtils.setField(provider, "parallelWidth", 3);
+        ReflectionTestUtils.setField(provider, "languages", List.of("java", "python"));
+        ReflectionTestUtils.setField(provider, "codeSizeBytes", 256);
+        ReflectionTestUtils.setField(provider, "latencyDistribution", "fixed");
+        ReflectionTestUtils.setField(provider, "latencyMedian", Duration.ZERO);
+        ReflectionTestUtils.setField(provider, "latencySigma", 0.0);
+        ReflectionTestUtils.setField(provider, "latencyMax", Duration.ofSeconds(1));
+        return provider;
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {0, 1, 2, 3, 4})
+    void generatedPlansMatchTheSchema(long seed) throws Exception {
+        LLMRequest request = new LLMRequest(LLMOperation.PLAN, "Create an execution plan", "Prompt " + seed);
+
+        String text = provider(seed).complete(request).block(Duration.ofSeconds(5)).getText();
+        JsonNode plan = JsonUtil.getObjectMapper().readTree(text);
+
+        assertEquals(List.of(), validator.validate(plan));
+        PlanCompiler.compile(JsonUtil.getObjectMapper().treeToValue(plan, ExecutionPlan.class));
+    }
+}
@@ -0,0 +1,116 @@
+package com.nebula.controlplane.llm;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Local HTTP server standing in for an LLM vendor API. Replies are served in the order they were
+ * queued, and every request is recorded.
+ */
+final class StubLLMServer implements AutoCloseable {
+
+    record Request(String method, String uri, Headers headers, String body) {}
+
+    private record Reply(int status, String contentType, String body, String[] headers) {}
+
+    private final HttpServer server;
+    private final Queue<Reply> replies = new ConcurrentLinkedQueue<>();
+    private final List<Request> requests = new CopyOnWriteArrayList<>();
+
+    StubLLMServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Queue a reply; {@code headers} are name/value pairs
+     */
+    StubLLMServer reply(int status, String contentType, String body, String... headers) {
+        replies.add(new Reply(status, contentType, body, headers));
+        return this;
+    }
+
+    StubLLMServer replyJson(String body) {
+        return reply(200, "application/json", body);
+    }
+
+    StubLLMServer replyEvents(String body) {
+        return reply(200, "text/event-stream", body);
+    }
+
+    List<Request> requests() {
+        return requests;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.add(new Request(exchange.getRequestMethod(), exchange.getRequestURI().toString(),
+            exchange.getRequestHeaders(), new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8)));
+        Reply reply = replies.poll();
+        if (reply == null) {
+            reply = new Reply(500, "text/plain", "No reply queued", new String[0]);
+        }
+        byte[] body = reply.body().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", reply.contentType());
+        for (int i = 0; i + 1 < reply.headers().length; i += 2) {
+            exchange.getResponseHeaders().set(reply.headers()[i], reply.headers()[i + 1]);
+        }
+        exchange.sendResponseHeaders(reply.status(), body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * A started web client factory with short timeouts; destroy it after the test
+     */
+    static LLMWebClientFactory webClientFactory() {
+        LLMWebClientFactory factory = new LLMWebClientFactory();
+        ReflectionTestUtils.setField(factory, "maxConnections", 8);
+        ReflectionTestUtils.setField(factory, "pendingAcquireMaxCount", 100);
+        ReflectionTestUtils.setField(factory, "pendingAcquireTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(factory, "maxIdleTime", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(factory, "maxLifeTime", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(factory, "connectTimeout", Duration.ofSeconds(2));
+        ReflectionTestUtils.setField(factory, "responseTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(factory, "eventLoopThreads", 1);
+        ReflectionTestUtils.setField(factory, "http2Enabled", true);
+        ReflectionTestUtils.setField(factory, "maxInMemorySize", 1 << 20);
+        factory.init();
+        return factory;
+    }
+
+    /**
+     * A retry policy with millisecond backoff, so only a Retry-After header makes a retry wait seconds
+     */
+    static LLMRetryPolicy retryPolicy(LLMRateLimiter rateLimiter, LLMMetrics metrics) {
+        LLMRetryPolicy policy = new LLMRetryPolicy();
+        ReflectionTestUtils.setField(policy, "maxAttempts", 3);
+        ReflectionTestUtils.setField(policy, "minBackoff", Duration.ofMillis(10));
+        ReflectionTestUtils.setField(policy, "maxBackoff", Duration.ofMillis(50));
+        ReflectionTestUtils.setField(policy, "rateLimiter", rateLimiter);
+        ReflectionTestUtils.setField(policy, "metrics", metrics);
+        return policy;
+    }
+}
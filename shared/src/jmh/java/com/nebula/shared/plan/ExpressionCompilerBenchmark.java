@@ -0,0 +1,123 @@
+package com.nebula.shared.plan;
+
+import com.nebula.shared.model.ExecutionPlan;
+import com.nebula.shared.util.JsonUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluating the example plan's loop exit condition as a loop does on every iteration: with the
+ * expression compiled once, binding by name, and compiling it again on each check. The loop benchmarks
+ * run a million iterations, once as a bare loop over a reused slot array and once as a {@code while}
+ * step through {@link FlowExecutor} with an agent that completes immediately. Add {@code -prof gc} to
+ * see the allocation per check.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExpressionCompilerBenchmark {
+
+    private static final String EXIT_CONDITION = "test-results.passed == true && coverage-report.percentage >= 80";
+    private static final List<String> VARIABLES = List.of("test-results", "coverage-report");
+
+    private static final int LOOP_ITERATIONS = 1_000_000;
+    private static final String COUNTER_CONDITION = "i >= 1000000 || test-results.passed == false";
+
+    private CompiledExpression compiled;
+    private Object[] slots;
+    private Map<String, Object> outputs;
+
+    private CompiledExpression counterCondition;
+    private Object[] counterSlots;
+    private int counterSlot;
+    private Integer[] counters;
+    private CompiledPlan loopPlan;
+    private CompletableFuture<Map<String, Object>> noOutputs;
+
+    @Setup
+    public void setUp() {
+        outputs = Map.of(
+            "test-results", Map.of("passed", true, "failures", 0),
+            "coverage-report", Map.of("percentage", 85.5));
+        compiled = ExpressionCompiler.compile(EXIT_CONDITION, VARIABLES);
+        slots = compiled.bind(outputs, compiled.newSlots());
+        if (!compiled.test(slots)) {
+            throw new IllegalStateException("Exit condition should hold for the benchmark outputs");
+        }
+
+        counterCondition = ExpressionCompiler.compile(COUNTER_CONDITION);
+        counterSlots = counterCondition.bind(outputs, counterCondition.newSlots());
+        counterSlot = counterCondition.slot("i");
+        // Boxed once up front, so the loop measures evaluation rather than Integer allocation
+        counters = new Integer[LOOP_ITERATIONS + 1];
+        for (int i = 0; i <= LOOP_ITERATIONS; i++) {
+            counters[i] = i;
+        }
+
+        loopPlan = PlanCompiler.compile(JsonUtil.fromJson("""
+            {"planId": "loop", "version": "1.0.0",
+             "agents": [{"agentId": "worker", "name": "Worker", "type": "data", "language": "java", "capabilities": []}],
+             "executionFlow": {"type": "sequential", "steps": [
+               {"stepId": "loop", "type": "loop", "name": "Loop", "loopType": "while", "iterationVariable": "i",
+                "body": [{"stepId": "work", "type": "sequential", "agentId": "worker", "name": "Work"}],
+                "exitCondition": {"expression": "i >= 1000000", "checkAgentId": "worker", "maxIterations": 1000000}}]}}
+            """, ExecutionPlan.class));
+        noOutputs = CompletableFuture.completedFuture(Map.of());
+    }
+
+    @Benchmark
+    public boolean testCompiled() {
+        return compiled.test(slots);
+    }
+
+    @Benchmark
+    public boolean testCompiledByName() {
+        return compiled.test(outputs);
+    }
+
+    @Benchmark
+    public boolean compileAndTest() {
+        return ExpressionCompiler.compile(EXIT_CONDITION, VARIABLES).test(outputs);
+    }
+
+    @Benchmark
+    public CompiledExpression compile() {
+        return ExpressionCompiler.compile(EXIT_CONDITION, VARIABLES);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOP_ITERATIONS)
+    public int tightLoopCompiled() {
+        int i = 0;
+        do {
+            counterSlots[counterSlot] = counters[++i];
+        } while (!counterCondition.test(counterSlots));
+        return i;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 5)
+    public Map<String, Object> flowExecutorWhileLoop() throws Exception {
+        return new FlowExecutor(loopPlan, (agent, inputs, context) -> noOutputs).run(null).get();
+    }
+}
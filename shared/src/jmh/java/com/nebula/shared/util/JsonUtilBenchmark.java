@@ -0,0 +1,105 @@
+package com.nebula.shared.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.nebula.shared.model.Agent;
+import com.nebula.shared.model.ExecutionPlan;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializing and parsing execution plans through JsonUtil, against the previous JsonUtil setup as
+ * baseline: a reflective ObjectMapper with indented output, used directly for every call. Plans are the
+ * example plan and a copy with its agents repeated 20 times (about 60 KB compact). Run with
+ * {@code -jvmArgsAppend -Dnebula.json.blackbird=false} to measure JsonUtil without the Blackbird module.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonUtilBenchmark {
+
+    @Param({"1", "20"})
+    public int copies;
+
+    private ExecutionPlan plan;
+    private String json;
+    private byte[] jsonBytes;
+    private String baselineJson;
+    private ObjectMapper baselineMapper;
+
+    @Setup
+    public void setUp() throws Exception {
+        plan = JsonUtil.fromJson(Files.readString(Path.of("../schemas/example-execution-plan.json")), ExecutionPlan.class);
+        List<Agent> agents = new ArrayList<>(plan.getAgents());
+        for (int copy = 1; copy < copies; copy++) {
+            for (Agent agent : plan.getAgents()) {
+                Agent clone = JsonUtil.fromJson(JsonUtil.toJson(agent), Agent.class);
+                clone.setAgentId(agent.getAgentId() + "-" + copy);
+                agents.add(clone);
+            }
+        }
+        plan.setAgents(agents);
+        json = JsonUtil.toJson(plan);
+        jsonBytes = JsonUtil.toJsonBytes(plan);
+
+        baselineMapper = new ObjectMapper();
+        baselineMapper.registerModule(new JavaTimeModule());
+        baselineMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        baselineMapper.enable(SerializationFeature.INDENT_OUTPUT);
+        baselineJson = baselineMapper.writeValueAsString(plan);
+    }
+
+    @Benchmark
+    public String toJson() {
+        return JsonUtil.toJson(plan);
+    }
+
+    @Benchmark
+    public byte[] toJsonBytes() {
+        return JsonUtil.toJsonBytes(plan);
+    }
+
+    @Benchmark
+    public String toPrettyJson() {
+        return JsonUtil.toPrettyJson(plan);
+    }
+
+    @Benchmark
+    public ExecutionPlan fromJsonString() {
+        return JsonUtil.fromJson(json, ExecutionPlan.class);
+    }
+
+    @Benchmark
+    public ExecutionPlan fromJsonBytes() {
+        return JsonUtil.fromJson(jsonBytes, ExecutionPlan.class);
+    }
+
+    @Benchmark
+    public String baselineToJson() throws Exception {
+        return baselineMapper.writeValueAsString(plan);
+    }
+
+    @Benchmark
+    public ExecutionPlan baselineFromJson() throws Exception {
+        return baselineMapper.readValue(baselineJson, ExecutionPlan.class);
+    }
+}
@@ -0,0 +1,136 @@
+package com.nebula.shared.util;
+
+import com.nebula.shared.model.Agent;
+import com.nebula.shared.model.ExecutionPlan;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Locating plan JSON and code in LLM responses of realistic size (50 and 500 KB), against the regex
+ * extraction LLMService used before the scanner as baseline. Plan responses wrap an indented plan in
+ * prose, once in a ```json fence and once in a bare ``` fence; code responses hold one ```python fence
+ * per artifact and the requested one is last.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LLMOutputScannerBenchmark {
+
+    private static final String PROSE = "Here is the execution plan for your request. It uses {curly} notes in prose.\n\n";
+    private static final String CLOSING = "\n\nLet me know if you want to change any of the agents.";
+
+    @Param({"50", "500"})
+    public int kilobytes;
+
+    private String planResponse;
+    private String barePlanResponse;
+    private String codeResponse;
+
+    @Setup
+    public void setUp() throws Exception {
+        ExecutionPlan plan = JsonUtil.fromJson(Files.readString(Path.of("../schemas/example-execution-plan.json")),
+            ExecutionPlan.class);
+        List<Agent> template = plan.getAgents();
+        List<Agent> agents = new ArrayList<>(template);
+        String json = JsonUtil.toPrettyJson(plan);
+        for (int copy = 1; json.length() < kilobytes * 1024; copy++) {
+            for (Agent agent : template) {
+                Agent clone = JsonUtil.fromJson(JsonUtil.toJson(agent), Agent.class);
+                clone.setAgentId(agent.getAgentId() + "-" + copy);
+                agents.add(clone);
+            }
+            plan.setAgents(agents);
+            json = JsonUtil.toPrettyJson(plan);
+        }
+        planResponse = PROSE + "```json\n" + json + "\n```" + CLOSING;
+        barePlanResponse = PROSE + "```\n" + json + "\n```" + CLOSING;
+
+        StringBuilder code = new StringBuilder();
+        for (int i = 0; code.length() < kilobytes * 1024; i++) {
+            String fence = code.length() + 1024 < kilobytes * 1024 ? "```javascript\n" : "```python\n";
+            code.append("### Artifact ").append(i).append("\n\nThe agent reads its inputs and calls the tool.\n\n")
+                .append(fence)
+                .append("import json\n\n")
+                .append("def handle(event):\n")
+                .append("    data = json.loads(event[\"body\"])\n")
+                .append("    result = {\"status\": \"ok\", \"items\": [x * 2 for x in data[\"items\"]]}\n")
+                .append("    return {\"statusCode\": 200, \"body\": json.dumps(result)}\n")
+                .append("```\n\n");
+        }
+        codeResponse = code.toString();
+
+        // For the bare fence the baseline returns everything from the first '{' in the prose, so only the
+        // other two are expected to agree
+        if (!extractPlanJson().equals(baselineExtractPlanJson()) || !extractCode().equals(baselineExtractCode())
+            || !extractBarePlanJson().equals(json)) {
+            throw new IllegalStateException("Scanner and baseline disagree on the extracted text");
+        }
+    }
+
+    @Benchmark
+    public String extractPlanJson() {
+        return LLMOutputScanner.findJson(planResponse, LLMOutputScanner.scan(planResponse)).text(planResponse);
+    }
+
+    @Benchmark
+    public String baselineExtractPlanJson() {
+        return baselineJson(planResponse);
+    }
+
+    @Benchmark
+    public String extractBarePlanJson() {
+        return LLMOutputScanner.findJson(barePlanResponse, LLMOutputScanner.scan(barePlanResponse)).text(barePlanResponse);
+    }
+
+    @Benchmark
+    public String baselineExtractBarePlanJson() {
+        return baselineJson(barePlanResponse);
+    }
+
+    @Benchmark
+    public String extractCode() {
+        return LLMOutputScanner.findFence(LLMOutputScanner.scan(codeResponse), "python", "py").text(codeResponse);
+    }
+
+    @Benchmark
+    public String baselineExtractCode() {
+        Matcher matcher = Pattern.compile("```python\\n([\\s\\S]*?)\\n```").matcher(codeResponse);
+        return matcher.find() ? matcher.group(1) : codeResponse;
+    }
+
+    /**
+     * LLMService's JSON extraction before the scanner
+     */
+    private static String baselineJson(String response) {
+        Matcher matcher = Pattern.compile("```json\\n([\\s\\S]*?)\\n```").matcher(response);
+        if (matcher.find()) {
+            return matcher.group(1);
+        }
+        int startIndex = response.indexOf('{');
+        int endIndex = response.lastIndexOf('}');
+        if (startIndex != -1 && endIndex != -1 && endIndex > startIndex) {
+            return response.substring(startIndex, endIndex + 1);
+        }
+        return response;
+    }
+}
@@ -0,0 +1,64 @@
+package com.nebula.shared.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validating the example execution plan with the compiled schema, for a valid plan and one with
+ * violations, against compiling the schema for every plan.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PlanSchemaValidatorBenchmark {
+
+    private PlanSchemaValidator validator;
+    private JsonNode validPlan;
+    private JsonNode invalidPlan;
+
+    @Setup
+    public void setUp() throws Exception {
+        validator = PlanSchemaValidator.forExecutionPlan();
+        validPlan = JsonUtil.getObjectMapper().readTree(Files.readString(Path.of("../schemas/example-execution-plan.json")));
+        ObjectNode invalid = validPlan.deepCopy();
+        invalid.remove("planId");
+        invalid.put("version", 2);
+        invalidPlan = invalid;
+        if (!validator.validate(validPlan).isEmpty() || validator.validate(invalidPlan).isEmpty()) {
+            throw new IllegalStateException("Unexpected validation result for the example plan");
+        }
+    }
+
+    @Benchmark
+    public List<String> validateValidPlan() {
+        return validator.validate(validPlan);
+    }
+
+    @Benchmark
+    public List<String> validateInvalidPlan() {
+        return validator.validate(invalidPlan);
+    }
+
+    @Benchmark
+    public List<String> compileSchemaAndValidate() {
+        return PlanSchemaValidator.forExecutionPlan().validate(validPlan);
+    }
+}
@@ -0,0 +1,33 @@
+package com.nebula.shared.enums;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * Enumeration of completion policies for parallel execution steps.
+ */
+public enum CompletionPolicy {
+    ALL("all"),
+    FIRST_SUCCESS("first-success"),
+    QUORUM("quorum"),
+    DEADLINE("deadline");
+    
+    private final String value;
+    
+    CompletionPolicy(String value) {
+        this.value = value;
+    }
+    
+    @JsonValue
+    public String getValue() {
+        return value;
+    }
+    
+    public static CompletionPolicy fromValue(String value) {
+        for (CompletionPolicy policy : CompletionPolicy.values()) {
+            if (policy.value.equals(value)) {
+                return policy;
+            }
+        }
+        throw new IllegalArgumentException("Unknown completion policy: " + value);
+    }
+}
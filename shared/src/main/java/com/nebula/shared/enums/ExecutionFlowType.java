@@ -10,7 +10,8 @@ public enum ExecutionFlowType {
     PARALLEL("parallel"),
     CONDITIONAL("conditional"),
     LOOP("loop"),
-    HYBRID("hybrid");
+    HYBRID("hybrid"),
+    DAG("dag");
     
     private final String value;
     
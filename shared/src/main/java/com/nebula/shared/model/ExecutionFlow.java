@@ -3,6 +3,7 @@ package com.nebula.shared.model;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.annotation.JsonValue;
 import com.nebula.shared.enums.ExecutionFlowType;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotEmpty;
@@ -82,10 +83,21 @@ public class ExecutionFlow {
          * Error handling strategies
          */
         public enum ErrorStrategy {
-            FAIL_FAST,
-            CONTINUE,
-            RETRY,
-            ROLLBACK
+            FAIL_FAST("fail-fast"),
+            CONTINUE("continue"),
+            RETRY("retry"),
+            ROLLBACK("rollback");
+            
+            private final String value;
+            
+            ErrorStrategy(String value) {
+                this.value = value;
+            }
+            
+            @JsonValue
+            public String getValue() {
+                return value;
+            }
         }
     }
 }
@@ -95,7 +107,7 @@ public class ExecutionFlow {
  */
 @JsonTypeInfo(
     use = JsonTypeInfo.Id.NAME,
-    include = JsonTypeInfo.As.PROPERTY,
+    include = JsonTypeInfo.As.EXISTING_PROPERTY,
     property = "type"
 )
 @JsonSubTypes({
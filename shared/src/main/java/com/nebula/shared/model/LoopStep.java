@@ -33,6 +33,15 @@ public class LoopStep extends ExecutionStep {
     @JsonProperty("collectionVariable")
     private String collectionVariable;
     
+    @JsonProperty("parallelism")
+    private Integer parallelism;
+    
+    @JsonProperty("chunkSize")
+    private Integer chunkSize;
+    
+    @JsonProperty("ordered")
+    private Boolean ordered;
+    
     // Constructors
     public LoopStep() {}
     
@@ -60,6 +69,15 @@ public class LoopStep extends ExecutionStep {
     public String getCollectionVariable() { return collectionVariable; }
     public void setCollectionVariable(String collectionVariable) { this.collectionVariable = collectionVariable; }
     
+    public Integer getParallelism() { return parallelism; }
+    public void setParallelism(Integer parallelism) { this.parallelism = parallelism; }
+    
+    public Integer getChunkSize() { return chunkSize; }
+    public void setChunkSize(Integer chunkSize) { this.chunkSize = chunkSize; }
+    
+    public Boolean getOrdered() { return ordered; }
+    public void setOrdered(Boolean ordered) { this.ordered = ordered; }
+    
     @Override
     public String getType() {
         return "loop";
@@ -1,6 +1,7 @@
 package com.nebula.shared.model;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.nebula.shared.enums.CompletionPolicy;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
@@ -21,6 +22,12 @@ public class ParallelStep extends ExecutionStep {
     @JsonProperty("waitForAll")
     private Boolean waitForAll = true;
     
+    @JsonProperty("completionPolicy")
+    private CompletionPolicy completionPolicy;
+    
+    @JsonProperty("quorum")
+    private Integer quorum;
+    
     // Constructors
     public ParallelStep() {}
     
@@ -42,6 +49,12 @@ public class ParallelStep extends ExecutionStep {
     public Boolean getWaitForAll() { return waitForAll; }
     public void setWaitForAll(Boolean waitForAll) { this.waitForAll = waitForAll; }
     
+    public CompletionPolicy getCompletionPolicy() { return completionPolicy; }
+    public void setCompletionPolicy(CompletionPolicy completionPolicy) { this.completionPolicy = completionPolicy; }
+    
+    public Integer getQuorum() { return quorum; }
+    public void setQuorum(Integer quorum) { this.quorum = quorum; }
+    
     @Override
     public String getType() {
         return "parallel";
@@ -0,0 +1,112 @@
+package com.nebula.shared.plan;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A condition or loop exit expression parsed once by {@link ExpressionCompiler}.
+ * Every variable the expression reads is bound to a slot; callers fill an {@code Object[]} of slot values
+ * (see {@link #newSlots()}) and evaluate against it as often as needed. Evaluation walks a tree of
+ * pre-resolved nodes and does not allocate, so it is cheap enough for loops checked on every iteration.
+ * Instances are immutable and can be shared across threads.
+ */
+public final class CompiledExpression {
+
+    /**
+     * A node of the compiled tree; numeric and boolean results are returned unboxed
+     */
+    interface Node {
+        Object value(Object[] slots);
+
+        default boolean test(Object[] slots) {
+            return ExpressionCompiler.truthy(value(slots));
+        }
+
+        default double number(Object[] slots) {
+            return ExpressionCompiler.number(value(slots));
+        }
+    }
+
+    private final String source;
+    private final String[] variables;
+    private final Node root;
+
+    CompiledExpression(String source, String[] variables, Node root) {
+        this.source = source;
+        this.variables = variables;
+        this.root = root;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public int slotCount() {
+        return variables.length;
+    }
+
+    public String variable(int slot) {
+        return variables[slot];
+    }
+
+    /**
+     * Slot of a variable, or -1 if the expression does not read it
+     */
+    public int slot(String variable) {
+        for (int i = 0; i < variables.length; i++) {
+            if (variables[i].equals(variable)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public List<String> getVariables() {
+        return List.of(variables);
+    }
+
+    /**
+     * Fresh slot array sized for this expression
+     */
+    public Object[] newSlots() {
+        return new Object[variables.length];
+    }
+
+    /**
+     * Evaluate as a condition. Slot values may be scalars, maps or Jackson nodes; dotted paths such as
+     * {@code test-results.passed} navigate into them.
+     */
+    public boolean test(Object[] slots) {
+        return root.test(slots);
+    }
+
+    /**
+     * Evaluate to a value
+     */
+    public Object evaluate(Object[] slots) {
+        return root.value(slots);
+    }
+
+    /**
+     * Bind the variables by name and evaluate; convenient for one-off checks, allocates the slot array
+     */
+    public boolean test(Map<String, ?> values) {
+        return test(bind(values, newSlots()));
+    }
+
+    /**
+     * Copy the variables' values into {@code slots}; missing variables are left null
+     */
+    public Object[] bind(Map<String, ?> values, Object[] slots) {
+        for (int i = 0; i < variables.length; i++) {
+            slots[i] = values.get(variables[i]);
+        }
+        return slots;
+    }
+
+    @Override
+    public String toString() {
+        return source + " " + Arrays.toString(variables);
+    }
+}
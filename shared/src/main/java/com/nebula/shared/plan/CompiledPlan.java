@@ -0,0 +1,280 @@
+package com.nebula.shared.plan;
+
+import com.nebula.shared.model.Agent;
+import com.nebula.shared.model.ExecutionPlan;
+import com.nebula.shared.model.ExecutionStep;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Immutable, index-based form of an execution plan produced by {@link PlanCompiler}.
+ * Agents and steps are numbered densely from 0; steps are numbered in pre-order, so a step's
+ * descendants directly follow it. All relations are primitive arrays in compressed sparse row form,
+ * so executors can track per-step state in plain arrays and answer structural queries without
+ * hashing strings. String ids are only needed to translate at the boundaries.
+ */
+public final class CompiledPlan {
+
+    /**
+     * Kind of a compiled step
+     */
+    public enum StepKind {
+        SEQUENTIAL,
+        PARALLEL,
+        CONDITIONAL,
+        LOOP
+    }
+
+    private static final StepKind[] KINDS = StepKind.values();
+
+    private final ExecutionPlan plan;
+    private final Agent[] agents;
+    private final Map<String, Integer> agentIndex;
+    private final Csr agentDependencies;
+
+    private final ExecutionStep[] steps;
+    private final Map<String, Integer> stepIndex;
+    private final byte[] kinds;
+    private final int[] parents;
+    private final int[] depths;
+    private final int[] roots;
+    private final int[] thenSteps;
+    private final int[] elseSteps;
+    private final Csr children;
+    private final Csr stepAgents;
+    private final Csr agentSteps;
+    private final Csr successors;
+    private final Csr predecessors;
+    private final CompiledExpression[] expressions;
+
+    CompiledPlan(ExecutionPlan plan, Agent[] agents, Map<String, Integer> agentIndex, Csr agentDependencies,
+                 ExecutionStep[] steps, Map<String, Integer> stepIndex, byte[] kinds, int[] parents, int[] depths,
+                 int[] roots, int[] thenSteps, int[] elseSteps, Csr children, Csr stepAgents, Csr agentSteps,
+                 Csr successors, Csr predecessors, CompiledExpression[] expressions) {
+        this.plan = plan;
+        this.agents = agents;
+        this.agentIndex = agentIndex;
+        this.agentDependencies = agentDependencies;
+        this.steps = steps;
+        this.stepIndex = stepIndex;
+        this.kinds = kinds;
+        this.parents = parents;
+        this.depths = depths;
+        this.roots = roots;
+        this.thenSteps = thenSteps;
+        this.elseSteps = elseSteps;
+        this.children = children;
+        this.stepAgents = stepAgents;
+        this.agentSteps = agentSteps;
+        this.successors = successors;
+        this.predecessors = predecessors;
+        this.expressions = expressions;
+    }
+
+    /**
+     * The plan this was compiled from
+     */
+    public ExecutionPlan getPlan() {
+        return plan;
+    }
+
+    // Agents
+
+    public int agentCount() {
+        return agents.length;
+    }
+
+    public Agent agent(int agent) {
+        return agents[agent];
+    }
+
+    public String agentId(int agent) {
+        return agents[agent].getAgentId();
+    }
+
+    /**
+     * Index of an agent id, or -1 if the plan has no such agent
+     */
+    public int agentIndex(String agentId) {
+        Integer index = agentIndex.get(agentId);
+        return index != null ? index : -1;
+    }
+
+    public int dependencyCount(int agent) {
+        return agentDependencies.count(agent);
+    }
+
+    /**
+     * The {@code i}-th agent that {@code agent} declares as a dependency
+     */
+    public int dependency(int agent, int i) {
+        return agentDependencies.get(agent, i);
+    }
+
+    /**
+     * Number of steps that run the agent
+     */
+    public int stepCountOf(int agent) {
+        return agentSteps.count(agent);
+    }
+
+    public int stepOf(int agent, int i) {
+        return agentSteps.get(agent, i);
+    }
+
+    // Steps
+
+    public int stepCount() {
+        return steps.length;
+    }
+
+    public ExecutionStep step(int step) {
+        return steps[step];
+    }
+
+    public String stepId(int step) {
+        return steps[step].getStepId();
+    }
+
+    /**
+     * Index of a step id, or -1 if the plan has no such step
+     */
+    public int stepIndex(String stepId) {
+        Integer index = stepIndex.get(stepId);
+        return index != null ? index : -1;
+    }
+
+    public StepKind kind(int step) {
+        return KINDS[kinds[step]];
+    }
+
+    /**
+     * Enclosing loop or conditional step, or -1 for a top-level step
+     */
+    public int parent(int step) {
+        return parents[step];
+    }
+
+    /**
+     * Nesting depth; top-level steps are at depth 0
+     */
+    public int depth(int step) {
+        return depths[step];
+    }
+
+    public int rootCount() {
+        return roots.length;
+    }
+
+    /**
+     * The {@code i}-th top-level step in flow order
+     */
+    public int root(int i) {
+        return roots[i];
+    }
+
+    /**
+     * Branch taken when a conditional step's condition holds, or -1 for other kinds
+     */
+    public int thenStep(int step) {
+        return thenSteps[step];
+    }
+
+    /**
+     * Branch taken when a conditional step's condition fails, or -1 if there is none
+     */
+    public int elseStep(int step) {
+        return elseSteps[step];
+    }
+
+    /**
+     * Compiled condition of a conditional step or exit condition of a loop, or null for other kinds
+     */
+    public CompiledExpression expression(int step) {
+        return expressions[step];
+    }
+
+    /**
+     * Number of directly nested steps: the body of a loop, or the branches of a conditional
+     */
+    public int childCount(int step) {
+        return children.count(step);
+    }
+
+    public int child(int step, int i) {
+        return children.get(step, i);
+    }
+
+    /**
+     * Number of agents the step runs itself: one for a sequential step, every branch of a parallel
+     * step, and the exit check agent of a loop
+     */
+    public int agentCountOf(int step) {
+        return stepAgents.count(step);
+    }
+
+    public int agentOf(int step, int i) {
+        return stepAgents.get(step, i);
+    }
+
+    /**
+     * Number of sibling steps that may only start once this step has finished
+     */
+    public int successorCount(int step) {
+        return successors.count(step);
+    }
+
+    public int successor(int step, int i) {
+        return successors.get(step, i);
+    }
+
+    /**
+     * Number of sibling steps that must finish before this step may start
+     */
+    public int predecessorCount(int step) {
+        return predecessors.count(step);
+    }
+
+    public int predecessor(int step, int i) {
+        return predecessors.get(step, i);
+    }
+
+    /**
+     * Fresh array of predecessor counts, for an executor to decrement as steps complete
+     */
+    public int[] newPendingCounts() {
+        int[] pending = new int[steps.length];
+        for (int step = 0; step < pending.length; step++) {
+            pending[step] = predecessors.count(step);
+        }
+        return pending;
+    }
+
+    /**
+     * Adjacency lists in compressed sparse row form: the entries of row {@code i} are
+     * {@code values[offsets[i]]} up to {@code values[offsets[i + 1]]}
+     */
+    static final class Csr {
+        private final int[] offsets;
+        private final int[] values;
+
+        Csr(int[] offsets, int[] values) {
+            this.offsets = offsets;
+            this.values = values;
+        }
+
+        int count(int row) {
+            return offsets[row + 1] - offsets[row];
+        }
+
+        int get(int row, int i) {
+            return values[offsets[row] + i];
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(offsets) + " " + Arrays.toString(values);
+        }
+    }
+}
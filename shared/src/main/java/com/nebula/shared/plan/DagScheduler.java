@@ -0,0 +1,254 @@
+package com.nebula.shared.plan;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Runs the top-level steps of a {@link CompiledPlan} as a dependency graph: every step starts as soon as
+ * all of its predecessors have finished, so independent branches overlap instead of waiting for their
+ * position in the flow. When more steps are ready than may run at once, the step with the longest
+ * remaining critical path starts first, since it bounds the completion time of the whole plan.
+ * A scheduler is single-use; the first failing step fails the run and no further steps are started.
+ */
+public class DagScheduler {
+
+    /**
+     * Every step costs the same; the critical path is then the longest chain of steps
+     */
+    public static final IntToLongFunction UNIT_COST = step -> 1L;
+
+    /**
+     * Starts one top-level step, including any steps nested in it
+     */
+    @FunctionalInterface
+    public interface StepRunner {
+        CompletionStage<?> run(int step);
+    }
+
+    private final CompiledPlan plan;
+    private final int maxConcurrency;
+    private final long[] ranks;
+    private final int[] pending;
+
+    private final int[] heap;
+    private int heapSize;
+    private int running;
+    private int completed;
+    private boolean finished;
+    private boolean driving;
+    private boolean again;
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+    public DagScheduler(CompiledPlan plan) {
+        this(plan, UNIT_COST, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param cost           estimated cost of a top-level step, e.g. its expected latency
+     * @param maxConcurrency maximum number of steps running at once
+     */
+    public DagScheduler(CompiledPlan plan, IntToLongFunction cost, int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be at least 1: " + maxConcurrency);
+        }
+        this.plan = plan;
+        this.maxConcurrency = maxConcurrency;
+        this.ranks = criticalPathRanks(plan, cost);
+        this.pending = plan.newPendingCounts();
+        this.heap = new int[plan.rootCount()];
+    }
+
+    /**
+     * Cost of the most expensive chain from each top-level step to the end of the plan, including the
+     * step itself; entries for nested steps are 0
+     */
+    public static long[] criticalPathRanks(CompiledPlan plan, IntToLongFunction cost) {
+        long[] ranks = new long[plan.stepCount()];
+        int[] order = topologicalOrder(plan);
+        for (int i = order.length - 1; i >= 0; i--) {
+            int step = order[i];
+            long longest = 0;
+            for (int s = 0; s < plan.successorCount(step); s++) {
+                longest = Math.max(longest, ranks[plan.successor(step, s)]);
+            }
+            ranks[step] = cost.applyAsLong(step) + longest;
+        }
+        return ranks;
+    }
+
+    /**
+     * Cost of the critical path, the lower bound on the plan's completion time
+     */
+    public long criticalPathLength() {
+        long longest = 0;
+        for (int i = 0; i < plan.rootCount(); i++) {
+            longest = Math.max(longest, ranks[plan.root(i)]);
+        }
+        return longest;
+    }
+
+    /**
+     * Run every top-level step; completes when all have finished, or exceptionally with the first failure
+     */
+    public CompletableFuture<Void> run(StepRunner runner) {
+        synchronized (this) {
+            if (plan.rootCount() == 0) {
+                finished = true;
+                done.complete(null);
+                return done;
+            }
+            for (int i = 0; i < plan.rootCount(); i++) {
+                if (pending[plan.root(i)] == 0) {
+                    push(plan.root(i));
+                }
+            }
+        }
+        drive(runner);
+        return done;
+    }
+
+    /**
+     * Start ready steps while slots are free. Re-entrant calls from steps that complete synchronously only
+     * flag another pass, so the stack does not grow with the length of the plan.
+     */
+    private void drive(StepRunner runner) {
+        synchronized (this) {
+            if (driving) {
+                again = true;
+                return;
+            }
+            driving = true;
+        }
+        while (true) {
+            List<Integer> start;
+            synchronized (this) {
+                again = false;
+                start = finished ? List.of() : takeReady();
+                if (start.isEmpty() && !again) {
+                    driving = false;
+                    return;
+                }
+            }
+            for (int step : start) {
+                start(runner, step);
+            }
+        }
+    }
+
+    private void start(StepRunner runner, int step) {
+        CompletionStage<?> stage;
+        try {
+            stage = runner.run(step);
+            if (stage == null) {
+                stage = CompletableFuture.failedFuture(
+                    new IllegalStateException("Runner returned no stage for step " + plan.stepId(step)));
+            }
+        } catch (RuntimeException e) {
+            stage = CompletableFuture.failedFuture(e);
+        }
+        stage.whenComplete((result, error) -> onComplete(runner, step, error));
+    }
+
+    private void onComplete(StepRunner runner, int step, Throwable error) {
+        synchronized (this) {
+            running--;
+            if (finished) {
+                return;
+            }
+            if (error != null) {
+                finished = true;
+                done.completeExceptionally(error);
+                return;
+            }
+            completed++;
+            for (int s = 0; s < plan.successorCount(step); s++) {
+                int successor = plan.successor(step, s);
+                if (--pending[successor] == 0) {
+                    push(successor);
+                }
+            }
+            if (completed == plan.rootCount()) {
+                finished = true;
+                done.complete(null);
+                return;
+            }
+        }
+        drive(runner);
+    }
+
+    private List<Integer> takeReady() {
+        List<Integer> start = new ArrayList<>(Math.min(heapSize, maxConcurrency - running));
+        while (heapSize > 0 && running < maxConcurrency) {
+            start.add(pop());
+            running++;
+        }
+        return start;
+    }
+
+    private static int[] topologicalOrder(CompiledPlan plan) {
+        int[] pending = plan.newPendingCounts();
+        int[] order = new int[plan.rootCount()];
+        int size = 0;
+        for (int i = 0; i < plan.rootCount(); i++) {
+            if (pending[plan.root(i)] == 0) {
+                order[size++] = plan.root(i);
+            }
+        }
+        for (int head = 0; head < size; head++) {
+            int step = order[head];
+            for (int s = 0; s < plan.successorCount(step); s++) {
+                int successor = plan.successor(step, s);
+                if (--pending[successor] == 0) {
+                    order[size++] = successor;
+                }
+            }
+        }
+        return order;
+    }
+
+    // Binary max-heap of ready steps keyed by rank; ties go to the step declared first
+
+    private boolean before(int a, int b) {
+        return ranks[a] != ranks[b] ? ranks[a] > ranks[b] : a < b;
+    }
+
+    private void push(int step) {
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(step, heap[parent])) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = step;
+    }
+
+    private int pop() {
+        int top = heap[0];
+        int last = heap[--heapSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && before(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!before(heap[child], last)) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        if (heapSize > 0) {
+            heap[i] = last;
+        }
+        return top;
+    }
+}
@@ -0,0 +1,466 @@
+package com.nebula.shared.plan;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses condition expressions into {@link CompiledExpression} trees.
+ * <p>
+ * Grammar, loosest binding first: {@code ||}, {@code &&}, {@code !}, comparisons
+ * ({@code == != < <= > >=}), {@code + -}, {@code * / %}, then literals (numbers, quoted strings,
+ * {@code true}, {@code false}, {@code null}), parentheses and variable paths. Identifiers may contain
+ * hyphens, as output names do ({@code code-approved}); a minus surrounded by spaces is subtraction.
+ * The first segment of a path is the variable and gets a slot. Declared variables keep their declared
+ * order and may themselves contain dots; other variables get slots in order of appearance.
+ */
+public final class ExpressionCompiler {
+
+    private ExpressionCompiler() {}
+
+    public static CompiledExpression compile(String expression) {
+        return compile(expression, null);
+    }
+
+    /**
+     * @param variables declared variables, e.g. {@code Condition.variables}; may be null
+     */
+    public static CompiledExpression compile(String expression, List<String> variables) {
+        if (expression == null || expression.isBlank()) {
+            throw new IllegalArgumentException("Expression is empty");
+        }
+        Parser parser = new Parser(expression, variables);
+        CompiledExpression.Node root = parser.or();
+        parser.skipSpaces();
+        if (parser.pos < expression.length()) {
+            throw parser.error("unexpected '" + expression.charAt(parser.pos) + "'");
+        }
+        return new CompiledExpression(expression, parser.slots.toArray(new String[0]), root);
+    }
+
+    // Value semantics shared by the nodes
+
+    static boolean truthy(Object value) {
+        if (value == null) {
+            return false;
+        }
+        if (value instanceof Boolean b) {
+            return b;
+        }
+        if (value instanceof Number n) {
+            return n.doubleValue() != 0;
+        }
+        if (value instanceof JsonNode node) {
+            return node.asBoolean();
+        }
+        if (value instanceof CharSequence text) {
+            return "true".contentEquals(text);
+        }
+        return true;
+    }
+
+    static double number(Object value) {
+        if (value instanceof Number n) {
+            return n.doubleValue();
+        }
+        if (value instanceof Boolean b) {
+            return b ? 1 : 0;
+        }
+        if (value instanceof JsonNode node) {
+            return node.isNumber() || node.isTextual() || node.isBoolean() ? node.asDouble() : Double.NaN;
+        }
+        if (value instanceof CharSequence text) {
+            try {
+                return Double.parseDouble(text.toString().trim());
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+        return Double.NaN;
+    }
+
+    static Object scalar(Object value) {
+        if (value instanceof JsonNode node) {
+            if (node.isNull() || node.isMissingNode()) {
+                return null;
+            }
+            if (node.isTextual()) {
+                return node.textValue();
+            }
+            if (node.isBoolean()) {
+                return node.booleanValue();
+            }
+        }
+        return value;
+    }
+
+    static boolean same(Object left, Object right) {
+        left = scalar(left);
+        right = scalar(right);
+        if (left == null || right == null) {
+            return left == right;
+        }
+        if (left instanceof Boolean || right instanceof Boolean) {
+            return truthy(left) == truthy(right);
+        }
+        if (left instanceof Number || right instanceof Number || left instanceof JsonNode || right instanceof JsonNode) {
+            return number(left) == number(right);
+        }
+        return left.toString().equals(right.toString());
+    }
+
+    private static Object navigate(Object value, String segment) {
+        if (value instanceof Map<?, ?> map) {
+            return map.get(segment);
+        }
+        if (value instanceof JsonNode node) {
+            return node.get(segment);
+        }
+        return null;
+    }
+
+    // Nodes
+
+    private record Constant(Object constant, boolean truth, double numeric) implements CompiledExpression.Node {
+        Constant(Object constant) {
+            this(constant, ExpressionCompiler.truthy(constant), ExpressionCompiler.number(constant));
+        }
+
+        public Object value(Object[] slots) {
+            return constant;
+        }
+
+        public boolean test(Object[] slots) {
+            return truth;
+        }
+
+        public double number(Object[] slots) {
+            return numeric;
+        }
+    }
+
+    private record Variable(int slot, String[] path) implements CompiledExpression.Node {
+        public Object value(Object[] slots) {
+            Object value = slots[slot];
+            for (int i = 0; i < path.length && value != null; i++) {
+                value = navigate(value, path[i]);
+            }
+            return value;
+        }
+    }
+
+    private record Not(CompiledExpression.Node operand) implements CompiledExpression.Node {
+        public Object value(Object[] slots) {
+            return test(slots);
+        }
+
+        public boolean test(Object[] slots) {
+            return !operand.test(slots);
+        }
+    }
+
+    private record And(CompiledExpression.Node left, CompiledExpression.Node right) implements CompiledExpression.Node {
+        public Object value(Object[] slots) {
+            return test(slots);
+        }
+
+        public boolean test(Object[] slots) {
+            return left.test(slots) && right.test(slots);
+        }
+    }
+
+    private record Or(CompiledExpression.Node left, CompiledExpression.Node right) implements CompiledExpression.Node {
+        public Object value(Object[] slots) {
+            return test(slots);
+        }
+
+        public boolean test(Object[] slots) {
+            return left.test(slots) || right.test(slots);
+        }
+    }
+
+    /**
+     * Equality against a boolean literal, decided by truthiness
+     */
+    private record TruthEquals(CompiledExpression.Node operand, boolean expected, boolean negate)
+        implements CompiledExpression.Node {
+        public Object value(Object[] slots) {
+            return test(slots);
+        }
+
+        public boolean test(Object[] slots) {
+            return (operand.test(slots) == expected) != negate;
+        }
+    }
+
+    private record Equals(CompiledExpression.Node left, CompiledExpression.Node right, boolean numeric, boolean negate)
+        implements CompiledExpression.Node {
+        public Object value(Object[] slots) {
+            return test(slots);
+        }
+
+        public boolean test(Object[] slots) {
+            boolean equal = numeric
+                ? left.number(slots) == right.number(slots)
+                : same(left.value(slots), right.value(slots));
+            return equal != negate;
+        }
+    }
+
+    private record Compare(CompiledExpression.Node left, CompiledExpression.Node right, char op, boolean orEqual)
+        implements CompiledExpression.Node {
+        public Object value(Object[] slots) {
+            return test(slots);
+        }
+
+        public boolean test(Object[] slots) {
+            double l = left.number(slots);
+            double r = right.number(slots);
+            if (op == '<') {
+                return orEqual ? l <= r : l < r;
+            }
+            return orEqual ? l >= r : l > r;
+        }
+    }
+
+    private record Arithmetic(CompiledExpression.Node left, CompiledExpression.Node right, char op)
+        implements CompiledExpression.Node {
+        public Object value(Object[] slots) {
+            return number(slots);
+        }
+
+        public boolean test(Object[] slots) {
+            return number(slots) != 0;
+        }
+
+        public double number(Object[] slots) {
+            double l = left.number(slots);
+            double r = right.number(slots);
+            return switch (op) {
+                case '+' -> l + r;
+                case '-' -> l - r;
+                case '*' -> l * r;
+                case '/' -> l / r;
+                default -> l % r;
+            };
+        }
+    }
+
+    /**
+     * Recursive descent parser that resolves variables to slots as it goes
+     */
+    private static class Parser {
+        private final String source;
+        private final List<String> declared;
+        private final List<String> slots = new ArrayList<>();
+        private int pos;
+
+        Parser(String source, List<String> declared) {
+            this.source = source;
+            this.declared = declared != null ? declared : List.of();
+            this.slots.addAll(this.declared);
+        }
+
+        CompiledExpression.Node or() {
+            CompiledExpression.Node left = and();
+            while (accept("||")) {
+                left = new Or(left, and());
+            }
+            return left;
+        }
+
+        CompiledExpression.Node and() {
+            CompiledExpression.Node left = not();
+            while (accept("&&")) {
+                left = new And(left, not());
+            }
+            return left;
+        }
+
+        CompiledExpression.Node not() {
+            skipSpaces();
+            if (pos < source.length() && source.charAt(pos) == '!' && !source.startsWith("!=", pos)) {
+                pos++;
+                return new Not(not());
+            }
+            return comparison();
+        }
+
+        CompiledExpression.Node comparison() {
+            CompiledExpression.Node left = additive();
+            skipSpaces();
+            String op = null;
+            for (String candidate : new String[] {"==", "!=", "<=", ">=", "<", ">"}) {
+                if (source.startsWith(candidate, pos)) {
+                    op = candidate;
+                    break;
+                }
+            }
+            if (op == null) {
+                return left;
+            }
+            pos += op.length();
+            CompiledExpression.Node right = additive();
+            switch (op) {
+                case "==", "!=" -> {
+                    boolean negate = op.equals("!=");
+                    if (right instanceof Constant c && c.constant() instanceof Boolean b) {
+                        return new TruthEquals(left, b, negate);
+                    }
+                    if (left instanceof Constant c && c.constant() instanceof Boolean b) {
+                        return new TruthEquals(right, b, negate);
+                    }
+                    boolean numeric = isNumeric(left) || isNumeric(right);
+                    return new Equals(left, right, numeric, negate);
+                }
+                case "<", "<=" -> {
+                    return new Compare(left, right, '<', op.length() == 2);
+                }
+                default -> {
+                    return new Compare(left, right, '>', op.length() == 2);
+                }
+            }
+        }
+
+        private static boolean isNumeric(CompiledExpression.Node node) {
+            return node instanceof Arithmetic || node instanceof Constant c && c.constant() instanceof Number;
+        }
+
+        CompiledExpression.Node additive() {
+            CompiledExpression.Node left = multiplicative();
+            while (true) {
+                skipSpaces();
+                if (pos < source.length() && (source.charAt(pos) == '+' || source.charAt(pos) == '-')) {
+                    char op = source.charAt(pos++);
+                    left = fold(new Arithmetic(left, multiplicative(), op));
+                } else {
+                    return left;
+                }
+            }
+        }
+
+        CompiledExpression.Node multiplicative() {
+            CompiledExpression.Node left = primary();
+            while (true) {
+                skipSpaces();
+                if (pos < source.length() && "*/%".indexOf(source.charAt(pos)) >= 0) {
+                    char op = source.charAt(pos++);
+                    left = fold(new Arithmetic(left, primary(), op));
+                } else {
+                    return left;
+                }
+            }
+        }
+
+        private static CompiledExpression.Node fold(Arithmetic node) {
+            if (node.left() instanceof Constant && node.right() instanceof Constant) {
+                return new Constant(node.number(null));
+            }
+            return node;
+        }
+
+        CompiledExpression.Node primary() {
+            skipSpaces();
+            if (pos >= source.length()) {
+                throw error("unexpected end of expression");
+            }
+            char c = source.charAt(pos);
+            if (c == '(') {
+                pos++;
+                CompiledExpression.Node inner = or();
+                if (!accept(")")) {
+                    throw error("missing ')'");
+                }
+                return inner;
+            }
+            if (c == '\'' || c == '"') {
+                int end = source.indexOf(c, pos + 1);
+                if (end < 0) {
+                    throw error("unterminated string");
+                }
+                String text = source.substring(pos + 1, end);
+                pos = end + 1;
+                return new Constant(text);
+            }
+            if (Character.isDigit(c) || c == '-' && pos + 1 < source.length() && Character.isDigit(source.charAt(pos + 1))) {
+                int start = pos++;
+                while (pos < source.length() && (Character.isDigit(source.charAt(pos)) || source.charAt(pos) == '.')) {
+                    pos++;
+                }
+                try {
+                    return new Constant(Double.parseDouble(source.substring(start, pos)));
+                } catch (NumberFormatException e) {
+                    throw error("invalid number " + source.substring(start, pos));
+                }
+            }
+            if (Character.isLetter(c) || c == '_' || c == '$') {
+                return path(identifierPath());
+            }
+            throw error("unexpected '" + c + "'");
+        }
+
+        private String identifierPath() {
+            int start = pos;
+            while (pos < source.length()) {
+                char c = source.charAt(pos);
+                boolean inner = (c == '-' || c == '.') && pos + 1 < source.length()
+                    && (Character.isLetterOrDigit(source.charAt(pos + 1)) || source.charAt(pos + 1) == '_');
+                if (Character.isLetterOrDigit(c) || c == '_' || c == '$' || inner) {
+                    pos++;
+                } else {
+                    break;
+                }
+            }
+            return source.substring(start, pos);
+        }
+
+        private CompiledExpression.Node path(String path) {
+            if (path.equals("true") || path.equals("false")) {
+                return new Constant(Boolean.valueOf(path));
+            }
+            if (path.equals("null")) {
+                return new Constant(null);
+            }
+            String variable = null;
+            for (String candidate : declared) {
+                if ((path.equals(candidate) || path.startsWith(candidate + "."))
+                    && (variable == null || candidate.length() > variable.length())) {
+                    variable = candidate;
+                }
+            }
+            if (variable == null) {
+                int dot = path.indexOf('.');
+                variable = dot < 0 ? path : path.substring(0, dot);
+            }
+            int slot = slots.indexOf(variable);
+            if (slot < 0) {
+                slot = slots.size();
+                slots.add(variable);
+            }
+            String rest = path.length() > variable.length() ? path.substring(variable.length() + 1) : "";
+            return new Variable(slot, rest.isEmpty() ? new String[0] : rest.split("\\."));
+        }
+
+        boolean accept(String token) {
+            skipSpaces();
+            if (source.startsWith(token, pos)) {
+                pos += token.length();
+                return true;
+            }
+            return false;
+        }
+
+        void skipSpaces() {
+            while (pos < source.length() && Character.isWhitespace(source.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid expression at position " + pos + ": " + message
+                + " in \"" + source + "\"");
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package com.nebula.shared.plan;
+
+import com.nebula.shared.enums.LoopType;
+import com.nebula.shared.model.LoopStep;
+import com.nebula.shared.model.ParallelStep;
+import com.nebula.shared.model.SequentialStep;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs the flow of a {@link CompiledPlan}, invoking agents through an {@link AgentInvoker}.
+ * <ul>
+ *   <li>Top-level steps are scheduled by {@link DagScheduler}, so a dag flow starts each step as soon as
+ *       its predecessors finish and a sequential flow runs in declaration order</li>
+ *   <li>Parallel steps run under their completion policy with {@link ParallelCompletion}</li>
+ *   <li>{@code foreach} loops run over the collection variable in chunks with {@link ForEachExecutor};
+ *       each item runs the body against its own copy of the context with the iteration variable bound
+ *       to the item, and what the body writes is merged back as chunks are reduced</li>
+ *   <li>{@code while} and {@code for} loops repeat the body, with the iteration variable bound to the
+ *       1-based iteration, until the exit condition holds or {@code maxIterations} is reached</li>
+ * </ul>
+ * Agent outputs are merged into a shared context, which conditions and exit conditions are evaluated
+ * against. The first failing step fails the run.
+ */
+public class FlowExecutor {
+
+    /**
+     * Invokes one agent, e.g. on the data plane. Cancelling the returned future must stop the invocation.
+     */
+    @FunctionalInterface
+    public interface AgentInvoker {
+        /**
+         * @param inputs  the step's declared inputs, possibly null; {@code ${name}} references are left to
+         *                the invoker to resolve against {@code context}
+         * @param context current context; read it, do not modify it
+         * @return the agent's outputs, merged into the context
+         */
+        CompletableFuture<Map<String, Object>> invoke(String agentId, Map<String, Object> inputs,
+                                                      Map<String, Object> context);
+    }
+
+    private final CompiledPlan plan;
+    private final AgentInvoker invoker;
+    private final int maxConcurrency;
+
+    public FlowExecutor(CompiledPlan plan, AgentInvoker invoker) {
+        this(plan, invoker, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maxConcurrency maximum number of top-level steps running at once
+     */
+    public FlowExecutor(CompiledPlan plan, AgentInvoker invoker, int maxConcurrency) {
+        this.plan = plan;
+        this.invoker = invoker;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Run the flow; completes with the final context, or exceptionally with the first failure
+     *
+     * @param initialContext e.g. the plan's shared context; may be null
+     */
+    public CompletableFuture<Map<String, Object>> run(Map<String, Object> initialContext) {
+        Map<String, Object> context = newContext(initialContext);
+        return new DagScheduler(plan, DagScheduler.UNIT_COST, maxConcurrency)
+            .run(step -> runStep(step, context))
+            .thenApply(done -> context);
+    }
+
+    private CompletableFuture<Void> runStep(int step, Map<String, Object> context) {
+        try {
+            return switch (plan.kind(step)) {
+                case SEQUENTIAL -> runSequential((SequentialStep) plan.step(step), context);
+                case PARALLEL -> runParallel((ParallelStep) plan.step(step), context);
+                case CONDITIONAL -> runConditional(step, context);
+                case LOOP -> runLoop(step, (LoopStep) plan.step(step), context);
+            };
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private CompletableFuture<Void> runSequential(SequentialStep step, Map<String, Object> context) {
+        return invoke(step.getAgentId(), step.getInputs(), context)
+            .thenAccept(outputs -> merge(context, outputs));
+    }
+
+    private CompletableFuture<Void> runParallel(ParallelStep step, Map<String, Object> context) {
+        return ParallelCompletion.<Map<String, Object>>run(step,
+                (branch, agent) -> invoke(agent.getAgentId(), agent.getInputs(), context))
+            .thenAccept(outcome -> {
+                synchronized (context) {
+                    outcome.mergeInto(context, outputs -> outputs);
+                }
+            });
+    }
+
+    private CompletableFuture<Void> runConditional(int step, Map<String, Object> context) {
+        CompiledExpression condition = plan.expression(step);
+        if (condition == null) {
+            throw new IllegalStateException("Conditional step " + plan.stepId(step) + " has no condition");
+        }
+        int branch = holds(condition, context, condition.newSlots()) ? plan.thenStep(step) : plan.elseStep(step);
+        return branch >= 0 ? runStep(branch, context) : CompletableFuture.completedFuture(null);
+    }
+
+    private CompletableFuture<Void> runLoop(int step, LoopStep loop, Map<String, Object> context) {
+        if (loop.getLoopType() == LoopType.FOREACH) {
+            return runForEach(step, loop, context);
+        }
+        LoopStep.ExitCondition exit = loop.getExitCondition();
+        Integer maxIterations = exit != null ? exit.getMaxIterations() : null;
+        if (plan.expression(step) == null && maxIterations == null) {
+            throw new IllegalStateException("Loop step " + plan.stepId(step) + " has neither an exit condition nor maxIterations");
+        }
+        String checkAgent = exit != null && exit.getCheckAgentId() != null && !runsAgent(step, plan.agentOf(step, 0))
+            ? exit.getCheckAgentId() : null;
+        Iterations iterations = new Iterations(step, loop, checkAgent,
+            maxIterations != null ? maxIterations : Integer.MAX_VALUE, context);
+        iterations.drive();
+        return iterations.done;
+    }
+
+    /**
+     * One run of a while or for loop. Iterations run one after the other; like {@link DagScheduler} and
+     * {@link ForEachExecutor}, an iteration that completes synchronously only flags another pass of the
+     * driving loop, so the stack does not grow with the number of iterations.
+     */
+    private final class Iterations {
+        private final int step;
+        private final String iterationVariable;
+        private final String checkAgent;
+        private final int maxIterations;
+        private final Map<String, Object> context;
+        private final CompiledExpression exit;
+        private final Object[] slots;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private int iteration;
+        private boolean driving;
+        private boolean again;
+
+        Iterations(int step, LoopStep loop, String checkAgent, int maxIterations, Map<String, Object> context) {
+            this.step = step;
+            this.iterationVariable = loop.getIterationVariable();
+            this.checkAgent = checkAgent;
+            this.maxIterations = maxIterations;
+            this.context = context;
+            this.exit = plan.expression(step);
+            // Iterations never overlap, so one slot array serves every exit check
+            this.slots = exit != null ? exit.newSlots() : null;
+        }
+
+        void drive() {
+            synchronized (this) {
+                if (driving) {
+                    again = true;
+                    return;
+                }
+                driving = true;
+            }
+            while (true) {
+                synchronized (this) {
+                    again = false;
+                }
+                startIteration();
+                synchronized (this) {
+                    if (!again) {
+                        driving = false;
+                        return;
+                    }
+                }
+            }
+        }
+
+        private void startIteration() {
+            iteration++;
+            if (iterationVariable != null) {
+                context.put(iterationVariable, iteration);
+            }
+            CompletableFuture<Void> body = runBody(step, context);
+            if (checkAgent != null) {
+                body = body.thenCompose(ignored -> invoke(checkAgent, null, context))
+                    .thenAccept(outputs -> merge(context, outputs));
+            }
+            body.whenComplete((ignored, error) -> {
+                if (error != null) {
+                    done.completeExceptionally(error);
+                    return;
+                }
+                try {
+                    if ((exit != null && holds(exit, context, slots)) || iteration >= maxIterations) {
+                        done.complete(null);
+                        return;
+                    }
+                } catch (RuntimeException e) {
+                    done.completeExceptionally(e);
+                    return;
+                }
+                drive();
+            });
+        }
+    }
+
+    private CompletableFuture<Void> runForEach(int step, LoopStep loop, Map<String, Object> context) {
+        Iterator<?> items = items(plan.stepId(step), context.get(loop.getCollectionVariable()));
+        return ForEachExecutor.<Object, List<Map<String, Object>>>run(loop, items,
+            (chunk, chunkIndex) -> runChunk(step, loop, chunk, context),
+            changes -> changes.forEach(itemChanges -> merge(context, itemChanges)));
+    }
+
+    /**
+     * Run the body once per item of the chunk, one item after the other; completes with what each item wrote
+     */
+    private CompletableFuture<List<Map<String, Object>>> runChunk(int step, LoopStep loop, List<Object> chunk,
+                                                                  Map<String, Object> context) {
+        List<Map<String, Object>> changes = new ArrayList<>(chunk.size());
+        CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+        for (Object item : chunk) {
+            chain = chain.thenCompose(done -> {
+                Map<String, Object> base;
+                synchronized (context) {
+                    base = new LinkedHashMap<>(context);
+                }
+                Map<String, Object> itemContext = newContext(base);
+                if (loop.getIterationVariable() != null) {
+                    itemContext.put(loop.getIterationVariable(), item);
+                }
+                return runBody(step, itemContext)
+                    .thenRun(() -> changes.add(changes(base, itemContext, loop.getIterationVariable())));
+            });
+        }
+        return chain.thenApply(done -> changes);
+    }
+
+    /**
+     * Run the nested steps of a loop in declaration order
+     */
+    private CompletableFuture<Void> runBody(int step, Map<String, Object> context) {
+        CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+        for (int i = 0; i < plan.childCount(step); i++) {
+            int child = plan.child(step, i);
+            chain = chain.thenCompose(done -> runStep(child, context));
+        }
+        return chain;
+    }
+
+    private CompletableFuture<Map<String, Object>> invoke(String agentId, Map<String, Object> inputs,
+                                                          Map<String, Object> context) {
+        CompletableFuture<Map<String, Object>> result = invoker.invoke(agentId, inputs, context);
+        if (result == null) {
+            throw new IllegalStateException("Invoker returned no future for agent " + agentId);
+        }
+        return result;
+    }
+
+    /**
+     * Whether the step or any step nested in it runs the agent
+     */
+    private boolean runsAgent(int step, int agent) {
+        for (int i = 0; i < plan.childCount(step); i++) {
+            int child = plan.child(step, i);
+            for (int a = 0; a < plan.agentCountOf(child); a++) {
+                if (plan.agentOf(child, a) == agent) {
+                    return true;
+                }
+            }
+            if (runsAgent(child, agent)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean holds(CompiledExpression expression, Map<String, Object> context, Object[] slots) {
+        synchronized (context) {
+            expression.bind(context, slots);
+        }
+        return expression.test(slots);
+    }
+
+    private static Map<String, Object> newContext(Map<String, Object> values) {
+        Map<String, Object> context = Collections.synchronizedMap(new LinkedHashMap<>());
+        if (values != null) {
+            context.putAll(values);
+        }
+        return context;
+    }
+
+    private static void merge(Map<String, Object> context, Map<String, Object> outputs) {
+        if (outputs != null) {
+            context.putAll(outputs);
+        }
+    }
+
+    /**
+     * Entries an item's body added or replaced, without the iteration variable
+     */
+    private static Map<String, Object> changes(Map<String, Object> base, Map<String, Object> itemContext,
+                                               String iterationVariable) {
+        Map<String, Object> changes = new LinkedHashMap<>();
+        synchronized (itemContext) {
+            for (Map.Entry<String, Object> entry : itemContext.entrySet()) {
+                if (!entry.getKey().equals(iterationVariable)
+                    && (!base.containsKey(entry.getKey()) || base.get(entry.getKey()) != entry.getValue())) {
+                    changes.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        return changes;
+    }
+
+    private static Iterator<?> items(String stepId, Object collection) {
+        if (collection == null) {
+            return Collections.emptyIterator();
+        }
+        if (collection instanceof Iterable<?> iterable) {
+            return iterable.iterator();
+        }
+        if (collection instanceof Object[] array) {
+            return Arrays.asList(array).iterator();
+        }
+        throw new IllegalArgumentException("Collection of loop step " + stepId + " is not iterable: "
+            + collection.getClass().getName());
+    }
+}
@@ -0,0 +1,202 @@
+package com.nebula.shared.plan;
+
+import com.nebula.shared.model.LoopStep;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Runs a FOREACH loop over a collection in chunks, with several chunks in flight at once.
+ * The collection is pulled lazily from an iterator, one chunk at a time, only when a slot is free, so
+ * memory stays bounded by {@code parallelism * chunkSize} items however large the collection is.
+ * Chunk results are passed to a reducer one at a time, in collection order if the loop is ordered or
+ * as they complete otherwise; in ordered mode a chunk keeps its slot until it has been reduced, so a
+ * slow chunk holds back at most {@code parallelism} buffered results. The first failing chunk fails
+ * the loop and no further chunks are started.
+ *
+ * @param <T> collection item type
+ * @param <R> chunk result type
+ */
+public class ForEachExecutor<T, R> {
+
+    /**
+     * Runs the loop body for one chunk of items
+     */
+    @FunctionalInterface
+    public interface ChunkRunner<T, R> {
+        CompletionStage<R> run(List<T> chunk, long chunkIndex);
+    }
+
+    private final Iterator<? extends T> items;
+    private final int chunkSize;
+    private final int parallelism;
+    private final boolean ordered;
+    private final ChunkRunner<T, R> runner;
+    private final Consumer<? super R> reducer;
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+    private final Map<Long, R> buffered = new HashMap<>();
+    private long nextChunk;
+    private long nextReduced;
+    private int slotsInUse;
+    private boolean exhausted;
+    private boolean driving;
+    private boolean again;
+
+    private ForEachExecutor(Iterator<? extends T> items, int chunkSize, int parallelism, boolean ordered,
+                            ChunkRunner<T, R> runner, Consumer<? super R> reducer) {
+        if (chunkSize < 1 || parallelism < 1) {
+            throw new IllegalArgumentException("chunkSize and parallelism must be at least 1: "
+                + chunkSize + ", " + parallelism);
+        }
+        this.items = items;
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
+        this.ordered = ordered;
+        this.runner = runner;
+        this.reducer = reducer;
+    }
+
+    /**
+     * Run over every item; completes once all chunk results have been reduced
+     */
+    public static <T, R> CompletableFuture<Void> run(Iterator<? extends T> items, int chunkSize, int parallelism,
+                                                     boolean ordered, ChunkRunner<T, R> runner,
+                                                     Consumer<? super R> reducer) {
+        ForEachExecutor<T, R> executor = new ForEachExecutor<>(items, chunkSize, parallelism, ordered, runner, reducer);
+        executor.drive();
+        return executor.done;
+    }
+
+    /**
+     * Run over a stream, closing it when the loop finishes
+     */
+    public static <T, R> CompletableFuture<Void> run(Stream<? extends T> items, int chunkSize, int parallelism,
+                                                     boolean ordered, ChunkRunner<T, R> runner,
+                                                     Consumer<? super R> reducer) {
+        return run(items.iterator(), chunkSize, parallelism, ordered, runner, reducer)
+            .whenComplete((result, error) -> items.close());
+    }
+
+    /**
+     * Run with the loop's {@code chunkSize}, {@code parallelism} and {@code ordered} settings; without
+     * them the loop runs serially, one item at a time, in order
+     */
+    public static <T, R> CompletableFuture<Void> run(LoopStep loop, Iterator<? extends T> items,
+                                                     ChunkRunner<T, R> runner, Consumer<? super R> reducer) {
+        return run(items,
+            loop.getChunkSize() != null ? loop.getChunkSize() : 1,
+            loop.getParallelism() != null ? loop.getParallelism() : 1,
+            loop.getOrdered() == null || loop.getOrdered(),
+            runner, reducer);
+    }
+
+    /**
+     * Start chunks while slots are free. Re-entrant calls from chunks that complete synchronously only flag
+     * another pass, so the stack does not grow with the number of chunks.
+     */
+    private void drive() {
+        synchronized (this) {
+            if (driving) {
+                again = true;
+                return;
+            }
+            driving = true;
+        }
+        while (true) {
+            List<List<T>> chunks;
+            long firstIndex;
+            synchronized (this) {
+                again = false;
+                firstIndex = nextChunk;
+                chunks = takeChunks();
+                if (chunks.isEmpty() && !again) {
+                    driving = false;
+                    return;
+                }
+            }
+            for (int i = 0; i < chunks.size(); i++) {
+                start(chunks.get(i), firstIndex + i);
+            }
+        }
+    }
+
+    private List<List<T>> takeChunks() {
+        List<List<T>> chunks = new ArrayList<>();
+        if (done.isDone()) {
+            return chunks;
+        }
+        try {
+            while (slotsInUse < parallelism && !exhausted) {
+                List<T> chunk = new ArrayList<>(chunkSize);
+                while (chunk.size() < chunkSize && items.hasNext()) {
+                    chunk.add(items.next());
+                }
+                exhausted = !items.hasNext();
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                chunks.add(chunk);
+                nextChunk++;
+                slotsInUse++;
+            }
+        } catch (RuntimeException e) {
+            done.completeExceptionally(e);
+            chunks.clear();
+            return chunks;
+        }
+        if (exhausted && slotsInUse == 0) {
+            done.complete(null);
+        }
+        return chunks;
+    }
+
+    private void start(List<T> chunk, long index) {
+        CompletionStage<R> stage;
+        try {
+            stage = runner.run(chunk, index);
+            if (stage == null) {
+                stage = CompletableFuture.failedFuture(
+                    new IllegalStateException("Runner returned no stage for chunk " + index));
+            }
+        } catch (RuntimeException e) {
+            stage = CompletableFuture.failedFuture(e);
+        }
+        stage.whenComplete((result, error) -> onComplete(index, result, error));
+    }
+
+    private void onComplete(long index, R result, Throwable error) {
+        synchronized (this) {
+            if (done.isDone()) {
+                return;
+            }
+            if (error != null) {
+                done.completeExceptionally(error);
+                return;
+            }
+            try {
+                if (ordered) {
+                    buffered.put(index, result);
+                    while (buffered.containsKey(nextReduced)) {
+                        reducer.accept(buffered.remove(nextReduced++));
+                        slotsInUse--;
+                    }
+                } else {
+                    reducer.accept(result);
+                    slotsInUse--;
+                }
+            } catch (RuntimeException e) {
+                done.completeExceptionally(e);
+                return;
+            }
+        }
+        drive();
+    }
+}
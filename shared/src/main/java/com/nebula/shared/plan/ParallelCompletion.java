@@ -0,0 +1,253 @@
+package com.nebula.shared.plan;
+
+import com.nebula.shared.enums.CompletionPolicy;
+import com.nebula.shared.model.ParallelStep;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Runs the agents of a {@link ParallelStep} under its completion policy.
+ * <ul>
+ *   <li>{@code all}: every agent must succeed; the first failure fails the step</li>
+ *   <li>{@code first-success}: the first agent to succeed completes the step</li>
+ *   <li>{@code quorum}: the step completes once {@code quorum} agents have succeeded</li>
+ *   <li>{@code deadline}: agents run until the step timeout, then the step continues with those that
+ *       succeeded, provided at least {@code quorum} (default 1) did</li>
+ * </ul>
+ * As soon as the outcome is decided, either way, agents still running are cancelled and agents not yet
+ * started are skipped, so they stop consuming data-plane capacity. For the first three policies the step
+ * timeout fails the step if the policy has not been met by then.
+ */
+public class ParallelCompletion<R> {
+
+    /**
+     * Starts one branch of the parallel step. Cancelling the returned future must stop the invocation.
+     */
+    @FunctionalInterface
+    public interface AgentRunner<R> {
+        CompletableFuture<R> run(int branch, ParallelStep.ParallelAgent agent);
+    }
+
+    /**
+     * Results of a completed parallel step, by branch in declaration order
+     */
+    public static final class Outcome<R> {
+        private final List<R> results;
+        private final boolean[] succeeded;
+
+        private Outcome(List<R> results, boolean[] succeeded) {
+            this.results = results;
+            this.succeeded = succeeded;
+        }
+
+        public int branchCount() {
+            return succeeded.length;
+        }
+
+        /**
+         * Whether the branch succeeded before the step completed; cancelled and failed branches did not
+         */
+        public boolean succeeded(int branch) {
+            return succeeded[branch];
+        }
+
+        public R result(int branch) {
+            return results.get(branch);
+        }
+
+        /**
+         * Results of the successful branches in declaration order, whatever order they finished in
+         */
+        public List<R> successfulResults() {
+            List<R> successful = new ArrayList<>();
+            for (int branch = 0; branch < succeeded.length; branch++) {
+                if (succeeded[branch]) {
+                    successful.add(results.get(branch));
+                }
+            }
+            return successful;
+        }
+
+        /**
+         * Merge each successful branch's outputs into the shared context in declaration order, so on
+         * conflicting keys the later-declared branch wins regardless of timing
+         */
+        public void mergeInto(Map<String, Object> context, Function<? super R, ? extends Map<String, ?>> outputs) {
+            for (int branch = 0; branch < succeeded.length; branch++) {
+                if (succeeded[branch]) {
+                    Map<String, ?> branchOutputs = outputs.apply(results.get(branch));
+                    if (branchOutputs != null) {
+                        context.putAll(branchOutputs);
+                    }
+                }
+            }
+        }
+    }
+
+    private final String stepId;
+    private final CompletionPolicy policy;
+    private final int required;
+    private final List<CompletableFuture<R>> branches;
+    private final List<R> results;
+    private final boolean[] succeeded;
+    private final CompletableFuture<Outcome<R>> done = new CompletableFuture<>();
+    private int successes;
+    private int failures;
+    private Throwable firstFailure;
+    private boolean decided;
+
+    private ParallelCompletion(ParallelStep step, CompletionPolicy policy, int required) {
+        int n = step.getParallelAgents().size();
+        this.stepId = step.getStepId();
+        this.policy = policy;
+        this.required = required;
+        this.branches = new ArrayList<>(n);
+        this.results = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            results.add(null);
+        }
+        this.succeeded = new boolean[n];
+    }
+
+    /**
+     * Run the step's agents; completes with the outcome once the policy is met, or exceptionally once it
+     * can no longer be met
+     */
+    public static <R> CompletableFuture<Outcome<R>> run(ParallelStep step, AgentRunner<R> runner) {
+        List<ParallelStep.ParallelAgent> agents = step.getParallelAgents() != null ? step.getParallelAgents() : List.of();
+        CompletionPolicy policy = policyOf(step);
+        int n = agents.size();
+        int required = switch (policy) {
+            case ALL -> n;
+            case FIRST_SUCCESS -> Math.min(1, n);
+            case QUORUM, DEADLINE -> step.getQuorum() != null ? step.getQuorum() : Math.min(1, n);
+        };
+        if (required > n) {
+            throw new IllegalArgumentException("Parallel step " + step.getStepId() + " requires " + required
+                + " successes but has only " + n + " agents");
+        }
+        Duration timeout = step.getTimeout() != null ? Duration.parse(step.getTimeout()) : null;
+        if (policy == CompletionPolicy.DEADLINE && timeout == null) {
+            throw new IllegalArgumentException("Parallel step " + step.getStepId() + " uses the deadline policy without a timeout");
+        }
+
+        ParallelCompletion<R> completion = new ParallelCompletion<>(step, policy, required);
+        completion.start(agents, runner, timeout);
+        return completion.done;
+    }
+
+    /**
+     * Policy of the step; without one, {@code waitForAll=false} means the first success
+     */
+    public static CompletionPolicy policyOf(ParallelStep step) {
+        if (step.getCompletionPolicy() != null) {
+            return step.getCompletionPolicy();
+        }
+        return Boolean.FALSE.equals(step.getWaitForAll()) ? CompletionPolicy.FIRST_SUCCESS : CompletionPolicy.ALL;
+    }
+
+    private void start(List<ParallelStep.ParallelAgent> agents, AgentRunner<R> runner, Duration timeout) {
+        if (required == 0) {
+            done.complete(new Outcome<>(results, succeeded));
+            return;
+        }
+        for (int branch = 0; branch < agents.size(); branch++) {
+            synchronized (this) {
+                // Branches that already finished the step leave the rest unstarted
+                if (decided) {
+                    break;
+                }
+            }
+            CompletableFuture<R> future;
+            try {
+                future = runner.run(branch, agents.get(branch));
+                if (future == null) {
+                    future = CompletableFuture.failedFuture(
+                        new IllegalStateException("Runner returned no future for branch " + branch + " of step " + stepId));
+                }
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            synchronized (this) {
+                branches.add(future);
+            }
+            int index = branch;
+            future.whenComplete((result, error) -> onComplete(index, result, error));
+        }
+        synchronized (this) {
+            // Branches that finished the step while the last ones were being started
+            if (decided) {
+                cancelRemaining();
+            }
+        }
+        if (timeout != null && !done.isDone()) {
+            CompletableFuture.delayedExecutor(timeout.toMillis(), TimeUnit.MILLISECONDS).execute(this::onDeadline);
+        }
+    }
+
+    private synchronized void onComplete(int branch, R result, Throwable error) {
+        if (decided) {
+            return;
+        }
+        if (error == null) {
+            results.set(branch, result);
+            succeeded[branch] = true;
+            if (++successes >= required && policy != CompletionPolicy.DEADLINE) {
+                finish();
+            } else if (successes + failures == succeeded.length) {
+                finish();
+            }
+            return;
+        }
+        failures++;
+        if (firstFailure == null) {
+            firstFailure = error;
+        }
+        if (succeeded.length - failures < required) {
+            fail(new RuntimeException("Parallel step " + stepId + " failed: " + failures + " of " + succeeded.length
+                + " agents failed and " + required + " must succeed", firstFailure));
+        } else if (successes + failures == succeeded.length) {
+            finish();
+        }
+    }
+
+    private synchronized void onDeadline() {
+        if (decided) {
+            return;
+        }
+        if (policy == CompletionPolicy.DEADLINE && successes >= required) {
+            finish();
+        } else {
+            fail(new TimeoutException("Parallel step " + stepId + " reached its timeout with " + successes + " of "
+                + required + " required agents succeeded"));
+        }
+    }
+
+    private void finish() {
+        decided = true;
+        Outcome<R> outcome = new Outcome<>(new ArrayList<>(results), succeeded.clone());
+        cancelRemaining();
+        done.complete(outcome);
+    }
+
+    private void fail(Throwable error) {
+        decided = true;
+        cancelRemaining();
+        done.completeExceptionally(error);
+    }
+
+    private void cancelRemaining() {
+        for (CompletableFuture<R> branch : branches) {
+            if (!branch.isDone()) {
+                branch.cancel(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,430 @@
+package com.nebula.shared.plan;
+
+import com.nebula.shared.enums.ExecutionFlowType;
+import com.nebula.shared.model.Agent;
+import com.nebula.shared.model.ConditionalStep;
+import com.nebula.shared.model.ExecutionPlan;
+import com.nebula.shared.model.ExecutionStep;
+import com.nebula.shared.model.LoopStep;
+import com.nebula.shared.model.ParallelStep;
+import com.nebula.shared.model.SequentialStep;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Lowers an {@link ExecutionPlan} into a {@link CompiledPlan}.
+ * Every agent and step reference is resolved once here; a plan that references an unknown agent,
+ * repeats a step id or nests a step without an id is rejected with all problems listed.
+ * Siblings in a sequential block (the top level, unless the flow is parallel or dag, and every loop body)
+ * are chained by successor/predecessor edges in declaration order. In a dag flow the top-level edges
+ * are derived from the data instead: a step follows the steps producing the {@code ${output}} values its
+ * inputs reference and the steps running the agents its own agents depend on.
+ * Condition and loop exit expressions are compiled here too, so a plan with a malformed expression
+ * fails up front rather than when the step is reached.
+ */
+public final class PlanCompiler {
+
+    private static final Pattern REFERENCE = Pattern.compile("\\$\\{([^}.\\[]+)[^}]*}");
+
+    private PlanCompiler() {}
+
+    public static CompiledPlan compile(ExecutionPlan plan) {
+        return new Compilation(plan).compile();
+    }
+
+    /**
+     * State of one compilation
+     */
+    private static class Compilation {
+        private final ExecutionPlan plan;
+        private final List<String> problems = new ArrayList<>();
+
+        private Agent[] agents;
+        private final Map<String, Integer> agentIndex = new HashMap<>();
+
+        private final List<ExecutionStep> steps = new ArrayList<>();
+        private final Map<String, Integer> stepIndex = new HashMap<>();
+        private final IntList kinds = new IntList(16);
+        private final IntList parents = new IntList(16);
+        private final IntList depths = new IntList(16);
+        private final IntList thenSteps = new IntList(16);
+        private final IntList elseSteps = new IntList(16);
+        private final List<CompiledExpression> expressions = new ArrayList<>();
+        private final CsrBuilder children = new CsrBuilder();
+        private final CsrBuilder stepAgents = new CsrBuilder();
+        private final CsrBuilder successors = new CsrBuilder();
+        private final CsrBuilder predecessors = new CsrBuilder();
+
+        Compilation(ExecutionPlan plan) {
+            this.plan = plan;
+        }
+
+        CompiledPlan compile() {
+            List<Agent> agentList = plan.getAgents() != null ? plan.getAgents() : List.of();
+            agents = agentList.toArray(new Agent[0]);
+            for (int i = 0; i < agents.length; i++) {
+                if (agentIndex.putIfAbsent(agents[i].getAgentId(), i) != null) {
+                    problems.add("duplicate agent id " + agents[i].getAgentId());
+                }
+            }
+
+            CsrBuilder agentDependencies = new CsrBuilder();
+            for (int i = 0; i < agents.length; i++) {
+                agentDependencies.ensureRow(i);
+                if (agents[i].getDependencies() != null) {
+                    for (String dependency : agents[i].getDependencies()) {
+                        agentDependencies.add(i, resolveAgent(dependency, "agent " + agents[i].getAgentId()));
+                    }
+                }
+            }
+
+            List<ExecutionStep> topLevel = plan.getExecutionFlow() != null && plan.getExecutionFlow().getSteps() != null
+                ? plan.getExecutionFlow().getSteps() : List.of();
+            ExecutionFlowType flowType = plan.getExecutionFlow() != null ? plan.getExecutionFlow().getType() : null;
+            boolean dag = flowType == ExecutionFlowType.DAG;
+            int[] roots = block(topLevel, -1, 0, flowType != ExecutionFlowType.PARALLEL && !dag);
+            CompiledPlan.Csr compiledDependencies = agentDependencies.build(agents.length);
+            if (dag) {
+                dataflow(roots, compiledDependencies);
+            }
+
+            if (!problems.isEmpty()) {
+                throw new IllegalArgumentException("Execution plan " + plan.getPlanId() + " does not compile: "
+                    + String.join("; ", problems));
+            }
+
+            int stepCount = steps.size();
+            CsrBuilder agentSteps = new CsrBuilder();
+            agentSteps.ensureRow(agents.length - 1);
+            CompiledPlan.Csr compiledStepAgents = stepAgents.build(stepCount);
+            for (int step = 0; step < stepCount; step++) {
+                for (int i = 0; i < compiledStepAgents.count(step); i++) {
+                    agentSteps.add(compiledStepAgents.get(step, i), step);
+                }
+            }
+
+            byte[] kindArray = new byte[stepCount];
+            for (int step = 0; step < stepCount; step++) {
+                kindArray[step] = (byte) kinds.get(step);
+            }
+
+            return new CompiledPlan(plan, agents, Map.copyOf(agentIndex), compiledDependencies,
+                steps.toArray(new ExecutionStep[0]), Map.copyOf(stepIndex), kindArray, parents.toArray(),
+                depths.toArray(), roots, thenSteps.toArray(), elseSteps.toArray(), children.build(stepCount),
+                compiledStepAgents, agentSteps.build(agents.length), successors.build(stepCount),
+                predecessors.build(stepCount), expressions.toArray(new CompiledExpression[0]));
+        }
+
+        /**
+         * Compile a list of sibling steps and return their indices
+         */
+        private int[] block(List<ExecutionStep> block, int parent, int depth, boolean sequential) {
+            int[] indices = new int[block.size()];
+            for (int i = 0; i < indices.length; i++) {
+                indices[i] = step(block.get(i), parent, depth);
+                if (sequential && i > 0) {
+                    successors.add(indices[i - 1], indices[i]);
+                    predecessors.add(indices[i], indices[i - 1]);
+                }
+            }
+            return indices;
+        }
+
+        private int step(ExecutionStep step, int parent, int depth) {
+            int index = steps.size();
+            steps.add(step);
+            parents.add(parent);
+            depths.add(depth);
+            thenSteps.add(-1);
+            elseSteps.add(-1);
+            expressions.add(null);
+            children.ensureRow(index);
+            stepAgents.ensureRow(index);
+            successors.ensureRow(index);
+            predecessors.ensureRow(index);
+
+            String where = "step " + step.getStepId();
+            if (step.getStepId() == null) {
+                problems.add("step without id under " + (parent >= 0 ? "step " + steps.get(parent).getStepId() : "the flow"));
+            } else if (stepIndex.putIfAbsent(step.getStepId(), index) != null) {
+                problems.add("duplicate step id " + step.getStepId());
+            }
+
+            if (step instanceof SequentialStep sequential) {
+                kinds.add(CompiledPlan.StepKind.SEQUENTIAL.ordinal());
+                stepAgents.add(index, resolveAgent(sequential.getAgentId(), where));
+            } else if (step instanceof ParallelStep parallel) {
+                kinds.add(CompiledPlan.StepKind.PARALLEL.ordinal());
+                if (parallel.getParallelAgents() != null) {
+                    for (ParallelStep.ParallelAgent parallelAgent : parallel.getParallelAgents()) {
+                        stepAgents.add(index, resolveAgent(parallelAgent.getAgentId(), where));
+                    }
+                }
+            } else if (step instanceof ConditionalStep conditional) {
+                kinds.add(CompiledPlan.StepKind.CONDITIONAL.ordinal());
+                if (conditional.getCondition() != null) {
+                    expressions.set(index, expression(conditional.getCondition().getExpression(),
+                        conditional.getCondition().getVariables(), where));
+                }
+                if (conditional.getThenStep() != null) {
+                    int thenStep = step(conditional.getThenStep(), index, depth + 1);
+                    thenSteps.set(index, thenStep);
+                    children.add(index, thenStep);
+                }
+                if (conditional.getElseStep() != null) {
+                    int elseStep = step(conditional.getElseStep(), index, depth + 1);
+                    elseSteps.set(index, elseStep);
+                    children.add(index, elseStep);
+                }
+            } else if (step instanceof LoopStep loop) {
+                kinds.add(CompiledPlan.StepKind.LOOP.ordinal());
+                if (loop.getExitCondition() != null) {
+                    if (loop.getExitCondition().getCheckAgentId() != null) {
+                        stepAgents.add(index, resolveAgent(loop.getExitCondition().getCheckAgentId(), where));
+                    }
+                    expressions.set(index, expression(loop.getExitCondition().getExpression(), null, where));
+                }
+                int[] body = block(loop.getBody() != null ? loop.getBody() : List.of(), index, depth + 1, true);
+                for (int child : body) {
+                    children.add(index, child);
+                }
+            } else {
+                throw new IllegalArgumentException("Unsupported step type: " + step.getType());
+            }
+            return index;
+        }
+
+        /**
+         * Order top-level steps by data and agent dependencies. A step that consumes a value or depends on
+         * an agent follows the latest earlier step producing or running it, or the first later one if no
+         * earlier step does; a step never waits for itself.
+         */
+        private void dataflow(int[] roots, CompiledPlan.Csr agentDependencies) {
+            int rootCount = roots.length;
+            List<Set<String>> references = new ArrayList<>(rootCount);
+            List<BitSet> rootAgents = new ArrayList<>(rootCount);
+            Map<String, IntList> producers = new HashMap<>();
+            Map<Integer, IntList> runners = new HashMap<>();
+            for (int i = 0; i < rootCount; i++) {
+                int end = i + 1 < rootCount ? roots[i + 1] : steps.size();
+                Set<String> produced = new HashSet<>();
+                Set<String> consumed = new HashSet<>();
+                BitSet agentsRun = new BitSet(agents.length);
+                for (int step = roots[i]; step < end; step++) {
+                    ExecutionStep executionStep = steps.get(step);
+                    if (executionStep instanceof SequentialStep sequential) {
+                        if (sequential.getOutputs() != null) {
+                            produced.addAll(sequential.getOutputs());
+                        }
+                        collectReferences(sequential.getInputs(), consumed);
+                    } else if (executionStep instanceof ParallelStep parallel && parallel.getParallelAgents() != null) {
+                        for (ParallelStep.ParallelAgent parallelAgent : parallel.getParallelAgents()) {
+                            collectReferences(parallelAgent.getInputs(), consumed);
+                        }
+                    }
+                    IntList row = stepAgents.row(step);
+                    for (int a = 0; a < row.size; a++) {
+                        if (row.get(a) >= 0) {
+                            agentsRun.set(row.get(a));
+                        }
+                    }
+                }
+                consumed.removeAll(produced);
+                for (String output : produced) {
+                    producers.computeIfAbsent(output, k -> new IntList(2)).add(i);
+                }
+                for (int agent = agentsRun.nextSetBit(0); agent >= 0; agent = agentsRun.nextSetBit(agent + 1)) {
+                    runners.computeIfAbsent(agent, k -> new IntList(2)).add(i);
+                }
+                references.add(consumed);
+                rootAgents.add(agentsRun);
+            }
+
+            for (int i = 0; i < rootCount; i++) {
+                BitSet after = new BitSet(rootCount);
+                for (String reference : references.get(i)) {
+                    markSource(producers.get(reference), i, after);
+                }
+                BitSet agentsRun = rootAgents.get(i);
+                for (int agent = agentsRun.nextSetBit(0); agent >= 0; agent = agentsRun.nextSetBit(agent + 1)) {
+                    for (int d = 0; d < agentDependencies.count(agent); d++) {
+                        int dependency = agentDependencies.get(agent, d);
+                        if (dependency >= 0 && !agentsRun.get(dependency)) {
+                            markSource(runners.get(dependency), i, after);
+                        }
+                    }
+                }
+                for (int j = after.nextSetBit(0); j >= 0; j = after.nextSetBit(j + 1)) {
+                    successors.add(roots[j], roots[i]);
+                    predecessors.add(roots[i], roots[j]);
+                }
+            }
+            checkAcyclic(roots);
+        }
+
+        private static void markSource(IntList candidates, int consumer, BitSet after) {
+            if (candidates == null) {
+                return;
+            }
+            int source = -1;
+            for (int c = 0; c < candidates.size; c++) {
+                int candidate = candidates.get(c);
+                if (candidate < consumer) {
+                    source = candidate;
+                } else if (candidate > consumer) {
+                    if (source < 0) {
+                        source = candidate;
+                    }
+                    break;
+                }
+            }
+            if (source >= 0) {
+                after.set(source);
+            }
+        }
+
+        private static void collectReferences(Object value, Set<String> references) {
+            if (value instanceof String text) {
+                Matcher matcher = REFERENCE.matcher(text);
+                while (matcher.find()) {
+                    references.add(matcher.group(1).trim());
+                }
+            } else if (value instanceof Map<?, ?> map) {
+                for (Object nested : map.values()) {
+                    collectReferences(nested, references);
+                }
+            } else if (value instanceof Collection<?> collection) {
+                for (Object nested : collection) {
+                    collectReferences(nested, references);
+                }
+            }
+        }
+
+        private void checkAcyclic(int[] roots) {
+            Map<Integer, Integer> position = new HashMap<>();
+            int[] pending = new int[roots.length];
+            IntList ready = new IntList(roots.length);
+            for (int i = 0; i < roots.length; i++) {
+                position.put(roots[i], i);
+                pending[i] = predecessors.row(roots[i]).size;
+                if (pending[i] == 0) {
+                    ready.add(i);
+                }
+            }
+            int visited = 0;
+            while (visited < ready.size) {
+                IntList next = successors.row(roots[ready.get(visited++)]);
+                for (int s = 0; s < next.size; s++) {
+                    int i = position.get(next.get(s));
+                    if (--pending[i] == 0) {
+                        ready.add(i);
+                    }
+                }
+            }
+            if (visited < roots.length) {
+                List<String> cycle = new ArrayList<>();
+                for (int i = 0; i < roots.length; i++) {
+                    if (pending[i] > 0) {
+                        cycle.add(steps.get(roots[i]).getStepId());
+                    }
+                }
+                problems.add("dag flow has a dependency cycle among steps " + String.join(", ", cycle));
+            }
+        }
+
+        private CompiledExpression expression(String expression, List<String> variables, String where) {
+            try {
+                return ExpressionCompiler.compile(expression, variables);
+            } catch (IllegalArgumentException e) {
+                problems.add(where + ": " + e.getMessage());
+                return null;
+            }
+        }
+
+        private int resolveAgent(String agentId, String where) {
+            Integer index = agentIndex.get(agentId);
+            if (index == null) {
+                problems.add(where + " references unknown agent " + agentId);
+                return -1;
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Growable int array
+     */
+    private static class IntList {
+        private int[] values;
+        private int size;
+
+        IntList(int capacity) {
+            this.values = new int[Math.max(1, capacity)];
+        }
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int i) {
+            return values[i];
+        }
+
+        void set(int i, int value) {
+            values[i] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * Collects rows in any order and packs them into a {@link CompiledPlan.Csr}
+     */
+    private static class CsrBuilder {
+        private final List<IntList> rows = new ArrayList<>();
+
+        void ensureRow(int row) {
+            while (rows.size() <= row) {
+                rows.add(new IntList(2));
+            }
+        }
+
+        void add(int row, int value) {
+            ensureRow(row);
+            rows.get(row).add(value);
+        }
+
+        IntList row(int row) {
+            ensureRow(row);
+            return rows.get(row);
+        }
+
+        CompiledPlan.Csr build(int rowCount) {
+            ensureRow(rowCount - 1);
+            int[] offsets = new int[rowCount + 1];
+            for (int row = 0; row < rowCount; row++) {
+                offsets[row + 1] = offsets[row] + rows.get(row).size;
+            }
+            int[] values = new int[offsets[rowCount]];
+            for (int row = 0; row < rowCount; row++) {
+                System.arraycopy(rows.get(row).values, 0, values, offsets[row], rows.get(row).size);
+            }
+            return new CompiledPlan.Csr(offsets, values);
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package com.nebula.shared.plan;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.nebula.shared.model.Agent;
+import com.nebula.shared.model.ConditionalStep;
+import com.nebula.shared.model.ExecutionPlan;
+import com.nebula.shared.model.ExecutionStep;
+import com.nebula.shared.model.LoopStep;
+import com.nebula.shared.model.ParallelStep;
+import com.nebula.shared.model.SequentialStep;
+import com.nebula.shared.model.Tool;
+import com.nebula.shared.util.JsonUtil;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Structural difference between two versions of an execution plan, e.g. before and after the user
+ * refines a prompt. Agents are matched by id, tools by agent and tool id, and steps (including nested
+ * ones) by step id; matched items are compared by their JSON trees, ignoring generation state
+ * ({@code generatedCode}, {@code status}). An agent counts as modified if anything its code is generated
+ * against changed: its own definition, any of its tools, the steps that invoke it (with the loops and
+ * conditionals enclosing them), or the name or capabilities of an agent it depends on.
+ */
+public final class PlanDiff {
+
+    public enum Change {
+        ADDED,
+        REMOVED,
+        MODIFIED,
+        UNCHANGED
+    }
+
+    private final ExecutionPlan next;
+    private final Map<String, Change> agentChanges = new LinkedHashMap<>();
+    private final Map<String, Change> toolChanges = new LinkedHashMap<>();
+    private final Map<String, Change> stepChanges = new LinkedHashMap<>();
+
+    private PlanDiff(ExecutionPlan next) {
+        this.next = next;
+    }
+
+    /**
+     * Compare {@code next} against {@code previous}; entries follow the order of {@code next},
+     * with removed items last
+     */
+    public static PlanDiff compare(ExecutionPlan previous, ExecutionPlan next) {
+        PlanDiff diff = new PlanDiff(next);
+        Map<String, Agent> previousAgents = agentsById(previous);
+        Map<String, Agent> nextAgents = agentsById(next);
+        Map<String, List<JsonNode>> previousInvocations = invocationsByAgent(previous);
+        Map<String, List<JsonNode>> nextInvocations = invocationsByAgent(next);
+
+        for (Agent agent : nextAgents.values()) {
+            Agent old = previousAgents.get(agent.getAgentId());
+            boolean toolsChanged = diff.compareTools(agent.getAgentId(), old != null ? old.getTools() : null,
+                agent.getTools(), old != null);
+            Change change = old == null ? Change.ADDED
+                : toolsChanged || !agentSpec(old).equals(agentSpec(agent))
+                    || !previousInvocations.getOrDefault(agent.getAgentId(), List.of())
+                        .equals(nextInvocations.getOrDefault(agent.getAgentId(), List.of()))
+                    || dependenciesChanged(agent, previousAgents, nextAgents) ? Change.MODIFIED
+                : Change.UNCHANGED;
+            diff.agentChanges.put(agent.getAgentId(), change);
+        }
+        for (Agent old : previousAgents.values()) {
+            if (!nextAgents.containsKey(old.getAgentId())) {
+                diff.agentChanges.put(old.getAgentId(), Change.REMOVED);
+                diff.compareTools(old.getAgentId(), old.getTools(), null, true);
+            }
+        }
+
+        Map<String, JsonNode> previousSteps = stepsById(previous);
+        Map<String, JsonNode> nextSteps = stepsById(next);
+        for (Map.Entry<String, JsonNode> step : nextSteps.entrySet()) {
+            JsonNode old = previousSteps.get(step.getKey());
+            diff.stepChanges.put(step.getKey(), old == null ? Change.ADDED
+                : old.equals(step.getValue()) ? Change.UNCHANGED : Change.MODIFIED);
+        }
+        for (String stepId : previousSteps.keySet()) {
+            if (!nextSteps.containsKey(stepId)) {
+                diff.stepChanges.put(stepId, Change.REMOVED);
+            }
+        }
+        return diff;
+    }
+
+    /**
+     * Changes by agent id
+     */
+    public Map<String, Change> getAgentChanges() {
+        return Collections.unmodifiableMap(agentChanges);
+    }
+
+    /**
+     * Changes by {@code agentId/toolId}
+     */
+    public Map<String, Change> getToolChanges() {
+        return Collections.unmodifiableMap(toolChanges);
+    }
+
+    /**
+     * Changes by step id, nested steps included
+     */
+    public Map<String, Change> getStepChanges() {
+        return Collections.unmodifiableMap(stepChanges);
+    }
+
+    public boolean isUnchanged() {
+        return agentChanges.values().stream().allMatch(change -> change == Change.UNCHANGED)
+            && stepChanges.values().stream().allMatch(change -> change == Change.UNCHANGED);
+    }
+
+    /**
+     * Agents of the new plan that were added or modified and so need code generated
+     */
+    public List<Agent> agentsToRegenerate() {
+        List<Agent> agents = new ArrayList<>();
+        for (Agent agent : agentsById(next).values()) {
+            Change change = agentChanges.get(agent.getAgentId());
+            if (change == Change.ADDED || change == Change.MODIFIED) {
+                agents.add(agent);
+            }
+        }
+        return agents;
+    }
+
+    /**
+     * Copy of the new plan that only holds the agents to regenerate, for handing to agent generation
+     */
+    public ExecutionPlan deltaPlan() {
+        ExecutionPlan delta = new ExecutionPlan(next.getPlanId(), next.getVersion(), next.getMetadata(),
+            agentsToRegenerate(), next.getExecutionFlow());
+        delta.setSharedContext(next.getSharedContext());
+        delta.setHumanInTheLoop(next.getHumanInTheLoop());
+        return delta;
+    }
+
+    /**
+     * Copy generated code from the previous agents into the unchanged agents and tools of the new plan.
+     * Unchanged tools of a modified agent keep their code too.
+     *
+     * @return number of agents and tools whose code was carried over
+     */
+    public int carryOverArtifacts(Collection<Agent> previousAgents) {
+        Map<String, Agent> previous = new HashMap<>();
+        for (Agent agent : previousAgents) {
+            previous.put(agent.getAgentId(), agent);
+        }
+        int carried = 0;
+        for (Agent agent : agentsById(next).values()) {
+            Agent old = previous.get(agent.getAgentId());
+            if (old == null) {
+                continue;
+            }
+            if (agentChanges.get(agent.getAgentId()) == Change.UNCHANGED && old.getGeneratedCode() != null) {
+                agent.setGeneratedCode(old.getGeneratedCode());
+                carried++;
+            }
+            Map<String, Tool> oldTools = toolsById(old.getTools());
+            for (Tool tool : toolsById(agent.getTools()).values()) {
+                Tool oldTool = oldTools.get(tool.getToolId());
+                if (oldTool != null && oldTool.getGeneratedCode() != null
+                    && toolChanges.get(toolKey(agent.getAgentId(), tool.getToolId())) == Change.UNCHANGED) {
+                    tool.setGeneratedCode(oldTool.getGeneratedCode());
+                    carried++;
+                }
+            }
+        }
+        return carried;
+    }
+
+    @Override
+    public String toString() {
+        return "PlanDiff{agents=" + agentChanges + ", tools=" + toolChanges + ", steps=" + stepChanges + "}";
+    }
+
+    /**
+     * Record tool changes of one agent and return whether any tool was added, removed or modified
+     */
+    private boolean compareTools(String agentId, List<Tool> previousTools, List<Tool> nextTools, boolean agentExisted) {
+        Map<String, Tool> previous = toolsById(previousTools);
+        Map<String, Tool> next = toolsById(nextTools);
+        boolean changed = false;
+        for (Tool tool : next.values()) {
+            Tool old = previous.get(tool.getToolId());
+            Change change = old == null ? Change.ADDED
+                : toolSpec(old).equals(toolSpec(tool)) ? Change.UNCHANGED : Change.MODIFIED;
+            toolChanges.put(toolKey(agentId, tool.getToolId()), change);
+            changed |= change != Change.UNCHANGED;
+        }
+        for (Tool old : previous.values()) {
+            if (!next.containsKey(old.getToolId())) {
+                toolChanges.put(toolKey(agentId, old.getToolId()), Change.REMOVED);
+                changed = true;
+            }
+        }
+        return changed && agentExisted;
+    }
+
+    private static String toolKey(String agentId, String toolId) {
+        return agentId + "/" + toolId;
+    }
+
+    private static JsonNode agentSpec(Agent agent) {
+        ObjectNode node = JsonUtil.getObjectMapper().valueToTree(agent);
+        node.remove("generatedCode");
+        node.remove("status");
+        node.remove("tools");
+        return node;
+    }
+
+    /**
+     * Whether the name or capabilities of any agent the agent depends on differ between the plans
+     */
+    private static boolean dependenciesChanged(Agent agent, Map<String, Agent> previousAgents, Map<String, Agent> nextAgents) {
+        if (agent.getDependencies() != null) {
+            for (String dependency : agent.getDependencies()) {
+                if (!Objects.equals(dependencySummary(previousAgents.get(dependency)),
+                                    dependencySummary(nextAgents.get(dependency)))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static JsonNode dependencySummary(Agent agent) {
+        if (agent == null) {
+            return null;
+        }
+        ObjectNode summary = JsonUtil.getObjectMapper().createObjectNode();
+        summary.put("name", agent.getName());
+        summary.set("capabilities", JsonUtil.getObjectMapper().valueToTree(agent.getCapabilities()));
+        return summary;
+    }
+
+    private static JsonNode toolSpec(Tool tool) {
+        ObjectNode node = JsonUtil.getObjectMapper().valueToTree(tool);
+        node.remove("generatedCode");
+        node.remove("status");
+        return node;
+    }
+
+    private static Map<String, Agent> agentsById(ExecutionPlan plan) {
+        Map<String, Agent> agents = new LinkedHashMap<>();
+        if (plan != null && plan.getAgents() != null) {
+            for (Agent agent : plan.getAgents()) {
+                agents.put(agent.getAgentId(), agent);
+            }
+        }
+        return agents;
+    }
+
+    private static Map<String, Tool> toolsById(List<Tool> tools) {
+        Map<String, Tool> byId = new LinkedHashMap<>();
+        if (tools != null) {
+            for (Tool tool : tools) {
+                byId.put(tool.getToolId(), tool);
+            }
+        }
+        return byId;
+    }
+
+    private static Map<String, JsonNode> stepsById(ExecutionPlan plan) {
+        Map<String, JsonNode> steps = new LinkedHashMap<>();
+        if (plan != null && plan.getExecutionFlow() != null && plan.getExecutionFlow().getSteps() != null) {
+            for (ExecutionStep step : plan.getExecutionFlow().getSteps()) {
+                collectSteps(step, steps);
+            }
+        }
+        return steps;
+    }
+
+    /**
+     * For every agent, the steps that invoke it in flow order, each with the loops and conditionals
+     * enclosing it described without their children. A loop invokes its exit condition's check agent.
+     */
+    private static Map<String, List<JsonNode>> invocationsByAgent(ExecutionPlan plan) {
+        Map<String, List<JsonNode>> invocations = new HashMap<>();
+        if (plan != null && plan.getExecutionFlow() != null && plan.getExecutionFlow().getSteps() != null) {
+            for (ExecutionStep step : plan.getExecutionFlow().getSteps()) {
+                collectInvocations(step, List.of(), invocations);
+            }
+        }
+        return invocations;
+    }
+
+    private static void collectInvocations(ExecutionStep step, List<JsonNode> enclosing,
+                                           Map<String, List<JsonNode>> invocations) {
+        if (step instanceof ConditionalStep conditional) {
+            List<JsonNode> nested = withEnclosing(enclosing, shallowStep(step));
+            collectInvocations(conditional.getThenStep(), nested, invocations);
+            collectInvocations(conditional.getElseStep(), nested, invocations);
+        } else if (step instanceof LoopStep loop) {
+            JsonNode descriptor = shallowStep(step);
+            if (loop.getExitCondition() != null) {
+                addInvocation(invocations, loop.getExitCondition().getCheckAgentId(), descriptor, enclosing);
+            }
+            if (loop.getBody() != null) {
+                List<JsonNode> nested = withEnclosing(enclosing, descriptor);
+                for (ExecutionStep child : loop.getBody()) {
+                    collectInvocations(child, nested, invocations);
+                }
+            }
+        } else if (step instanceof SequentialStep sequential) {
+            addInvocation(invocations, sequential.getAgentId(), JsonUtil.getObjectMapper().valueToTree(step), enclosing);
+        } else if (step instanceof ParallelStep parallel && parallel.getParallelAgents() != null) {
+            JsonNode tree = JsonUtil.getObjectMapper().valueToTree(step);
+            for (ParallelStep.ParallelAgent parallelAgent : parallel.getParallelAgents()) {
+                addInvocation(invocations, parallelAgent.getAgentId(), tree, enclosing);
+            }
+        }
+    }
+
+    private static void addInvocation(Map<String, List<JsonNode>> invocations, String agentId, JsonNode step,
+                                      List<JsonNode> enclosing) {
+        if (agentId == null) {
+            return;
+        }
+        ArrayNode invocation = JsonUtil.getObjectMapper().createArrayNode();
+        invocation.add(step);
+        invocation.addAll(enclosing);
+        invocations.computeIfAbsent(agentId, id -> new ArrayList<>()).add(invocation);
+    }
+
+    private static List<JsonNode> withEnclosing(List<JsonNode> enclosing, JsonNode descriptor) {
+        List<JsonNode> nested = new ArrayList<>(enclosing.size() + 1);
+        nested.add(descriptor);
+        nested.addAll(enclosing);
+        return nested;
+    }
+
+    /**
+     * A loop or conditional step without its nested steps
+     */
+    private static JsonNode shallowStep(ExecutionStep step) {
+        ObjectNode node = JsonUtil.getObjectMapper().valueToTree(step);
+        node.remove("body");
+        node.remove("thenStep");
+        node.remove("elseStep");
+        return node;
+    }
+
+    private static void collectSteps(ExecutionStep step, Map<String, JsonNode> steps) {
+        if (step == null) {
+            return;
+        }
+        steps.put(step.getStepId(), JsonUtil.getObjectMapper().valueToTree(step));
+        if (step instanceof ConditionalStep conditional) {
+            collectSteps(conditional.getThenStep(), steps);
+            collectSteps(conditional.getElseStep(), steps);
+        } else if (step instanceof LoopStep loop && loop.getBody() != null) {
+            for (ExecutionStep child : loop.getBody()) {
+                collectSteps(child, steps);
+            }
+        }
+    }
+}
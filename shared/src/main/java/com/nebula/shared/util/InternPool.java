@@ -0,0 +1,60 @@
+package com.nebula.shared.util;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Canonicalizing pool that maps equal values to one shared instance.
+ * Entries are weakly referenced, so a canonical instance is collected once nothing outside the pool
+ * uses it. Values must be immutable, or at least never modified after interning, since they are
+ * looked up by {@code equals}/{@code hashCode}. The pool is split into independently locked segments
+ * by hash to keep contention low.
+ */
+public class InternPool<T> {
+
+    private static final int SEGMENTS = 16;
+
+    private final Map<T, WeakReference<T>>[] segments;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public InternPool() {
+        segments = new Map[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new WeakHashMap<>();
+        }
+    }
+
+    /**
+     * The canonical instance equal to {@code value}, adding {@code value} if there is none
+     */
+    public T intern(T value) {
+        if (value == null) {
+            return null;
+        }
+        int hash = value.hashCode();
+        Map<T, WeakReference<T>> segment = segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+        synchronized (segment) {
+            WeakReference<T> reference = segment.get(value);
+            T canonical = reference != null ? reference.get() : null;
+            if (canonical == null) {
+                segment.put(value, new WeakReference<>(value));
+                canonical = value;
+            }
+            return canonical;
+        }
+    }
+
+    /**
+     * Number of live canonical instances
+     */
+    public int size() {
+        int size = 0;
+        for (Map<T, WeakReference<T>> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+}
@@ -1,25 +1,50 @@
 package com.nebula.shared.util;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * Utility class for JSON serialization and deserialization.
+ * Output is compact; only {@link #toPrettyJson} indents. Readers and writers are cached per type,
+ * and the byte, stream and {@link ByteBuffer} variants avoid building intermediate Strings.
+ * The Blackbird module replaces reflective property access with generated lambdas; set the
+ * system property {@code nebula.json.blackbird=false} to fall back to plain reflection.
  */
 public class JsonUtil {
     
     private static final Logger logger = LoggerFactory.getLogger(JsonUtil.class);
     private static final ObjectMapper objectMapper;
+    private static final ObjectWriter prettyWriter;
+    private static final Map<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
     
     static {
         objectMapper = new ObjectMapper();
         objectMapper.registerModule(new JavaTimeModule());
+        if (Boolean.parseBoolean(System.getProperty("nebula.json.blackbird", "true"))) {
+            objectMapper.registerModule(new BlackbirdModule());
+        }
         objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-        objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+        prettyWriter = objectMapper.writerWithDefaultPrettyPrinter();
     }
     
     /**
@@ -27,41 +52,193 @@ public class JsonUtil {
      */
     public static String toJson(Object object) {
         try {
-            return objectMapper.writeValueAsString(object);
+            return writerFor(object).writeValueAsString(object);
+        } catch (JsonProcessingException e) {
+            logger.error("Error converting object to JSON", e);
+            throw new RuntimeException("Failed to convert object to JSON", e);
+        }
+    }
+    
+    /**
+     * Convert object to UTF-8 encoded JSON
+     */
+    public static byte[] toJsonBytes(Object object) {
+        try {
+            return writerFor(object).writeValueAsBytes(object);
         } catch (JsonProcessingException e) {
             logger.error("Error converting object to JSON", e);
             throw new RuntimeException("Failed to convert object to JSON", e);
         }
     }
     
+    /**
+     * Convert object to UTF-8 encoded JSON in a heap buffer ready to be read
+     */
+    public static ByteBuffer toJsonByteBuffer(Object object) {
+        return ByteBuffer.wrap(toJsonBytes(object));
+    }
+    
+    /**
+     * Write object as UTF-8 encoded JSON to a stream; the stream is left open
+     */
+    public static void toJson(Object object, OutputStream out) {
+        try {
+            writerFor(object).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET).writeValue(out, object);
+        } catch (IOException e) {
+            logger.error("Error writing object as JSON", e);
+            throw new RuntimeException("Failed to write object as JSON", e);
+        }
+    }
+    
     /**
      * Convert JSON string to object
      */
     public static <T> T fromJson(String json, Class<T> clazz) {
         try {
-            return objectMapper.readValue(json, clazz);
+            return readerFor(clazz).readValue(json);
         } catch (JsonProcessingException e) {
             logger.error("Error converting JSON to object", e);
             throw new RuntimeException("Failed to convert JSON to object", e);
         }
     }
     
+    /**
+     * Convert JSON string to a generic type such as {@code List<Agent>}
+     */
+    public static <T> T fromJson(String json, TypeReference<T> type) {
+        try {
+            return objectMapper.readerFor(type).readValue(json);
+        } catch (JsonProcessingException e) {
+            logger.error("Error converting JSON to object", e);
+            throw new RuntimeException("Failed to convert JSON to object", e);
+        }
+    }
+    
+    /**
+     * Convert UTF-8 encoded JSON to object
+     */
+    public static <T> T fromJson(byte[] json, Class<T> clazz) {
+        try {
+            return readerFor(clazz).readValue(json);
+        } catch (IOException e) {
+            logger.error("Error converting JSON to object", e);
+            throw new RuntimeException("Failed to convert JSON to object", e);
+        }
+    }
+    
+    /**
+     * Convert the remaining bytes of a buffer to object; the buffer's position is not changed
+     */
+    public static <T> T fromJson(ByteBuffer json, Class<T> clazz) {
+        try {
+            if (json.hasArray()) {
+                return readerFor(clazz).readValue(json.array(), json.arrayOffset() + json.position(), json.remaining());
+            }
+            return readerFor(clazz).readValue(new ByteBufferBackedInputStream(json.duplicate()));
+        } catch (IOException e) {
+            logger.error("Error converting JSON to object", e);
+            throw new RuntimeException("Failed to convert JSON to object", e);
+        }
+    }
+    
+    /**
+     * Read a JSON document from a stream; the stream is closed once the value is read
+     */
+    public static <T> T fromJson(InputStream in, Class<T> clazz) {
+        try {
+            return readerFor(clazz).readValue(in);
+        } catch (IOException e) {
+            logger.error("Error reading JSON", e);
+            throw new RuntimeException("Failed to read JSON", e);
+        }
+    }
+    
+    /**
+     * Decode the elements of a top-level JSON array, or a sequence of root-level values such as NDJSON,
+     * one at a time. Only the current element is materialized; close the iterator to release the stream.
+     */
+    public static <T> MappingIterator<T> readValues(InputStream in, Class<T> clazz) {
+        try {
+            return readerFor(clazz).readValues(in);
+        } catch (IOException e) {
+            logger.error("Error reading JSON values", e);
+            throw new RuntimeException("Failed to read JSON values", e);
+        }
+    }
+    
+    /**
+     * Decode the elements of a top-level JSON array or NDJSON document one at a time
+     */
+    public static <T> MappingIterator<T> readValues(String json, Class<T> clazz) {
+        try {
+            return readerFor(clazz).readValues(json);
+        } catch (IOException e) {
+            logger.error("Error reading JSON values", e);
+            throw new RuntimeException("Failed to read JSON values", e);
+        }
+    }
+    
+    /**
+     * Decode a top-level JSON array or NDJSON document into a typed list
+     */
+    public static <T> List<T> fromJsonList(String json, Class<T> clazz) {
+        try (MappingIterator<T> values = readValues(json, clazz)) {
+            return values.readAll();
+        } catch (IOException e) {
+            logger.error("Error converting JSON to list", e);
+            throw new RuntimeException("Failed to convert JSON to list", e);
+        }
+    }
+    
+    /**
+     * Write values as NDJSON, one compact document per line; the stream is left open
+     */
+    public static void toNdjson(Iterable<?> values, OutputStream out) {
+        try {
+            for (Object value : values) {
+                writerFor(value).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET).writeValue(out, value);
+                out.write('\n');
+            }
+        } catch (IOException e) {
+            logger.error("Error writing NDJSON", e);
+            throw new RuntimeException("Failed to write NDJSON", e);
+        }
+    }
+    
     /**
      * Convert object to pretty-printed JSON string
      */
     public static String toPrettyJson(Object object) {
         try {
-            return objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(object);
+            return prettyWriter.writeValueAsString(object);
         } catch (JsonProcessingException e) {
             logger.error("Error converting object to pretty JSON", e);
             throw new RuntimeException("Failed to convert object to pretty JSON", e);
         }
     }
     
+    /**
+     * Cached reader bound to a type
+     */
+    public static ObjectReader readerFor(Class<?> clazz) {
+        return readers.computeIfAbsent(clazz, objectMapper::readerFor);
+    }
+    
+    /**
+     * Cached compact writer bound to a type
+     */
+    public static ObjectWriter writerFor(Class<?> clazz) {
+        return writers.computeIfAbsent(clazz, objectMapper::writerFor);
+    }
+    
     /**
      * Get the configured ObjectMapper instance
      */
     public static ObjectMapper getObjectMapper() {
         return objectMapper;
     }
+    
+    private static ObjectWriter writerFor(Object object) {
+        return object != null ? writerFor(object.getClass()) : objectMapper.writer();
+    }
 }
\ No newline at end of file
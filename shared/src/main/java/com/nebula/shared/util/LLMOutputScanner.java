@@ -0,0 +1,290 @@
+package com.nebula.shared.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single-pass scanner that locates structured content in free-form LLM output.
+ * It finds markdown fenced blocks (with their info string) and, outside of fences, balanced
+ * JSON objects and arrays, honouring string literals and escapes. Blocks are reported as offsets
+ * into the original text; no substrings are created until a caller asks for a block's text.
+ */
+public final class LLMOutputScanner {
+
+    /**
+     * Maximum number of times an unterminated JSON candidate causes a rescan from just after its start
+     */
+    private static final int MAX_RESCANS = 8;
+
+    private static final int MAX_NESTING = 512;
+
+    private LLMOutputScanner() {}
+
+    /**
+     * Kind of block found in the output
+     */
+    public enum Kind {
+        FENCE,
+        JSON_OBJECT,
+        JSON_ARRAY
+    }
+
+    /**
+     * A located block; {@code start}/{@code end} delimit its content (fence markers excluded)
+     */
+    public static final class Block {
+        private final Kind kind;
+        private final int start;
+        private final int end;
+        private final String language;
+
+        Block(Kind kind, int start, int end, String language) {
+            this.kind = kind;
+            this.start = start;
+            this.end = end;
+            this.language = language;
+        }
+
+        public Kind getKind() { return kind; }
+
+        public int getStart() { return start; }
+
+        public int getEnd() { return end; }
+
+        public int length() { return end - start; }
+
+        /**
+         * Fence info string (e.g. "java"), empty for unlabelled fences and JSON blocks
+         */
+        public String getLanguage() { return language; }
+
+        public String text(CharSequence source) {
+            return source.subSequence(start, end).toString();
+        }
+    }
+
+    /**
+     * Scan the output and return every fenced block and every top-level balanced JSON value outside fences
+     */
+    public static List<Block> scan(CharSequence text) {
+        return scan(text, 0, text.length());
+    }
+
+    /**
+     * Scan {@code text[start, end)}; blocks are reported with offsets into the whole text
+     */
+    private static List<Block> scan(CharSequence text, int start, int end) {
+        List<Block> blocks = new ArrayList<>();
+        int from = start;
+        for (int rescans = 0; from >= 0 && from < end; rescans++) {
+            int unterminated = scan(text, from, end, blocks);
+            from = unterminated >= 0 && rescans < MAX_RESCANS ? unterminated + 1 : -1;
+        }
+        return blocks;
+    }
+
+    /**
+     * Find the first fenced block whose info string matches one of the languages (case-insensitive)
+     */
+    public static Block findFence(List<Block> blocks, String... languages) {
+        for (Block block : blocks) {
+            if (block.kind == Kind.FENCE) {
+                for (String language : languages) {
+                    if (block.language.equalsIgnoreCase(language)) {
+                        return block;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find the first fenced block regardless of its info string
+     */
+    public static Block findAnyFence(List<Block> blocks) {
+        for (Block block : blocks) {
+            if (block.kind == Kind.FENCE) {
+                return block;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find the JSON payload of a response: the first ```json fence, otherwise the largest balanced JSON
+     * object or array either outside fences or inside any other fence (e.g. a bare ``` or a mislabelled
+     * ```javascript fence), so braces in surrounding prose do not win over a fenced plan. Returns null if
+     * the response holds no JSON.
+     */
+    public static Block findJson(CharSequence text, List<Block> blocks) {
+        Block fence = findFence(blocks, "json");
+        if (fence != null) {
+            return fence;
+        }
+        Block largest = null;
+        for (Block block : blocks) {
+            Block json = block.kind == Kind.FENCE ? largestJsonIn(text, block) : block;
+            if (json != null && (largest == null || json.length() > largest.length())) {
+                largest = json;
+            }
+        }
+        return largest;
+    }
+
+    /**
+     * The largest balanced JSON value in a fence's content
+     */
+    private static Block largestJsonIn(CharSequence text, Block fence) {
+        Block largest = null;
+        for (Block block : scan(text, fence.start, fence.end)) {
+            if (block.kind != Kind.FENCE && (largest == null || block.length() > largest.length())) {
+                largest = block;
+            }
+        }
+        return largest;
+    }
+
+    /**
+     * Scan from the given offset up to {@code length}, appending blocks. Returns the start of an
+     * unterminated JSON candidate if the text ended inside one, or -1.
+     */
+    private static int scan(CharSequence text, int from, int length, List<Block> blocks) {
+        boolean lineStart = from == 0 || text.charAt(from - 1) == '\n';
+
+        boolean inFence = false;
+        int fenceContentStart = -1;
+        String fenceLanguage = "";
+
+        int jsonStart = -1;
+        char[] stack = new char[MAX_NESTING];
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+
+        int i = from;
+        while (i < length) {
+            char c = text.charAt(i);
+
+            if (lineStart && jsonStart < 0) {
+                int marker = fenceMarkerAt(text, i, length);
+                if (marker >= 0) {
+                    int lineEnd = indexOf(text, '\n', marker + 3, length);
+                    if (!inFence) {
+                        inFence = true;
+                        fenceLanguage = infoString(text, marker + 3, lineEnd < 0 ? length : lineEnd);
+                        fenceContentStart = lineEnd < 0 ? length : lineEnd + 1;
+                    } else {
+                        int contentEnd = Math.max(fenceContentStart, i > 0 && text.charAt(i - 1) == '\n' ? i - 1 : i);
+                        blocks.add(new Block(Kind.FENCE, fenceContentStart, contentEnd, fenceLanguage));
+                        inFence = false;
+                    }
+                    if (lineEnd < 0) {
+                        i = length;
+                        break;
+                    }
+                    i = lineEnd + 1;
+                    lineStart = true;
+                    continue;
+                }
+            }
+            if (inFence) {
+                // Only a closing marker matters inside a fence, so skip to the next line
+                int lineEnd = indexOf(text, '\n', i, length);
+                if (lineEnd < 0) {
+                    i = length;
+                    break;
+                }
+                i = lineEnd + 1;
+                lineStart = true;
+                continue;
+            }
+            lineStart = c == '\n';
+
+            if (jsonStart < 0) {
+                if (c == '{' || c == '[') {
+                    jsonStart = i;
+                    stack[0] = c;
+                    depth = 1;
+                    inString = false;
+                    escaped = false;
+                }
+            } else if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                if (depth == MAX_NESTING) {
+                    jsonStart = -1;
+                } else {
+                    stack[depth++] = c;
+                }
+            } else if (c == '}' || c == ']') {
+                char open = stack[--depth];
+                if ((c == '}') != (open == '{')) {
+                    // Mismatched bracket: this was prose, not JSON
+                    jsonStart = -1;
+                } else if (depth == 0) {
+                    blocks.add(new Block(open == '{' ? Kind.JSON_OBJECT : Kind.JSON_ARRAY, jsonStart, i + 1, ""));
+                    jsonStart = -1;
+                }
+            }
+            i++;
+        }
+
+        if (inFence) {
+            // Unterminated fence (truncated output): report what we have
+            blocks.add(new Block(Kind.FENCE, Math.min(fenceContentStart, length), length, fenceLanguage));
+        }
+        return jsonStart;
+    }
+
+    /**
+     * Return the offset of a ``` marker starting the line at {@code lineStart} (after up to three spaces), or -1
+     */
+    private static int fenceMarkerAt(CharSequence text, int lineStart, int length) {
+        int i = lineStart;
+        int limit = Math.min(length, lineStart + 3);
+        while (i < limit && text.charAt(i) == ' ') {
+            i++;
+        }
+        if (i + 3 <= length && text.charAt(i) == '`' && text.charAt(i + 1) == '`' && text.charAt(i + 2) == '`') {
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * The first word of a fence info string, e.g. "java" for "```java title=Agent.java"
+     */
+    private static String infoString(CharSequence text, int from, int to) {
+        int start = from;
+        while (start < to && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        int end = start;
+        while (end < to && !Character.isWhitespace(text.charAt(end)) && text.charAt(end) != '`') {
+            end++;
+        }
+        return start == end ? "" : text.subSequence(start, end).toString();
+    }
+
+    private static int indexOf(CharSequence text, char c, int from, int to) {
+        if (text instanceof String string) {
+            int index = string.indexOf(c, from);
+            return index < to ? index : -1;
+        }
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,156 @@
+package com.nebula.shared.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.nebula.shared.model.ExecutionPlan;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Encodes execution plans for storage, messaging and REST transport in JSON or a binary Jackson format.
+ * The binary mappers are copies of {@link JsonUtil#getObjectMapper()}, so the same annotations,
+ * step subtypes and modules apply and a plan decodes to the same object from any format.
+ * Smile additionally back-references repeated names and short string values such as agent ids.
+ */
+public final class PlanCodec {
+
+    /**
+     * Wire formats and their media types
+     */
+    public enum Format {
+        JSON("application/json"),
+        SMILE("application/x-jackson-smile"),
+        CBOR("application/cbor");
+
+        private final String mediaType;
+
+        Format(String mediaType) {
+            this.mediaType = mediaType;
+        }
+
+        public String getMediaType() {
+            return mediaType;
+        }
+
+        /**
+         * Format for a Content-Type or Accept value, ignoring parameters; JSON if it is not a binary type
+         */
+        public static Format fromMediaType(String mediaType) {
+            if (mediaType != null) {
+                String type = mediaType.split(";", 2)[0].trim().toLowerCase(Locale.ROOT);
+                for (Format format : values()) {
+                    if (format.mediaType.equals(type)) {
+                        return format;
+                    }
+                }
+            }
+            return JSON;
+        }
+    }
+
+    private static final ObjectMapper smileMapper;
+    private static final ObjectMapper cborMapper;
+    private static final Map<Format, ObjectReader> readers = new EnumMap<>(Format.class);
+    private static final Map<Format, ObjectWriter> writers = new EnumMap<>(Format.class);
+
+    static {
+        SmileFactory smileFactory = SmileFactory.builder()
+            .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+            .build();
+        smileMapper = JsonUtil.getObjectMapper().copyWith(smileFactory);
+        cborMapper = JsonUtil.getObjectMapper().copyWith(new CBORFactory());
+        for (Format format : Format.values()) {
+            readers.put(format, mapper(format).readerFor(ExecutionPlan.class));
+            writers.put(format, mapper(format).writerFor(ExecutionPlan.class));
+        }
+    }
+
+    private PlanCodec() {
+    }
+
+    /**
+     * Encode a plan
+     */
+    public static byte[] encode(ExecutionPlan plan, Format format) {
+        try {
+            return writer(format).writeValueAsBytes(plan);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to encode execution plan as " + format, e);
+        }
+    }
+
+    /**
+     * Encode a plan to a stream; the stream is left open
+     */
+    public static void encode(ExecutionPlan plan, Format format, OutputStream out) {
+        try {
+            writer(format).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET).writeValue(out, plan);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to encode execution plan as " + format, e);
+        }
+    }
+
+    /**
+     * Decode a plan
+     */
+    public static ExecutionPlan decode(byte[] data, Format format) {
+        try {
+            return reader(format).readValue(data);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to decode execution plan from " + format, e);
+        }
+    }
+
+    /**
+     * Decode a plan from a stream
+     */
+    public static ExecutionPlan decode(InputStream in, Format format) {
+        try {
+            return reader(format).readValue(in);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to decode execution plan from " + format, e);
+        }
+    }
+
+    /**
+     * Decode a bulk export one plan at a time: a JSON array or NDJSON, or a sequence of concatenated
+     * binary documents. Close the iterator to release the stream.
+     */
+    public static MappingIterator<ExecutionPlan> decodeAll(InputStream in, Format format) {
+        try {
+            return reader(format).readValues(in);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to decode execution plans from " + format, e);
+        }
+    }
+
+    /**
+     * Mapper for a format, e.g. for message converters that handle other payload types
+     */
+    public static ObjectMapper mapper(Format format) {
+        return switch (format) {
+            case JSON -> JsonUtil.getObjectMapper();
+            case SMILE -> smileMapper;
+            case CBOR -> cborMapper;
+        };
+    }
+
+    private static ObjectWriter writer(Format format) {
+        return writers.get(format);
+    }
+
+    private static ObjectReader reader(Format format) {
+        return readers.get(format);
+    }
+}
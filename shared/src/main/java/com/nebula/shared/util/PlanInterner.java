@@ -0,0 +1,118 @@
+package com.nebula.shared.util;
+
+import com.nebula.shared.model.Agent;
+import com.nebula.shared.model.ExecutionPlan;
+import com.nebula.shared.model.Tool;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shares the immutable parts of agent and tool definitions across plans held in memory.
+ * Identifiers, names, prompts and generated code are interned as strings; capability and dependency
+ * lists and configuration maps are replaced by unmodifiable canonical copies. Agents and tools themselves
+ * are not shared, since their status changes per plan. All pools are weak, so definitions no plan uses
+ * any more are collected.
+ */
+public final class PlanInterner {
+
+    private static final InternPool<String> strings = new InternPool<>();
+    private static final InternPool<List<Object>> lists = new InternPool<>();
+    private static final InternPool<Map<String, Object>> maps = new InternPool<>();
+
+    private PlanInterner() {
+    }
+
+    /**
+     * Intern every agent and tool definition of the plan in place
+     */
+    public static ExecutionPlan internPlan(ExecutionPlan plan) {
+        if (plan != null && plan.getAgents() != null) {
+            for (Agent agent : plan.getAgents()) {
+                internAgent(agent);
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Intern an agent's definition and its tools in place
+     */
+    public static Agent internAgent(Agent agent) {
+        agent.setAgentId(internString(agent.getAgentId()));
+        agent.setName(internString(agent.getName()));
+        agent.setCapabilities(internList(agent.getCapabilities()));
+        agent.setDependencies(internList(agent.getDependencies()));
+        agent.setConfiguration(internMap(agent.getConfiguration()));
+        agent.setGeneratedCode(internString(agent.getGeneratedCode()));
+        agent.setPrompt(internString(agent.getPrompt()));
+        if (agent.getTools() != null) {
+            for (Tool tool : agent.getTools()) {
+                internTool(tool);
+            }
+        }
+        return agent;
+    }
+
+    /**
+     * Intern a tool's definition in place
+     */
+    public static Tool internTool(Tool tool) {
+        tool.setToolId(internString(tool.getToolId()));
+        tool.setName(internString(tool.getName()));
+        tool.setDescription(internString(tool.getDescription()));
+        tool.setConfiguration(internMap(tool.getConfiguration()));
+        tool.setGeneratedCode(internString(tool.getGeneratedCode()));
+        return tool;
+    }
+
+    public static String internString(String value) {
+        return strings.intern(value);
+    }
+
+    /**
+     * Canonical unmodifiable copy of a list, with its elements interned
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> List<E> internList(List<E> list) {
+        if (list == null) {
+            return null;
+        }
+        List<Object> copy = new ArrayList<>(list.size());
+        for (E element : list) {
+            copy.add(internValue(element));
+        }
+        return (List<E>) lists.intern(Collections.unmodifiableList(copy));
+    }
+
+    /**
+     * Canonical unmodifiable copy of a map, with its keys and values interned
+     */
+    public static Map<String, Object> internMap(Map<String, Object> map) {
+        if (map == null) {
+            return null;
+        }
+        Map<String, Object> copy = new LinkedHashMap<>(map.size() * 4 / 3 + 1);
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            copy.put(internString(entry.getKey()), internValue(entry.getValue()));
+        }
+        return maps.intern(Collections.unmodifiableMap(copy));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object internValue(Object value) {
+        if (value instanceof String string) {
+            return internString(string);
+        }
+        if (value instanceof List<?> list) {
+            return internList(list);
+        }
+        if (value instanceof Map<?, ?> map) {
+            return internMap((Map<String, Object>) map);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,71 @@
+package com.nebula.shared.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.networknt.schema.JsonSchema;
+import com.networknt.schema.JsonSchemaFactory;
+import com.networknt.schema.SchemaValidatorsConfig;
+import com.networknt.schema.SpecVersion;
+import com.networknt.schema.ValidationMessage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Validates execution plans against {@code schemas/execution-plan-schema.json}.
+ * The schema is compiled once when the validator is created and can be shared across threads.
+ * Plans are validated as parsed trees, so the document is not serialized again, and all violations
+ * are collected in a single pass.
+ */
+public class PlanSchemaValidator {
+
+    public static final String EXECUTION_PLAN_SCHEMA = "schemas/execution-plan-schema.json";
+
+    private final JsonSchema schema;
+
+    public PlanSchemaValidator(String resource) {
+        try (InputStream in = PlanSchemaValidator.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalStateException("Schema not found on classpath: " + resource);
+            }
+            SchemaValidatorsConfig config = new SchemaValidatorsConfig();
+            config.setFailFast(false);
+            this.schema = JsonSchemaFactory.getInstance(SpecVersion.VersionFlag.V7).getSchema(in, config);
+            this.schema.initializeValidators();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load schema " + resource, e);
+        }
+    }
+
+    /**
+     * Validator for the execution plan schema
+     */
+    public static PlanSchemaValidator forExecutionPlan() {
+        return new PlanSchemaValidator(EXECUTION_PLAN_SCHEMA);
+    }
+
+    /**
+     * All schema violations of the document, empty if it is valid
+     */
+    public List<String> validate(JsonNode document) {
+        Set<ValidationMessage> messages = schema.validate(document);
+        List<String> violations = new ArrayList<>(messages.size());
+        for (ValidationMessage message : messages) {
+            violations.add(message.getMessage());
+        }
+        return violations;
+    }
+
+    /**
+     * Throw if the document violates the schema, listing every violation
+     */
+    public void requireValid(JsonNode document) {
+        List<String> violations = validate(document);
+        if (!violations.isEmpty()) {
+            throw new IllegalArgumentException("Execution plan violates schema (" + violations.size() + " errors): "
+                + String.join("; ", violations));
+        }
+    }
+}
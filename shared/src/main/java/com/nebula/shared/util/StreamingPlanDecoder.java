@@ -0,0 +1,196 @@
+package com.nebula.shared.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.nebula.shared.model.Agent;
+import com.nebula.shared.model.ExecutionPlan;
+import com.nebula.shared.model.ExecutionStep;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Incremental decoder for an execution plan that is still being generated.
+ * Text fragments are fed as they arrive; each entry of {@code agents} and each top-level entry of
+ * {@code executionFlow.steps} is reported to the listener as soon as its JSON object closes, so
+ * downstream work can start before the plan is complete. Leading prose or a markdown fence before the
+ * first '{' and anything after the closing '}' are ignored.
+ *
+ * Instances are not thread-safe; feed fragments from a single thread or serialized stream.
+ */
+public class StreamingPlanDecoder {
+
+    /**
+     * Receives plan elements as they are decoded. Callbacks run on the feeding thread and must not block.
+     */
+    public interface Listener {
+        default void onAgent(Agent agent) {}
+
+        default void onStep(ExecutionStep step) {}
+    }
+
+    private enum Capture { NONE, AGENT, STEP }
+
+    private final ObjectMapper objectMapper;
+    private final Listener listener;
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+    private final TokenBuffer planBuffer;
+
+    private boolean started;
+    private boolean finished;
+    private Capture capture = Capture.NONE;
+    private TokenBuffer elementBuffer;
+    private int elementDepth;
+
+    public StreamingPlanDecoder(Listener listener) {
+        this.objectMapper = JsonUtil.getObjectMapper();
+        this.listener = listener;
+        try {
+            this.parser = objectMapper.getFactory().createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create streaming JSON parser", e);
+        }
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+        this.planBuffer = new TokenBuffer(objectMapper, false);
+    }
+
+    /**
+     * Feed the next fragment of LLM output
+     */
+    public void feed(CharSequence fragment) {
+        if (finished || fragment.length() == 0) {
+            return;
+        }
+
+        CharSequence json = fragment;
+        if (!started) {
+            int start = indexOf(fragment, '{');
+            if (start < 0) {
+                return;
+            }
+            started = true;
+            json = fragment.subSequence(start, fragment.length());
+        }
+
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        try {
+            feeder.feedInput(bytes, 0, bytes.length);
+            drain();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to decode streamed execution plan", e);
+        }
+    }
+
+    /**
+     * Signal end of input and return the complete plan
+     */
+    public ExecutionPlan complete() {
+        try {
+            return objectMapper.treeToValue(completeTree(), ExecutionPlan.class);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to decode streamed execution plan", e);
+        }
+    }
+
+    /**
+     * Signal end of input and return the complete plan as a tree, e.g. for schema validation before binding
+     */
+    public JsonNode completeTree() {
+        try {
+            if (!finished) {
+                feeder.endOfInput();
+                drain();
+            }
+            if (!finished) {
+                throw new IllegalStateException("Streamed execution plan ended before its closing brace");
+            }
+            return objectMapper.readTree(planBuffer.asParser(objectMapper));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to decode streamed execution plan", e);
+        }
+    }
+
+    private void drain() throws IOException {
+        JsonToken token;
+        while (!finished && (token = parser.nextToken()) != JsonToken.NOT_AVAILABLE) {
+            if (token == null) {
+                finished = true;
+                break;
+            }
+
+            planBuffer.copyCurrentEvent(parser);
+
+            if (capture == Capture.NONE && token == JsonToken.START_OBJECT) {
+                capture = elementKind(parser.getParsingContext());
+                if (capture != Capture.NONE) {
+                    elementBuffer = new TokenBuffer(objectMapper, false);
+                    elementDepth = 0;
+                }
+            }
+
+            if (capture != Capture.NONE) {
+                elementBuffer.copyCurrentEvent(parser);
+                if (token.isStructStart()) {
+                    elementDepth++;
+                } else if (token.isStructEnd() && --elementDepth == 0) {
+                    emitElement();
+                }
+            }
+
+            if (token.isStructEnd() && parser.getParsingContext().inRoot()) {
+                finished = true;
+            }
+        }
+    }
+
+    private void emitElement() throws IOException {
+        JsonParser elementParser = elementBuffer.asParser(objectMapper);
+        if (capture == Capture.AGENT) {
+            listener.onAgent(objectMapper.readValue(elementParser, Agent.class));
+        } else {
+            listener.onStep(objectMapper.readValue(elementParser, ExecutionStep.class));
+        }
+        capture = Capture.NONE;
+        elementBuffer = null;
+    }
+
+    /**
+     * Classify a just-opened object as an agent ({@code $.agents[*]}),
+     * a top-level step ({@code $.executionFlow.steps[*]}) or neither
+     */
+    private Capture elementKind(JsonStreamContext objectContext) {
+        JsonStreamContext array = objectContext.getParent();
+        if (array == null || !array.inArray()) {
+            return Capture.NONE;
+        }
+        JsonStreamContext owner = array.getParent();
+        if (owner == null || !owner.inObject()) {
+            return Capture.NONE;
+        }
+
+        JsonStreamContext ownerParent = owner.getParent();
+        if ("agents".equals(owner.getCurrentName()) && ownerParent.inRoot()) {
+            return Capture.AGENT;
+        }
+        if ("steps".equals(owner.getCurrentName()) && ownerParent.inObject()
+                && "executionFlow".equals(ownerParent.getCurrentName()) && ownerParent.getParent().inRoot()) {
+            return Capture.STEP;
+        }
+        return Capture.NONE;
+    }
+
+    private static int indexOf(CharSequence text, char c) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
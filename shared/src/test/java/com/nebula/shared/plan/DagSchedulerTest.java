@@ -0,0 +1,127 @@
+package com.nebula.shared.plan;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DagSchedulerTest {
+
+    private static final String AGENT = """
+        {"agentId": "worker", "name": "Worker", "type": "data", "language": "java", "capabilities": []}
+        """;
+
+    /**
+     * An independent step declared first, then the chain a, b, c
+     */
+    private static final String STEPS = """
+        {"stepId": "side", "type": "sequential", "agentId": "worker", "name": "Side"},
+        {"stepId": "a", "type": "sequential", "agentId": "worker", "name": "A", "outputs": ["x"]},
+        {"stepId": "b", "type": "sequential", "agentId": "worker", "name": "B", "inputs": {"x": "${x}"}, "outputs": ["y"]},
+        {"stepId": "c", "type": "sequential", "agentId": "worker", "name": "C", "inputs": {"y": "${y}"}}
+        """;
+
+    private final CompiledPlan plan = PlanCompilerTest.compile(AGENT, "dag", STEPS);
+
+    private List<String> runInOrder(DagScheduler scheduler) throws Exception {
+        List<String> started = Collections.synchronizedList(new ArrayList<>());
+        scheduler.run(step -> {
+            started.add(plan.stepId(step));
+            return CompletableFuture.completedFuture(null);
+        }).get(5, TimeUnit.SECONDS);
+        return started;
+    }
+
+    @Test
+    void ranksAreTheCostOfTheLongestRemainingChain() {
+        long[] ranks = DagScheduler.criticalPathRanks(plan, DagScheduler.UNIT_COST);
+
+        assertEquals(1, ranks[plan.stepIndex("side")]);
+        assertEquals(3, ranks[plan.stepIndex("a")]);
+        assertEquals(2, ranks[plan.stepIndex("b")]);
+        assertEquals(1, ranks[plan.stepIndex("c")]);
+        assertEquals(3, new DagScheduler(plan).criticalPathLength());
+    }
+
+    @Test
+    void readyStepOnTheCriticalPathStartsFirstAndTiesGoToDeclarationOrder() throws Exception {
+        List<String> started = runInOrder(new DagScheduler(plan, DagScheduler.UNIT_COST, 1));
+
+        assertEquals(List.of("a", "b", "side", "c"), started);
+    }
+
+    @Test
+    void costsDecideTheCriticalPath() throws Exception {
+        int side = plan.stepIndex("side");
+        DagScheduler scheduler = new DagScheduler(plan, step -> step == side ? 10 : 1, 1);
+
+        assertEquals(10, scheduler.criticalPathLength());
+        assertEquals(List.of("side", "a", "b", "c"), runInOrder(scheduler));
+    }
+
+    @Test
+    void stepsStartOnceTheirPredecessorsFinishAndNoMoreThanTheLimitRun() throws Exception {
+        List<String> started = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Object>> stages = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<Void> done = new DagScheduler(plan, DagScheduler.UNIT_COST, 2).run(step -> {
+            started.add(plan.stepId(step));
+            CompletableFuture<Object> stage = new CompletableFuture<>();
+            stages.add(stage);
+            return stage;
+        });
+
+        assertEquals(List.of("a", "side"), started);
+        stages.get(1).complete(null);
+        assertEquals(List.of("a", "side"), started);
+        stages.get(0).complete(null);
+        assertEquals(List.of("a", "side", "b"), started);
+        stages.get(2).complete(null);
+        assertEquals(List.of("a", "side", "b", "c"), started);
+        stages.get(3).complete(null);
+
+        done.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void failingStepFailsTheRunAndStartsNothingElse() {
+        List<String> started = Collections.synchronizedList(new ArrayList<>());
+        IllegalStateException failure = new IllegalStateException("step failed");
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+            () -> new DagScheduler(plan, DagScheduler.UNIT_COST, 1).run(step -> {
+                started.add(plan.stepId(step));
+                return CompletableFuture.failedFuture(failure);
+            }).get(5, TimeUnit.SECONDS));
+
+        assertEquals(failure, error.getCause());
+        assertEquals(List.of("a"), started);
+    }
+
+    @Test
+    void longSynchronousChainDoesNotGrowTheStack() throws Exception {
+        StringBuilder steps = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            steps.append(i > 0 ? ", " : "").append("{\"stepId\": \"s").append(i)
+                .append("\", \"type\": \"sequential\", \"agentId\": \"worker\", \"name\": \"S\", \"outputs\": [\"v")
+                .append(i).append("\"]").append(i > 0 ? ", \"inputs\": {\"in\": \"${v" + (i - 1) + "}\"}" : "")
+                .append("}");
+        }
+        CompiledPlan chain = PlanCompilerTest.compile(AGENT, "dag", steps.toString());
+
+        List<String> started = Collections.synchronizedList(new ArrayList<>());
+        new DagScheduler(chain).run(step -> {
+            started.add(chain.stepId(step));
+            return CompletableFuture.completedFuture(null);
+        }).get(30, TimeUnit.SECONDS);
+
+        assertEquals(20000, started.size());
+        assertEquals("s19999", started.get(19999));
+    }
+}
@@ -0,0 +1,165 @@
+package com.nebula.shared.plan;
+
+import com.nebula.shared.model.ExecutionPlan;
+import com.nebula.shared.util.JsonUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FlowExecutorTest {
+
+    private static final String AGENTS = """
+        "agents": [
+          {"agentId": "worker", "name": "Worker", "type": "data", "language": "java", "capabilities": []},
+          {"agentId": "checker", "name": "Checker", "type": "data", "language": "java", "capabilities": []}
+        ]
+        """;
+
+    static CompiledPlan compile(String flowType, String steps) {
+        String json = "{\"planId\": \"test\", \"version\": \"1.0.0\", " + AGENTS
+            + ", \"executionFlow\": {\"type\": \"" + flowType + "\", \"steps\": [" + steps + "]}}";
+        return PlanCompiler.compile(JsonUtil.fromJson(json, ExecutionPlan.class));
+    }
+
+    private static CompletableFuture<Map<String, Object>> outputs(Object... keyValues) {
+        Map<String, Object> outputs = new HashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            outputs.put((String) keyValues[i], keyValues[i + 1]);
+        }
+        return CompletableFuture.completedFuture(outputs);
+    }
+
+    @Test
+    void deepWhileLoopWithSynchronousInvokerDoesNotGrowTheStack() throws Exception {
+        CompiledPlan plan = compile("sequential", """
+            {"stepId": "loop", "type": "loop", "name": "Loop", "loopType": "while", "iterationVariable": "i",
+             "body": [{"stepId": "work", "type": "sequential", "agentId": "worker", "name": "Work"}],
+             "exitCondition": {"expression": "i >= 100000", "checkAgentId": "worker", "maxIterations": 5000000}}
+            """);
+        AtomicInteger calls = new AtomicInteger();
+
+        Map<String, Object> context = new FlowExecutor(plan, (agent, inputs, ctx) -> {
+            calls.incrementAndGet();
+            return outputs();
+        }).run(null).get(30, TimeUnit.SECONDS);
+
+        assertEquals(100000, calls.get());
+        assertEquals(100000, context.get("i"));
+    }
+
+    @Test
+    void loopStopsAtMaxIterationsAndInvokesCheckAgentOutsideTheBody() throws Exception {
+        CompiledPlan plan = compile("sequential", """
+            {"stepId": "loop", "type": "loop", "name": "Loop", "loopType": "while",
+             "body": [{"stepId": "work", "type": "sequential", "agentId": "worker", "name": "Work"}],
+             "exitCondition": {"expression": "done == true", "checkAgentId": "checker", "maxIterations": 7}}
+            """);
+        List<String> calls = Collections.synchronizedList(new ArrayList<>());
+
+        new FlowExecutor(plan, (agent, inputs, ctx) -> {
+            calls.add(agent);
+            return outputs("done", false);
+        }).run(null).get(5, TimeUnit.SECONDS);
+
+        assertEquals(14, calls.size());
+        assertEquals(List.of("worker", "checker"), calls.subList(0, 2));
+    }
+
+    @Test
+    void loopExitsOnceCheckAgentReportsDone() throws Exception {
+        CompiledPlan plan = compile("sequential", """
+            {"stepId": "loop", "type": "loop", "name": "Loop", "loopType": "while",
+             "body": [{"stepId": "work", "type": "sequential", "agentId": "worker", "name": "Work"}],
+             "exitCondition": {"expression": "result.passed == true", "checkAgentId": "checker", "maxIterations": 100}}
+            """);
+        AtomicInteger checks = new AtomicInteger();
+
+        new FlowExecutor(plan, (agent, inputs, ctx) -> agent.equals("checker")
+            ? outputs("result", Map.of("passed", checks.incrementAndGet() == 3))
+            : CompletableFuture.supplyAsync(HashMap::new)).run(null).get(5, TimeUnit.SECONDS);
+
+        assertEquals(3, checks.get());
+    }
+
+    @Test
+    void conditionalRunsTheMatchingBranch() throws Exception {
+        CompiledPlan plan = compile("sequential", """
+            {"stepId": "produce", "type": "sequential", "agentId": "worker", "name": "Produce"},
+            {"stepId": "branch", "type": "conditional", "name": "Branch",
+             "condition": {"expression": "approved == true", "variables": ["approved"]},
+             "thenStep": {"stepId": "yes", "type": "sequential", "agentId": "checker", "name": "Yes"},
+             "elseStep": {"stepId": "no", "type": "sequential", "agentId": "worker", "name": "No"}}
+            """);
+        List<String> calls = Collections.synchronizedList(new ArrayList<>());
+
+        new FlowExecutor(plan, (agent, inputs, ctx) -> {
+            calls.add(agent);
+            return outputs("approved", false);
+        }).run(null).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("worker", "worker"), calls);
+    }
+
+    @Test
+    void foreachRunsTheBodyPerItemAndMergesWhatEachItemWrote() throws Exception {
+        CompiledPlan plan = compile("sequential", """
+            {"stepId": "each", "type": "loop", "name": "Each", "loopType": "foreach",
+             "collectionVariable": "files", "iterationVariable": "file", "parallelism": 3, "chunkSize": 2,
+             "body": [{"stepId": "work", "type": "sequential", "agentId": "worker", "name": "Work"}]}
+            """);
+
+        Map<String, Object> context = new FlowExecutor(plan, (agent, inputs, ctx) ->
+            CompletableFuture.supplyAsync(() -> Map.of("seen-" + ctx.get("file"), true)))
+            .run(Map.of("files", List.of("a", "b", "c", "d", "e"))).get(5, TimeUnit.SECONDS);
+
+        for (String file : List.of("a", "b", "c", "d", "e")) {
+            assertEquals(true, context.get("seen-" + file));
+        }
+        assertFalse(context.containsKey("file"));
+    }
+
+    @Test
+    void failingAgentFailsTheRun() {
+        CompiledPlan plan = compile("sequential", """
+            {"stepId": "first", "type": "sequential", "agentId": "worker", "name": "First"},
+            {"stepId": "second", "type": "sequential", "agentId": "checker", "name": "Second"}
+            """);
+        List<String> calls = Collections.synchronizedList(new ArrayList<>());
+
+        CompletableFuture<Map<String, Object>> run = new FlowExecutor(plan, (agent, inputs, ctx) -> {
+            calls.add(agent);
+            return CompletableFuture.failedFuture(new IllegalStateException("agent down"));
+        }).run(null);
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> run.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, error.getCause());
+        assertEquals(List.of("worker"), calls);
+    }
+
+    @Test
+    void loopWithoutExitConditionOrMaxIterationsIsRejected() {
+        CompiledPlan plan = compile("sequential", """
+            {"stepId": "loop", "type": "loop", "name": "Loop", "loopType": "while",
+             "body": [{"stepId": "work", "type": "sequential", "agentId": "worker", "name": "Work"}]}
+            """);
+
+        CompletableFuture<Map<String, Object>> run = new FlowExecutor(plan, (agent, inputs, ctx) -> outputs()).run(null);
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> run.get(5, TimeUnit.SECONDS));
+        assertTrue(error.getCause().getMessage().contains("loop"));
+    }
+}
@@ -0,0 +1,120 @@
+package com.nebula.shared.plan;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ForEachExecutorTest {
+
+    private static final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(8);
+
+    @AfterAll
+    static void shutDown() {
+        scheduler.shutdownNow();
+    }
+
+    private static Iterator<Integer> range(int count) {
+        return IntStream.range(0, count).boxed().iterator();
+    }
+
+    /**
+     * Completes with the chunk's items after a delay that is longest for the first chunks
+     */
+    private static CompletableFuture<List<Integer>> reversedDelay(List<Integer> chunk, long chunkIndex) {
+        CompletableFuture<List<Integer>> result = new CompletableFuture<>();
+        scheduler.schedule(() -> result.complete(chunk), 5 * (10 - chunkIndex), TimeUnit.MILLISECONDS);
+        return result;
+    }
+
+    @Test
+    void orderedLoopReducesInCollectionOrder() throws Exception {
+        List<Integer> reduced = Collections.synchronizedList(new ArrayList<>());
+
+        ForEachExecutor.<Integer, List<Integer>>run(range(20), 2, 4, true, ForEachExecutorTest::reversedDelay,
+            reduced::addAll).get(5, TimeUnit.SECONDS);
+
+        assertEquals(IntStream.range(0, 20).boxed().toList(), reduced);
+    }
+
+    @Test
+    void unorderedLoopReducesEveryChunkAsItCompletes() throws Exception {
+        List<Integer> reduced = Collections.synchronizedList(new ArrayList<>());
+
+        ForEachExecutor.<Integer, List<Integer>>run(range(20), 2, 4, false, ForEachExecutorTest::reversedDelay,
+            reduced::addAll).get(5, TimeUnit.SECONDS);
+
+        assertEquals(20, reduced.size());
+        assertEquals(IntStream.range(0, 20).boxed().toList(), reduced.stream().sorted().toList());
+        assertNotEquals(IntStream.range(0, 20).boxed().toList(), reduced);
+    }
+
+    @Test
+    void inFlightChunksAreBoundedByParallelism() throws Exception {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+
+        ForEachExecutor.<Integer, Integer>run(range(50), 3, 4, false, (chunk, index) -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            CompletableFuture<Integer> result = new CompletableFuture<>();
+            scheduler.schedule(() -> {
+                inFlight.decrementAndGet();
+                result.complete(chunk.size());
+            }, 2, TimeUnit.MILLISECONDS);
+            return result;
+        }, size -> { }).get(5, TimeUnit.SECONDS);
+
+        assertTrue(maxInFlight.get() <= 4, "at most 4 chunks in flight, saw " + maxInFlight.get());
+    }
+
+    @Test
+    void failingChunkFailsTheLoopAndStopsStartingChunks() {
+        AtomicInteger started = new AtomicInteger();
+
+        CompletableFuture<Void> loop = ForEachExecutor.<Integer, Integer>run(range(1000), 1, 2, true, (chunk, index) -> {
+            started.incrementAndGet();
+            return index == 3
+                ? CompletableFuture.failedFuture(new IllegalStateException("chunk 3 failed"))
+                : CompletableFuture.completedFuture(chunk.get(0));
+        }, item -> { });
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> loop.get(5, TimeUnit.SECONDS));
+        assertEquals("chunk 3 failed", error.getCause().getMessage());
+        assertTrue(started.get() <= 5, "chunks started after the failure: " + started.get());
+    }
+
+    @Test
+    void nullStageFailsTheLoop() {
+        CompletableFuture<Void> loop = ForEachExecutor.<Integer, Integer>run(range(3), 1, 1, true,
+            (chunk, index) -> null, item -> { });
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> loop.get(5, TimeUnit.SECONDS));
+        assertTrue(error.getCause() instanceof IllegalStateException);
+    }
+
+    @Test
+    void synchronousChunksDoNotGrowTheStack() throws Exception {
+        AtomicLong sum = new AtomicLong();
+
+        ForEachExecutor.<Integer, Integer>run(range(200_000), 1, 1, true,
+            (chunk, index) -> CompletableFuture.completedFuture(chunk.get(0)), sum::addAndGet).get(30, TimeUnit.SECONDS);
+
+        assertEquals(IntStream.range(0, 200_000).asLongStream().sum(), sum.get());
+    }
+}
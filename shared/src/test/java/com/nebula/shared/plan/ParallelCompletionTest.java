@@ -0,0 +1,140 @@
+package com.nebula.shared.plan;
+
+import com.nebula.shared.model.ExecutionStep;
+import com.nebula.shared.model.ParallelStep;
+import com.nebula.shared.util.JsonUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelCompletionTest {
+
+    /**
+     * Hands out a pending future per started branch so the test decides when each finishes
+     */
+    static final class Branches implements ParallelCompletion.AgentRunner<String> {
+        final List<CompletableFuture<String>> started = new ArrayList<>();
+
+        @Override
+        public synchronized CompletableFuture<String> run(int branch, ParallelStep.ParallelAgent agent) {
+            CompletableFuture<String> future = new CompletableFuture<>();
+            started.add(future);
+            return future;
+        }
+
+        CompletableFuture<String> branch(int branch) {
+            return started.get(branch);
+        }
+    }
+
+    static ParallelStep step(String policy) {
+        return (ParallelStep) JsonUtil.fromJson("""
+            {"stepId": "fan-out", "type": "parallel", "name": "Fan out",
+             "parallelAgents": [{"agentId": "a"}, {"agentId": "b"}, {"agentId": "c"}], %s}
+            """.formatted(policy), ExecutionStep.class);
+    }
+
+    @Test
+    void quorumCompletesOnceEnoughAgentsSucceedAndCancelsTheRest() throws Exception {
+        Branches branches = new Branches();
+        CompletableFuture<ParallelCompletion.Outcome<String>> done =
+            ParallelCompletion.run(step("\"completionPolicy\": \"quorum\", \"quorum\": 2"), branches);
+
+        branches.branch(2).complete("c");
+        assertFalse(done.isDone());
+        branches.branch(0).complete("a");
+
+        ParallelCompletion.Outcome<String> outcome = done.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("a", "c"), outcome.successfulResults());
+        assertFalse(outcome.succeeded(1));
+        assertTrue(branches.branch(1).isCancelled());
+    }
+
+    @Test
+    void quorumFailsAsSoonAsItCanNoLongerBeMet() {
+        Branches branches = new Branches();
+        CompletableFuture<ParallelCompletion.Outcome<String>> done =
+            ParallelCompletion.run(step("\"completionPolicy\": \"quorum\", \"quorum\": 2"), branches);
+        IllegalStateException failure = new IllegalStateException("agent failed");
+
+        branches.branch(0).completeExceptionally(failure);
+        assertFalse(done.isDone());
+        branches.branch(1).completeExceptionally(new IllegalStateException("agent failed too"));
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> done.get(5, TimeUnit.SECONDS));
+        assertEquals(failure, error.getCause().getCause());
+        assertTrue(branches.branch(2).isCancelled());
+    }
+
+    @Test
+    void firstSuccessWinsAndFailuresBeforeItAreIgnored() throws Exception {
+        Branches branches = new Branches();
+        CompletableFuture<ParallelCompletion.Outcome<String>> done =
+            ParallelCompletion.run(step("\"completionPolicy\": \"first-success\""), branches);
+
+        branches.branch(0).completeExceptionally(new IllegalStateException("agent failed"));
+        branches.branch(1).complete("b");
+
+        assertEquals(List.of("b"), done.get(5, TimeUnit.SECONDS).successfulResults());
+        assertTrue(branches.branch(2).isCancelled());
+    }
+
+    @Test
+    void agentsAfterAnImmediateFirstSuccessAreNeverStarted() throws Exception {
+        List<String> started = new ArrayList<>();
+        ParallelCompletion.Outcome<String> outcome = ParallelCompletion.<String>run(step("\"waitForAll\": false"),
+            (branch, agent) -> {
+                started.add(agent.getAgentId());
+                return CompletableFuture.completedFuture(agent.getAgentId());
+            }).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("a"), started);
+        assertEquals(List.of("a"), outcome.successfulResults());
+    }
+
+    @Test
+    void deadlineContinuesWithTheAgentsThatSucceededByTheTimeout() throws Exception {
+        Branches branches = new Branches();
+        CompletableFuture<ParallelCompletion.Outcome<String>> done =
+            ParallelCompletion.run(step("\"completionPolicy\": \"deadline\", \"timeout\": \"PT0.2S\""), branches);
+
+        branches.branch(1).complete("b");
+        assertFalse(done.isDone());
+
+        ParallelCompletion.Outcome<String> outcome = done.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("b"), outcome.successfulResults());
+        assertTrue(branches.branch(0).isCancelled());
+        assertTrue(branches.branch(2).isCancelled());
+    }
+
+    @Test
+    void deadlineFailsWhenTooFewAgentsSucceededByTheTimeout() {
+        Branches branches = new Branches();
+        CompletableFuture<ParallelCompletion.Outcome<String>> done = ParallelCompletion.run(
+            step("\"completionPolicy\": \"deadline\", \"quorum\": 2, \"timeout\": \"PT0.2S\""), branches);
+
+        branches.branch(0).complete("a");
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> done.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, error.getCause());
+        assertTrue(branches.branch(1).isCancelled());
+        assertTrue(branches.branch(2).isCancelled());
+    }
+
+    @Test
+    void deadlineWithoutATimeoutIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+            () -> ParallelCompletion.run(step("\"completionPolicy\": \"deadline\""), new Branches()));
+    }
+}
@@ -0,0 +1,90 @@
+package com.nebula.shared.plan;
+
+import com.nebula.shared.model.ExecutionPlan;
+import com.nebula.shared.util.JsonUtil;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlanCompilerTest {
+
+    private static final String AGENTS = """
+        {"agentId": "reader", "name": "Reader", "type": "data", "language": "java", "capabilities": []},
+        {"agentId": "writer", "name": "Writer", "type": "data", "language": "java", "capabilities": []},
+        {"agentId": "auditor", "name": "Auditor", "type": "data", "language": "java", "capabilities": []}
+        """;
+
+    /**
+     * Two steps that each read the other's output
+     */
+    private static final String MUTUAL_INPUTS = """
+        {"stepId": "a", "type": "sequential", "agentId": "reader", "name": "A", "inputs": {"in": "${fromB}"}, "outputs": ["fromA"]},
+        {"stepId": "b", "type": "sequential", "agentId": "writer", "name": "B", "inputs": {"in": "${fromA}"}, "outputs": ["fromB"]},
+        {"stepId": "c", "type": "sequential", "agentId": "auditor", "name": "C"}
+        """;
+
+    static CompiledPlan compile(String agents, String flowType, String steps) {
+        String json = "{\"planId\": \"test\", \"version\": \"1.0.0\", \"agents\": [" + agents
+            + "], \"executionFlow\": {\"type\": \"" + flowType + "\", \"steps\": [" + steps + "]}}";
+        return PlanCompiler.compile(JsonUtil.fromJson(json, ExecutionPlan.class));
+    }
+
+    @Test
+    void dagFlowOrdersStepsByTheValuesTheyReference() {
+        CompiledPlan plan = compile(AGENTS, "dag", """
+            {"stepId": "write", "type": "sequential", "agentId": "writer", "name": "Write", "inputs": {"rows": "${rows.items}"}},
+            {"stepId": "read", "type": "sequential", "agentId": "reader", "name": "Read", "outputs": ["rows"]},
+            {"stepId": "audit", "type": "sequential", "agentId": "auditor", "name": "Audit"}
+            """);
+
+        int read = plan.stepIndex("read");
+        int write = plan.stepIndex("write");
+        assertEquals(1, plan.predecessorCount(write));
+        assertEquals(read, plan.predecessor(write, 0));
+        assertEquals(0, plan.predecessorCount(read));
+        assertEquals(0, plan.predecessorCount(plan.stepIndex("audit")));
+    }
+
+    @Test
+    void dataCycleInADagFlowIsRejectedNamingOnlyTheStepsInIt() {
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+            () -> compile(AGENTS, "dag", MUTUAL_INPUTS));
+
+        assertTrue(error.getMessage().endsWith("dag flow has a dependency cycle among steps a, b"), error.getMessage());
+    }
+
+    @Test
+    void agentDependencyCycleInADagFlowIsRejected() {
+        String agents = AGENTS.replace("\"name\": \"Reader\",", "\"name\": \"Reader\", \"dependencies\": [\"writer\"],")
+            .replace("\"name\": \"Writer\",", "\"name\": \"Writer\", \"dependencies\": [\"reader\"],");
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> compile(agents, "dag", """
+            {"stepId": "read", "type": "sequential", "agentId": "reader", "name": "Read"},
+            {"stepId": "write", "type": "sequential", "agentId": "writer", "name": "Write"}
+            """));
+
+        assertTrue(error.getMessage().contains("dependency cycle among steps read, write"), error.getMessage());
+    }
+
+    @Test
+    void sequentialFlowChainsStepsInDeclarationOrderWhateverTheyReference() {
+        CompiledPlan plan = compile(AGENTS, "sequential", MUTUAL_INPUTS);
+
+        assertEquals(plan.stepIndex("b"), plan.successor(plan.stepIndex("a"), 0));
+        assertEquals(plan.stepIndex("c"), plan.successor(plan.stepIndex("b"), 0));
+        assertEquals(0, plan.predecessorCount(plan.stepIndex("a")));
+    }
+
+    @Test
+    void everyProblemIsListed() {
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> compile(AGENTS, "sequential", """
+            {"stepId": "read", "type": "sequential", "agentId": "reader", "name": "Read"},
+            {"stepId": "read", "type": "sequential", "agentId": "missing", "name": "Read again"}
+            """));
+
+        assertTrue(error.getMessage().contains("duplicate step id read"), error.getMessage());
+        assertTrue(error.getMessage().contains("step read references unknown agent missing"), error.getMessage());
+    }
+}
@@ -0,0 +1,110 @@
+package com.nebula.shared.plan;
+
+import com.nebula.shared.model.Agent;
+import com.nebula.shared.model.ExecutionPlan;
+import com.nebula.shared.util.JsonUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlanDiffTest {
+
+    private static final String AGENTS = """
+        {"agentId": "reader", "name": "Reader", "type": "data", "language": "java", "capabilities": ["read"],
+         "tools": [{"toolId": "fetch", "name": "Fetch", "type": "api"}, {"toolId": "store", "name": "Store", "type": "database"}]},
+        {"agentId": "writer", "name": "Writer", "type": "data", "language": "java", "capabilities": ["write"],
+         "dependencies": ["reader"]},
+        {"agentId": "checker", "name": "Checker", "type": "control", "language": "python", "capabilities": ["check"]}
+        """;
+
+    private static final String STEPS = """
+        {"stepId": "read", "type": "sequential", "agentId": "reader", "name": "Read", "outputs": ["data"]},
+        {"stepId": "refine", "type": "loop", "name": "Refine", "loopType": "while",
+         "body": [{"stepId": "write", "type": "sequential", "agentId": "writer", "name": "Write", "inputs": {"data": "${data}"}}],
+         "exitCondition": {"expression": "done == true", "checkAgentId": "checker", "maxIterations": 3}}
+        """;
+
+    static ExecutionPlan plan(String agents, String steps) {
+        return JsonUtil.fromJson("{\"planId\": \"test\", \"version\": \"1.0.0\", \"agents\": [" + agents
+            + "], \"executionFlow\": {\"type\": \"sequential\", \"steps\": [" + steps + "]}}", ExecutionPlan.class);
+    }
+
+    @Test
+    void identicalPlansAreUnchanged() {
+        PlanDiff diff = PlanDiff.compare(plan(AGENTS, STEPS), plan(AGENTS, STEPS));
+
+        assertTrue(diff.isUnchanged());
+        assertEquals(List.of(), diff.agentsToRegenerate());
+    }
+
+    @Test
+    void changedStepInputsModifyTheInvokedAgentOnly() {
+        PlanDiff diff = PlanDiff.compare(plan(AGENTS, STEPS),
+            plan(AGENTS, STEPS.replace("\"inputs\": {\"data\": \"${data}\"}", "\"inputs\": {\"draft\": \"${data}\"}")));
+
+        assertEquals(PlanDiff.Change.MODIFIED, diff.getStepChanges().get("write"));
+        assertEquals(Map.of("reader", PlanDiff.Change.UNCHANGED, "writer", PlanDiff.Change.MODIFIED,
+            "checker", PlanDiff.Change.UNCHANGED), diff.getAgentChanges());
+    }
+
+    @Test
+    void changedLoopModifiesTheCheckAgentAndTheAgentsInItsBody() {
+        PlanDiff diff = PlanDiff.compare(plan(AGENTS, STEPS),
+            plan(AGENTS, STEPS.replace("\"maxIterations\": 3", "\"maxIterations\": 5")));
+
+        assertEquals(PlanDiff.Change.UNCHANGED, diff.getAgentChanges().get("reader"));
+        assertEquals(PlanDiff.Change.MODIFIED, diff.getAgentChanges().get("writer"));
+        assertEquals(PlanDiff.Change.MODIFIED, diff.getAgentChanges().get("checker"));
+    }
+
+    @Test
+    void renamedDependencyModifiesTheAgentsThatDependOnIt() {
+        PlanDiff diff = PlanDiff.compare(plan(AGENTS, STEPS),
+            plan(AGENTS.replace("\"name\": \"Reader\"", "\"name\": \"Source Reader\""), STEPS));
+
+        assertEquals(PlanDiff.Change.MODIFIED, diff.getAgentChanges().get("reader"));
+        assertEquals(PlanDiff.Change.MODIFIED, diff.getAgentChanges().get("writer"));
+        assertEquals(PlanDiff.Change.UNCHANGED, diff.getAgentChanges().get("checker"));
+    }
+
+    @Test
+    void addedAndRemovedAgentsAndSteps() {
+        String agents = AGENTS + ", {\"agentId\": \"notifier\", \"name\": \"Notifier\", \"type\": \"tool\", "
+            + "\"language\": \"java\", \"capabilities\": []}";
+        String steps = "{\"stepId\": \"notify\", \"type\": \"sequential\", \"agentId\": \"notifier\", \"name\": \"Notify\"}, "
+            + STEPS;
+        PlanDiff diff = PlanDiff.compare(plan(agents, steps), plan(AGENTS, STEPS));
+
+        assertEquals(PlanDiff.Change.REMOVED, diff.getAgentChanges().get("notifier"));
+        assertEquals(PlanDiff.Change.REMOVED, diff.getStepChanges().get("notify"));
+        assertEquals(PlanDiff.Change.UNCHANGED, diff.getAgentChanges().get("reader"));
+
+        PlanDiff reverse = PlanDiff.compare(plan(AGENTS, STEPS), plan(agents, steps));
+        assertEquals(PlanDiff.Change.ADDED, reverse.getAgentChanges().get("notifier"));
+        assertEquals(List.of("notifier"), reverse.agentsToRegenerate().stream().map(Agent::getAgentId).toList());
+    }
+
+    @Test
+    void carryOverCopiesCodeOfUnchangedAgentsAndTools() {
+        ExecutionPlan previous = plan(AGENTS, STEPS);
+        previous.getAgents().forEach(agent -> agent.setGeneratedCode("code of " + agent.getAgentId()));
+        previous.getAgents().get(0).getTools().forEach(tool -> tool.setGeneratedCode("code of " + tool.getToolId()));
+        ExecutionPlan next = plan(AGENTS.replace("\"name\": \"Fetch\"", "\"name\": \"Fetch Pages\""),
+            STEPS.replace("\"maxIterations\": 3", "\"maxIterations\": 5"));
+
+        int carried = PlanDiff.compare(previous, next).carryOverArtifacts(previous.getAgents());
+
+        assertEquals(1, carried);
+        Agent reader = next.getAgents().get(0);
+        assertNull(reader.getGeneratedCode());
+        assertNull(reader.getTools().get(0).getGeneratedCode());
+        assertEquals("code of store", reader.getTools().get(1).getGeneratedCode());
+        assertNull(next.getAgents().get(1).getGeneratedCode());
+        assertNull(next.getAgents().get(2).getGeneratedCode());
+    }
+}
@@ -0,0 +1,104 @@
+package com.nebula.shared.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class InternPoolTest {
+
+    @Test
+    void equalValuesShareTheFirstInstance() {
+        InternPool<String> pool = new InternPool<>();
+        String first = new String("agent-id");
+        String second = new String("agent-id");
+
+        assertSame(first, pool.intern(first));
+        assertSame(first, pool.intern(second));
+        assertEquals(1, pool.size());
+    }
+
+    @Test
+    void differentValuesStayDistinct() {
+        InternPool<List<Object>> pool = new InternPool<>();
+        List<Object> read = List.of("read");
+        List<Object> write = List.of("write");
+
+        assertSame(read, pool.intern(read));
+        assertSame(write, pool.intern(write));
+        assertNotSame(pool.intern(List.of("read")), pool.intern(List.of("write")));
+        assertEquals(2, pool.size());
+    }
+
+    @Test
+    void nullIsNotInterned() {
+        InternPool<String> pool = new InternPool<>();
+
+        assertNull(pool.intern(null));
+        assertEquals(0, pool.size());
+    }
+
+    @Test
+    void concurrentCallersGetOneCanonicalInstance() throws Exception {
+        InternPool<String> pool = new InternPool<>();
+        int threads = 8;
+        CountDownLatch ready = new CountDownLatch(threads);
+        // Compared by identity; holding the instances also keeps them from being collected meanwhile
+        Set<String> canonical = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit((Callable<Void>) () -> {
+                    ready.countDown();
+                    ready.await();
+                    for (int i = 0; i < 1000; i++) {
+                        String value = pool.intern(new String("value-" + i));
+                        if (i == 0) {
+                            canonical.add(value);
+                        }
+                        assertSame(value, pool.intern(new String("value-" + i)));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, canonical.size());
+    }
+
+    @Test
+    void unreferencedInstancesAreCollected() throws Exception {
+        InternPool<String> pool = new InternPool<>();
+        for (int i = 0; i < 1000; i++) {
+            pool.intern(new String("transient-" + i));
+        }
+        String kept = pool.intern(new String("kept"));
+
+        for (int attempt = 0; attempt < 50 && pool.size() > 1; attempt++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+
+        assertEquals(1, pool.size());
+        assertSame(kept, pool.intern(new String("kept")));
+    }
+}
@@ -0,0 +1,52 @@
+package com.nebula.shared.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LLMOutputScannerTest {
+
+    private static String findJson(String response) {
+        LLMOutputScanner.Block block = LLMOutputScanner.findJson(response, LLMOutputScanner.scan(response));
+        return block != null ? block.text(response) : null;
+    }
+
+    @Test
+    void jsonFenceWins() {
+        String response = "Plan {a} below.\n```js\n{\"other\": [1, 2, 3, 4, 5]}\n```\n```json\n{\"planId\": \"p\"}\n```\n";
+
+        assertEquals("{\"planId\": \"p\"}", findJson(response));
+    }
+
+    @Test
+    void largestJsonOutsideFencesIsFound() {
+        String response = "Uses {x} notes.\n{\"planId\": \"p\", \"agents\": []}\n\n```python\nresult = {\"ok\": 1}\n```\n";
+
+        assertEquals("{\"planId\": \"p\", \"agents\": []}", findJson(response));
+    }
+
+    @Test
+    void jsonInsideOtherFencesWinsOverBracesInProse() {
+        String response = "Here is the {updated} plan:\n\n```\n{\"planId\": \"p\", \"agents\": [{\"agentId\": \"a\"}]}\n```\n\n"
+            + "```javascript\nconst x = {\"y\": 1};\n```\n";
+
+        assertEquals("{\"planId\": \"p\", \"agents\": [{\"agentId\": \"a\"}]}", findJson(response));
+    }
+
+    @Test
+    void noJsonAnywhereFindsNothing() {
+        assertNull(findJson("No plan this time.\n```\nplain text\n```\n"));
+    }
+
+    @Test
+    void fencesAreFoundWithTheirLanguage() {
+        String response = "Intro\n```python\nprint('a')\n```\ntext\n```Java title=A.java\nclass A {}\n```\n";
+        List<LLMOutputScanner.Block> blocks = LLMOutputScanner.scan(response);
+
+        assertEquals("class A {}", LLMOutputScanner.findFence(blocks, "java").text(response));
+        assertEquals("print('a')", LLMOutputScanner.findAnyFence(blocks).text(response));
+    }
+}
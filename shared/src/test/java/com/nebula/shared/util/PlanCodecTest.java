@@ -0,0 +1,82 @@
+package com.nebula.shared.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.nebula.shared.model.ExecutionPlan;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlanCodecTest {
+
+    private static JsonNode exampleTree;
+    private static ExecutionPlan examplePlan;
+
+    @BeforeAll
+    static void loadExamplePlan() throws Exception {
+        String json = Files.readString(Path.of("../schemas/example-execution-plan.json"));
+        examplePlan = JsonUtil.fromJson(json, ExecutionPlan.class);
+        exampleTree = JsonUtil.getObjectMapper().valueToTree(examplePlan);
+    }
+
+    @ParameterizedTest
+    @EnumSource(PlanCodec.Format.class)
+    void roundTripsExamplePlan(PlanCodec.Format format) {
+        ExecutionPlan decoded = PlanCodec.decode(PlanCodec.encode(examplePlan, format), format);
+
+        assertEquals(exampleTree, JsonUtil.getObjectMapper().valueToTree(decoded));
+    }
+
+    @Test
+    void convertsJsonToSmileToCborAndBack() {
+        byte[] json = PlanCodec.encode(examplePlan, PlanCodec.Format.JSON);
+        ExecutionPlan fromJson = PlanCodec.decode(json, PlanCodec.Format.JSON);
+        byte[] smile = PlanCodec.encode(fromJson, PlanCodec.Format.SMILE);
+        ExecutionPlan fromSmile = PlanCodec.decode(smile, PlanCodec.Format.SMILE);
+        byte[] cbor = PlanCodec.encode(fromSmile, PlanCodec.Format.CBOR);
+        ExecutionPlan fromCbor = PlanCodec.decode(cbor, PlanCodec.Format.CBOR);
+
+        assertEquals(exampleTree, JsonUtil.getObjectMapper().valueToTree(fromCbor));
+        assertEquals(new String(json), new String(PlanCodec.encode(fromCbor, PlanCodec.Format.JSON)));
+        assertTrue(smile.length < json.length, "Smile encoding should be smaller than JSON");
+        assertTrue(cbor.length < json.length, "CBOR encoding should be smaller than JSON");
+    }
+
+    @ParameterizedTest
+    @EnumSource(PlanCodec.Format.class)
+    void decodesConcatenatedPlans(PlanCodec.Format format) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PlanCodec.encode(examplePlan, format, out);
+        if (format == PlanCodec.Format.JSON) {
+            out.write('\n');
+        }
+        PlanCodec.encode(examplePlan, format, out);
+
+        int count = 0;
+        try (MappingIterator<ExecutionPlan> plans =
+                 PlanCodec.decodeAll(new ByteArrayInputStream(out.toByteArray()), format)) {
+            while (plans.hasNext()) {
+                assertEquals(exampleTree, JsonUtil.getObjectMapper().valueToTree(plans.next()));
+                count++;
+            }
+        }
+        assertEquals(2, count);
+    }
+
+    @Test
+    void resolvesFormatFromMediaType() {
+        assertEquals(PlanCodec.Format.SMILE, PlanCodec.Format.fromMediaType("application/x-jackson-smile"));
+        assertEquals(PlanCodec.Format.CBOR, PlanCodec.Format.fromMediaType("Application/CBOR; q=0.9"));
+        assertEquals(PlanCodec.Format.JSON, PlanCodec.Format.fromMediaType("text/plain"));
+        assertEquals(PlanCodec.Format.JSON, PlanCodec.Format.fromMediaType(null));
+    }
+}